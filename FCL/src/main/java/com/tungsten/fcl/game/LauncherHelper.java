@@ -91,8 +91,10 @@ public final class LauncherHelper {
                     version.set(version.get());
                     if (setting.isNotCheckGame())
                         return null;
+                    // Files of the version have been checked in the background after it was selected.
+                    boolean ready = !integrityCheck && profile.getPreflightChecker().isReady(selectedVersion);
                     return Task.allOf(
-                            dependencyManager.checkGameCompletionAsync(version.get(), integrityCheck),
+                            Task.composeAsync(() -> ready ? null : dependencyManager.checkGameCompletionAsync(version.get(), integrityCheck)),
                             Task.composeAsync(() -> {
                                 try {
                                     ModpackConfiguration<?> configuration = ModpackHelper.readModpackConfiguration(repository.getModpackConfiguration(selectedVersion));
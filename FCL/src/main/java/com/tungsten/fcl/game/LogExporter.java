@@ -47,7 +47,7 @@ public final class LogExporter {
                 if (Files.exists(runDirectory.resolve("logs").resolve("latest.log"))) {
                     zipper.putFile(runDirectory.resolve("logs").resolve("latest.log"), "latest.log");
                 }
-                zipper.putTextFile(Logging.getLogs(), "fcl.log");
+                zipper.putStream(Logging::writeLogs, "fcl.log");
                 zipper.putTextFile(logs, "minecraft.log");
 
                 for (String id : versions) {
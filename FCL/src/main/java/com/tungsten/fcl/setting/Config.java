@@ -82,6 +82,12 @@ public final class Config implements Cloneable, Observable {
     @SerializedName("autoChooseDownloadType")
     private BooleanProperty autoChooseDownloadType = new SimpleBooleanProperty(true);
 
+    /**
+     * Whether to request servers over HTTP/2 when they support it, HTTP/1.1 is used otherwise.
+     */
+    @SerializedName("http2")
+    private BooleanProperty http2 = new SimpleBooleanProperty(false);
+
     @SerializedName("versionListSource")
     private StringProperty versionListSource = new SimpleStringProperty("balanced");
 
@@ -238,6 +244,18 @@ public final class Config implements Cloneable, Observable {
         this.autoChooseDownloadType.set(autoChooseDownloadType);
     }
 
+    public boolean isHttp2() {
+        return http2.get();
+    }
+
+    public BooleanProperty http2Property() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2.set(http2);
+    }
+
     public String getVersionListSource() {
         return versionListSource.get();
     }
@@ -10,6 +10,7 @@ import android.content.Context;
 import com.tungsten.fcl.R;
 import com.tungsten.fcl.util.FXUtils;
 import com.tungsten.fclcore.download.AdaptedDownloadProvider;
+import com.tungsten.fclcore.download.AdaptiveDownloadProvider;
 import com.tungsten.fclcore.download.ArtifactMalformedException;
 import com.tungsten.fclcore.download.AutoDownloadProvider;
 import com.tungsten.fclcore.download.BMCLAPIDownloadProvider;
@@ -66,7 +67,7 @@ public final class DownloadProviders {
                 pair("mcbbs", MCBBS)
         );
 
-        AdaptedDownloadProvider fileProvider = new AdaptedDownloadProvider();
+        AdaptedDownloadProvider fileProvider = new AdaptiveDownloadProvider();
         fileProvider.setDownloadProviderCandidates(Arrays.asList(MCBBS, BMCLAPI, MOJANG));
         BalancedDownloadProvider balanced = new BalancedDownloadProvider(Arrays.asList(MCBBS, BMCLAPI, MOJANG));
 
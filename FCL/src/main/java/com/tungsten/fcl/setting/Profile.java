@@ -22,6 +22,7 @@ import com.tungsten.fclcore.fakefx.beans.property.SimpleObjectProperty;
 import com.tungsten.fclcore.fakefx.beans.property.SimpleStringProperty;
 import com.tungsten.fclcore.fakefx.beans.property.StringProperty;
 import com.tungsten.fclcore.game.Version;
+import com.tungsten.fclcore.launch.PreflightChecker;
 import com.tungsten.fclcore.util.ToStringBuilder;
 import com.tungsten.fclcore.util.fakefx.ObservableHelper;
 
@@ -33,6 +34,7 @@ import java.util.Optional;
 public final class Profile implements Observable {
     private final WeakListenerHolder listenerHolder = new WeakListenerHolder();
     private final FCLGameRepository repository;
+    private final PreflightChecker preflightChecker;
 
     private final StringProperty selectedVersion = new SimpleStringProperty();
 
@@ -102,6 +104,7 @@ public final class Profile implements Observable {
         this.name = new SimpleStringProperty(this, "name", name);
         gameDir = new SimpleObjectProperty<>(this, "gameDir", initialGameDir);
         repository = new FCLGameRepository(this, initialGameDir);
+        preflightChecker = new PreflightChecker(repository);
         this.global.set(global == null ? new VersionSetting() : global);
         this.selectedVersion.set(selectedVersion);
 
@@ -128,6 +131,10 @@ public final class Profile implements Observable {
         return repository;
     }
 
+    public PreflightChecker getPreflightChecker() {
+        return preflightChecker;
+    }
+
     public DefaultDependencyManager getDependency() {
         return getDependency(DownloadProviders.getDownloadProvider());
     }
@@ -123,6 +123,8 @@ public final class Profiles {
 
         initialized = true;
 
+        selectedVersion.addListener((a, b, newValue) -> checkSelectedVersion());
+
         selectedProfile.set(
                 profiles.stream()
                         .filter(it -> it.getName().equals(config().getSelectedProfile()))
@@ -135,10 +137,21 @@ public final class Profiles {
                 selectedVersion.bind(profile.selectedVersionProperty());
                 for (Consumer<Profile> listener : versionsListeners)
                     listener.accept(profile);
+                checkSelectedVersion();
             }
         });
     }
 
+    /**
+     * Check the selected version in the background, so that it can be launched without checking every file again.
+     */
+    private static void checkSelectedVersion() {
+        Profile profile = selectedProfile.get();
+        String version = selectedVersion.get();
+        if (profile != null && version != null)
+            profile.getPreflightChecker().check(version);
+    }
+
     public static ObservableList<Profile> getProfiles() {
         return profiles;
     }
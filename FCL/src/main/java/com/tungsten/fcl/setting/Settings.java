@@ -3,8 +3,11 @@ package com.tungsten.fcl.setting;
 import static com.tungsten.fcl.setting.ConfigHolder.config;
 
 import com.tungsten.fcl.game.FCLCacheRepository;
+import com.tungsten.fcl.util.FXUtils;
 import com.tungsten.fclcore.fakefx.beans.binding.Bindings;
 import com.tungsten.fclcore.util.CacheRepository;
+import com.tungsten.fclcore.util.io.NetworkUtils;
+import com.tungsten.fclcore.util.io.http2.Http2Transport;
 
 public final class Settings {
 
@@ -30,6 +33,11 @@ public final class Settings {
         Profiles.init();
         AuthlibInjectorServers.init();
 
+        // HTTP/2 is opt-in, connections of the platform are used by default.
+        Http2Transport http2Transport = new Http2Transport();
+        FXUtils.onChangeAndOperate(config().http2Property(), http2 ->
+                NetworkUtils.setConnectionFactory(http2 ? http2Transport::openConnection : null));
+
         CacheRepository.setInstance(FCLCacheRepository.REPOSITORY);
         FCLCacheRepository.REPOSITORY.directoryProperty().bind(Bindings.createStringBinding(() -> config().getCommonDirectory(), config().commonDirectoryProperty()));
     }
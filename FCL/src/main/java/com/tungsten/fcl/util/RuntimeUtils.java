@@ -1,12 +1,16 @@
 package com.tungsten.fcl.util;
 
+import static com.tungsten.fclcore.util.Lang.threadPool;
+
 import android.content.Context;
 import android.system.Os;
 
+import com.google.gson.JsonParseException;
 import com.tungsten.fclauncher.FCLauncher;
 import com.tungsten.fclauncher.utils.Architecture;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.Pack200Utils;
+import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.io.IOUtils;
 
@@ -14,109 +18,186 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 public class RuntimeUtils {
 
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Decoded files waiting to be written are held in memory, at most this many bytes at once.
+     */
+    private static final int MAX_PENDING_BYTES = 32 * 1024 * 1024;
+
+    private static final String MANIFEST = ".manifest.json";
+    private static final String VERSION = "version";
+
+    private static final ExecutorService WRITER = threadPool("RuntimeWriter", true, Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), 10, TimeUnit.SECONDS);
+
     public static boolean isLatest(String targetDir, String srcDir) throws IOException {
         File targetFile = new File(targetDir + "/version");
         int version = Integer.parseInt(IOUtils.readFullyAsString(RuntimeUtils.class.getResourceAsStream(srcDir + "/version"), StandardCharsets.UTF_8));
         return targetFile.exists() && Integer.parseInt(FileUtils.readText(targetFile)) == version;
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void install(Context context, String targetDir, String srcDir) throws IOException {
-        FileUtils.deleteDirectory(new File(targetDir));
-        new File(targetDir).mkdirs();
-        copyAssets(context, srcDir, targetDir);
+        File dest = new File(targetDir);
+        String version = IOUtils.readFullyAsString(context.getAssets().open(srcDir + "/" + VERSION), StandardCharsets.UTF_8);
+        try (RuntimeWriter writer = new RuntimeWriter(dest, version)) {
+            copyAssets(context, srcDir, "", writer);
+        }
+        // Written at last so that an interrupted installation will not be regarded as the latest one.
+        FileUtils.writeText(new File(dest, VERSION), version);
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void installJava(Context context, String targetDir, String srcDir) throws IOException {
-        FileUtils.deleteDirectory(new File(targetDir));
-        new File(targetDir).mkdirs();
+        File dest = new File(targetDir);
         String universalPath = srcDir + "/universal.tar.xz";
         String archPath = srcDir + "/bin-" + Architecture.archAsString(Architecture.getDeviceArchitecture()) + ".tar.xz";
         String version = IOUtils.readFullyAsString(RuntimeUtils.class.getResourceAsStream("/assets/" + srcDir + "/version"), StandardCharsets.UTF_8);
-        uncompressTarXZ(context.getAssets().open(universalPath), new File(targetDir));
-        uncompressTarXZ(context.getAssets().open(archPath), new File(targetDir));
-        FileUtils.writeText(new File(targetDir + "/version"), version);
+        try (RuntimeWriter writer = new RuntimeWriter(dest, version)) {
+            uncompressTarXZ(context.getAssets().open(universalPath), dest, writer);
+            uncompressTarXZ(context.getAssets().open(archPath), dest, writer);
+        }
         patchJava(context, targetDir);
+        FileUtils.writeText(new File(targetDir + "/version"), version);
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
     public static void copyAssets(Context context, String src, String dest) throws IOException {
+        try (RuntimeWriter writer = new RuntimeWriter(new File(dest), null)) {
+            copyAssets(context, src, "", writer);
+        }
+    }
+
+    private static void copyAssets(Context context, String src, String relativePath, RuntimeWriter writer) throws IOException {
         String[] fileNames = context.getAssets().list(src);
-        if (fileNames.length > 0) {
-            File file = new File(dest);
-            if (!file.exists())
-                file.mkdirs();
+        if (fileNames != null && fileNames.length > 0) {
             for (String fileName : fileNames) {
-                if (!src.equals("")) {
-                    copyAssets(context, src + File.separator + fileName, dest + File.separator + fileName);
-                } else {
-                    copyAssets(context, fileName, dest + File.separator + fileName);
-                }
+                String path = relativePath.isEmpty() ? fileName : relativePath + "/" + fileName;
+                if (path.equals(VERSION) && writer.isVersioned())
+                    continue;
+                copyAssets(context, src.isEmpty() ? fileName : src + "/" + fileName, path, writer);
             }
         } else {
-            File outFile = new File(dest);
-            InputStream is = context.getAssets().open(src);
-            FileOutputStream fos = new FileOutputStream(outFile);
-            byte[] buffer = new byte[1024];
-            int byteCount;
-            while ((byteCount = is.read(buffer)) != -1) {
-                fos.write(buffer, 0, byteCount);
+            byte[] data;
+            try (InputStream is = context.getAssets().open(src)) {
+                data = readAtMost(is, MAX_PENDING_BYTES);
+            }
+            if (data != null) {
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, data.length);
+                writer.write(relativePath, data, data.length, 0, crc.getValue());
+                return;
+            }
+
+            // Too large to be held in memory, so the asset is read once for the checksum and once more for writing.
+            CRC32 crc = new CRC32();
+            long size = 0;
+            try (InputStream is = new CheckedInputStream(context.getAssets().open(src), crc)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = is.read(buffer)) >= 0)
+                    size += n;
+            }
+            if (writer.isUnchanged(relativePath, size, 0, crc.getValue())) {
+                writer.keep(relativePath);
+            } else {
+                try (InputStream is = context.getAssets().open(src)) {
+                    writer.write(relativePath, is, size, 0, crc.getValue());
+                }
             }
-            fos.flush();
-            is.close();
-            fos.close();
         }
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
+    /**
+     * @return null if the stream has more than limit bytes
+     */
+    private static byte[] readAtMost(InputStream input, int limit) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = input.read(buffer)) >= 0) {
+            if (output.size() + n > limit)
+                return null;
+            output.write(buffer, 0, n);
+        }
+        return output.toByteArray();
+    }
+
     public static void uncompressTarXZ(final InputStream tarFileInputStream, final File dest) throws IOException {
-        dest.mkdirs();
-        TarArchiveInputStream tarIn = new TarArchiveInputStream(new XZCompressorInputStream(tarFileInputStream));
-        TarArchiveEntry tarEntry = tarIn.getNextTarEntry();
-        while (tarEntry != null) {
-            if (tarEntry.getSize() <= 20480) {
-                try {
-                    Thread.sleep(25);
-                } catch (InterruptedException ignored) {
+        try (RuntimeWriter writer = new RuntimeWriter(dest, null)) {
+            uncompressTarXZ(tarFileInputStream, dest, writer);
+        }
+    }
 
+    /**
+     * XZ decoding is sequential, so the calling thread only decodes and files are written by other threads meanwhile.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static void uncompressTarXZ(final InputStream tarFileInputStream, final File dest, RuntimeWriter writer) throws IOException {
+        try (TarArchiveInputStream tarIn = new TarArchiveInputStream(new BufferedInputStream(
+                new XZCompressorInputStream(new BufferedInputStream(tarFileInputStream, BUFFER_SIZE)), BUFFER_SIZE))) {
+            TarArchiveEntry tarEntry;
+            while ((tarEntry = tarIn.getNextTarEntry()) != null) {
+                String name = tarEntry.getName();
+                File destPath = new File(dest, name);
+                if (tarEntry.isSymbolicLink()) {
+                    writer.makeParentDirectory(destPath);
+                    // Replace the link from the previous installation.
+                    destPath.delete();
+                    try {
+                        Os.symlink(tarEntry.getLinkName().replace("..", dest.getAbsolutePath()), destPath.getAbsolutePath());
+                    } catch (Throwable e) {
+                        Logging.LOG.log(Level.WARNING, e.getMessage());
+                    }
+                } else if (tarEntry.isDirectory()) {
+                    writer.makeDirectory(destPath);
+                    destPath.setExecutable(true);
+                } else {
+                    long size = tarEntry.getSize();
+                    long time = tarEntry.getModTime().getTime();
+                    if (writer.isUnchanged(name, size, time, 0)) {
+                        writer.keep(name);
+                    } else if (size <= MAX_PENDING_BYTES) {
+                        byte[] data = new byte[(int) size];
+                        int offset = 0;
+                        while (offset < data.length) {
+                            int n = tarIn.read(data, offset, data.length - offset);
+                            if (n < 0)
+                                throw new IOException("Unexpected end of tar entry " + name);
+                            offset += n;
+                        }
+                        writer.write(name, data, data.length, time, 0);
+                    } else {
+                        writer.write(name, tarIn, size, time, 0);
+                    }
                 }
             }
-            File destPath = new File(dest, tarEntry.getName());
-            if (tarEntry.isSymbolicLink()) {
-                Objects.requireNonNull(destPath.getParentFile()).mkdirs();
-                try {
-                    Os.symlink(tarEntry.getLinkName().replace("..", dest.getAbsolutePath()), new File(dest, tarEntry.getName()).getAbsolutePath());
-                } catch (Throwable e) {
-                    Logging.LOG.log(Level.WARNING, e.getMessage());
-                }
-            } else if (tarEntry.isDirectory()) {
-                destPath.mkdirs();
-                destPath.setExecutable(true);
-            } else if (!destPath.exists() || destPath.length() != tarEntry.getSize()) {
-                Objects.requireNonNull(destPath.getParentFile()).mkdirs();
-                destPath.createNewFile();
-                FileOutputStream os = new FileOutputStream(destPath);
-                byte[] buffer = new byte[1024];
-                int byteCount;
-                while ((byteCount = tarIn.read(buffer)) != -1) {
-                    os.write(buffer, 0, byteCount);
-                }
-                os.close();
-            }
-            tarEntry = tarIn.getNextTarEntry();
         }
-        tarIn.close();
     }
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
@@ -136,4 +217,187 @@ public class RuntimeUtils {
         FileUtils.copyFile(new File(context.getApplicationInfo().nativeLibraryDir, "libawt_xawt.so"), fileLib);
     }
 
+    /**
+     * Writes files of a runtime on background threads.
+     *
+     * If a version is given, a manifest of written files is kept in the destination directory,
+     * so that the next installation only writes files which are changed in the new version
+     * or modified on disk since then, and deletes files which no longer exist.
+     */
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private static final class RuntimeWriter implements AutoCloseable {
+        private final File dest;
+        private final String version;
+        private final Map<String, Record> oldRecords;
+        private final Map<String, Record> records = new ConcurrentHashMap<>();
+        private final Set<File> directories = ConcurrentHashMap.newKeySet();
+        private final Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+        private final Phaser pendingWrites = new Phaser(1);
+        private final AtomicReference<IOException> exception = new AtomicReference<>();
+
+        RuntimeWriter(File dest, String version) throws IOException {
+            this.dest = dest;
+            this.version = version;
+
+            Manifest manifest = version == null ? null : readManifest(dest);
+            if (version != null) {
+                if (manifest == null) {
+                    FileUtils.deleteDirectory(dest);
+                } else {
+                    // Removed until all files are written, so an interrupted installation will not be trusted next time.
+                    new File(dest, MANIFEST).delete();
+                    new File(dest, VERSION).delete();
+                }
+            }
+            oldRecords = manifest == null ? new HashMap<>() : manifest.files;
+            makeDirectory(dest);
+        }
+
+        boolean isVersioned() {
+            return version != null;
+        }
+
+        void makeDirectory(File directory) throws IOException {
+            if (directories.add(directory) && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+                throw new IOException("Unable to make directory " + directory);
+        }
+
+        void makeParentDirectory(File file) throws IOException {
+            makeDirectory(Objects.requireNonNull(file.getAbsoluteFile().getParentFile()));
+        }
+
+        /**
+         * @return true if the file was written by the previous installation with the same content and not modified since then.
+         */
+        boolean isUnchanged(String path, long size, long time, long crc) {
+            Record record = oldRecords.get(path);
+            if (record == null || record.size != size || record.time != time || record.crc != crc)
+                return false;
+            File file = new File(dest, path);
+            return file.length() == size && file.lastModified() == record.lastModified;
+        }
+
+        void keep(String path) {
+            records.put(path, oldRecords.get(path));
+        }
+
+        void write(String path, byte[] data, int length, long time, long crc) throws IOException {
+            checkException();
+            if (isUnchanged(path, length, time, crc)) {
+                keep(path);
+                return;
+            }
+
+            File file = new File(dest, path);
+            makeParentDirectory(file);
+            removeNonRegularFile(file);
+            try {
+                pendingBytes.acquire(length);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            pendingWrites.register();
+            WRITER.execute(() -> {
+                try {
+                    try (OutputStream os = new FileOutputStream(file)) {
+                        os.write(data, 0, length);
+                    }
+                    records.put(path, new Record(length, time, crc, file.lastModified()));
+                } catch (IOException e) {
+                    exception.compareAndSet(null, e);
+                } finally {
+                    pendingBytes.release(length);
+                    pendingWrites.arriveAndDeregister();
+                }
+            });
+        }
+
+        /**
+         * Writes a file too large to be held in memory in the calling thread.
+         */
+        void write(String path, InputStream input, long size, long time, long crc) throws IOException {
+            checkException();
+            File file = new File(dest, path);
+            makeParentDirectory(file);
+            removeNonRegularFile(file);
+            try (OutputStream os = new FileOutputStream(file)) {
+                IOUtils.copyTo(input, os, new byte[BUFFER_SIZE]);
+            }
+            records.put(path, new Record(size, time, crc, file.lastModified()));
+        }
+
+        /**
+         * The path may be a link in the previous installation, writing to it would overwrite the target of the link.
+         */
+        private static void removeNonRegularFile(File file) throws IOException {
+            Path path = file.toPath();
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && !Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                Files.delete(path);
+        }
+
+        private void checkException() throws IOException {
+            IOException e = exception.get();
+            if (e != null)
+                throw e;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                pendingWrites.awaitAdvanceInterruptibly(pendingWrites.arrive());
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            checkException();
+
+            if (version == null)
+                return;
+
+            for (String path : oldRecords.keySet()) {
+                if (!records.containsKey(path))
+                    new File(dest, path).delete();
+            }
+
+            Manifest manifest = new Manifest(version, new HashMap<>(records));
+            FileUtils.writeText(new File(dest, MANIFEST), JsonUtils.GSON.toJson(manifest));
+        }
+
+        private static Manifest readManifest(File dest) {
+            File file = new File(dest, MANIFEST);
+            if (!file.isFile())
+                return null;
+            try {
+                Manifest manifest = JsonUtils.GSON.fromJson(FileUtils.readText(file), Manifest.class);
+                return manifest == null || manifest.files == null ? null : manifest;
+            } catch (IOException | JsonParseException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to read runtime manifest " + file, e);
+                return null;
+            }
+        }
+    }
+
+    private static final class Manifest {
+        private final String version;
+        private final Map<String, Record> files;
+
+        Manifest(String version, Map<String, Record> files) {
+            this.version = version;
+            this.files = files;
+        }
+    }
+
+    private static final class Record {
+        private final long size;
+        private final long time;
+        private final long crc;
+        private final long lastModified;
+
+        Record(long size, long time, long crc, long lastModified) {
+            this.size = size;
+            this.time = time;
+            this.crc = crc;
+            this.lastModified = lastModified;
+        }
+    }
+
 }
@@ -31,6 +31,7 @@ import com.tungsten.fclcore.auth.yggdrasil.YggdrasilService;
 import com.tungsten.fclcore.fakefx.beans.InvalidationListener;
 import com.tungsten.fclcore.fakefx.beans.Observable;
 import com.tungsten.fclcore.util.fakefx.ObservableHelper;
+import com.tungsten.fclcore.util.io.NetworkUtils;
 
 @JsonAdapter(AuthlibInjectorServer.Deserializer.class)
 public class AuthlibInjectorServer implements Observable {
@@ -40,7 +41,7 @@ public class AuthlibInjectorServer implements Observable {
     public static AuthlibInjectorServer locateServer(String url) throws IOException {
         try {
             url = addHttpsIfMissing(url);
-            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+            HttpURLConnection conn = (HttpURLConnection) NetworkUtils.openConnection(new URL(url));
 
             String ali = conn.getHeaderField("x-authlib-injector-api-location");
             if (ali != null) {
@@ -48,7 +49,7 @@ public class AuthlibInjectorServer implements Observable {
                 if (!urlEqualsIgnoreSlash(url, absoluteAli.toString())) {
                     conn.disconnect();
                     url = absoluteAli.toString();
-                    conn = (HttpURLConnection) absoluteAli.openConnection();
+                    conn = (HttpURLConnection) NetworkUtils.openConnection(absoluteAli);
                 }
             }
 
@@ -0,0 +1,30 @@
+package com.tungsten.fclcore.download;
+
+import com.tungsten.fclcore.task.MirrorStatistics;
+
+import java.net.URL;
+import java.util.List;
+
+/**
+ * The download provider that orders candidates by how their mirrors performed recently,
+ * instead of the fixed order of candidates.
+ *
+ * @see MirrorStatistics
+ */
+public class AdaptiveDownloadProvider extends AdaptedDownloadProvider {
+
+    @Override
+    public List<URL> getAssetObjectCandidates(String assetObjectLocation) {
+        return MirrorStatistics.sort(super.getAssetObjectCandidates(assetObjectLocation));
+    }
+
+    @Override
+    public List<URL> injectURLWithCandidates(String baseURL) {
+        return MirrorStatistics.sort(super.injectURLWithCandidates(baseURL));
+    }
+
+    @Override
+    public List<URL> injectURLsWithCandidates(List<String> urls) {
+        return MirrorStatistics.sort(super.injectURLsWithCandidates(urls));
+    }
+}
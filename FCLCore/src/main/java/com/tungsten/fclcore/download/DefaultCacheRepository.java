@@ -7,6 +7,7 @@ import com.tungsten.fclcore.game.Library;
 import com.tungsten.fclcore.game.LibraryDownloadInfo;
 import com.tungsten.fclcore.util.CacheRepository;
 import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.FileDigestCache;
 import com.tungsten.fclcore.util.Hex;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.gson.JsonUtils;
@@ -83,8 +84,7 @@ public class DefaultCacheRepository extends CacheRepository {
             LibraryDownloadInfo info = library.getDownload();
             String hash = info.getSha1();
             if (hash != null) {
-                String checksum = Hex.encodeHex(DigestUtils.digest("SHA-1", jar));
-                if (hash.equalsIgnoreCase(checksum))
+                if (FileDigestCache.getInstance().checksumMatches("SHA-1", jar, hash))
                     cacheLibrary(library, jar, false);
             } else if (library.getChecksums() != null && !library.getChecksums().isEmpty()) {
                 if (LibraryDownloadTask.checksumValid(jar.toFile(), library.getChecksums()))
@@ -136,8 +136,7 @@ public class DefaultCacheRepository extends CacheRepository {
         if (Files.exists(jar)) {
             try {
                 if (hash != null) {
-                    String checksum = Hex.encodeHex(DigestUtils.digest("SHA-1", jar));
-                    if (hash.equalsIgnoreCase(checksum))
+                    if (FileDigestCache.getInstance().checksumMatches("SHA-1", jar, hash))
                         return Optional.of(restore(jar, () -> cacheLibrary(library, jar, false)));
                 } else if (library.getChecksums() != null && !library.getChecksums().isEmpty()) {
                     if (LibraryDownloadTask.checksumValid(jar.toFile(), library.getChecksums()))
@@ -84,7 +84,7 @@ public class DefaultDependencyManager extends AbstractDependencyManager {
             if (gameVersion == null) return null;
 
             Version original = repository.getVersion(version.getId());
-            Version resolved = original.resolvePreservingPatches(repository);
+            Version resolved = repository.getResolvedPreservingPatchesVersion(version.getId());
 
             LibraryAnalyzer analyzer = LibraryAnalyzer.analyze(resolved);
             for (LibraryAnalyzer.LibraryType type : LibraryAnalyzer.LibraryType.values()) {
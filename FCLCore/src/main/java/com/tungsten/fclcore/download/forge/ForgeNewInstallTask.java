@@ -29,6 +29,7 @@ import com.tungsten.fclcore.util.function.ExceptionalFunction;
 import com.tungsten.fclcore.util.io.ChecksumMismatchException;
 import com.tungsten.fclcore.util.io.CompressingUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 import com.tungsten.fclcore.util.platform.CommandBuilder;
 
 import org.jetbrains.annotations.NotNull;
@@ -273,24 +274,24 @@ public class ForgeNewInstallTask extends Task<Version> {
 
     @Override
     public void preExecute() throws Exception {
-        try (FileSystem fs = CompressingUtils.createReadOnlyZipFileSystem(installer)) {
-            profile = fromNonNullJson(FileUtils.readText(fs.getPath("install_profile.json")), ForgeNewInstallProfile.class);
+        try (ZipReader zip = ZipReader.open(installer)) {
+            profile = fromNonNullJson(zip.readText("install_profile.json"), ForgeNewInstallProfile.class);
             processors = profile.getProcessors();
-            forgeVersion = fromNonNullJson(FileUtils.readText(fs.getPath(profile.getJson())), Version.class);
+            forgeVersion = fromNonNullJson(zip.readText(profile.getJson()), Version.class);
 
             for (Library library : profile.getLibraries()) {
-                Path file = fs.getPath("maven").resolve(library.getPath());
-                if (Files.exists(file)) {
+                String file = "maven/" + library.getPath();
+                if (zip.contains(file)) {
                     Path dest = gameRepository.getLibraryFile(version, library).toPath();
-                    FileUtils.copyFile(file, dest);
+                    zip.extract(file, dest);
                 }
             }
 
             if (profile.getPath().isPresent()) {
-                Path mainJar = profile.getPath().get().getPath(fs.getPath("maven"));
-                if (Files.exists(mainJar)) {
+                String mainJar = "maven/" + profile.getPath().get().getPath();
+                if (zip.contains(mainJar)) {
                     Path dest = gameRepository.getArtifactFile(version, profile.getPath().get());
-                    FileUtils.copyFile(mainJar, dest);
+                    zip.extract(mainJar, dest);
                 }
             }
         } catch (ZipException ex) {
@@ -7,19 +7,21 @@ import com.tungsten.fclcore.game.AssetIndexInfo;
 import com.tungsten.fclcore.game.AssetObject;
 import com.tungsten.fclcore.game.Version;
 import com.tungsten.fclcore.task.FileDownloadTask;
+import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.util.CacheRepository;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.gson.JsonUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public final class GameAssetDownloadTask extends Task<Void> {
@@ -62,45 +64,81 @@ public final class GameAssetDownloadTask extends Task<Void> {
     @Override
     public void execute() throws Exception {
         AssetIndex index;
-        try {
-            index = JsonUtils.fromNonNullJson(FileUtils.readText(assetIndexFile), AssetIndex.class);
+        try (InputStream input = Files.newInputStream(assetIndexFile)) {
+            index = JsonUtils.fromNonNullJsonFully(input, AssetIndex.class);
         } catch (IOException | JsonParseException e) {
             throw new GameAssetIndexDownloadTask.GameAssetIndexMalformedException();
         }
 
-        int progress = 0;
-        for (AssetObject assetObject : index.getObjects().values()) {
-            if (isCancelled())
-                throw new InterruptedException();
-
-            Path file = dependencyManager.getGameRepository().getAssetObject(version.getId(), assetIndexInfo.getId(), assetObject);
-            boolean download = !Files.isRegularFile(file);
-            try {
-                if (!download && integrityCheck && !assetObject.validateChecksum(file, true))
-                    download = true;
-            } catch (IOException e) {
-                Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + file, e);
-            }
-            if (download) {
-                List<URL> urls = dependencyManager.getDownloadProvider().getAssetObjectCandidates(assetObject.getLocation());
-
-                FileDownloadTask task = new FileDownloadTask(urls, file.toFile(), new FileDownloadTask.IntegrityCheck("SHA-1", assetObject.getHash()));
-                task.setName(assetObject.getHash());
-                task.setCandidate(dependencyManager.getCacheRepository().getCommonDirectory()
-                        .resolve("assets").resolve("objects").resolve(assetObject.getLocation()));
-                task.setCacheRepository(dependencyManager.getCacheRepository());
-                task.setCaching(true);
-                dependencies.add(task.withCounter("hmcl.install.assets"));
-            } else {
-                dependencyManager.getCacheRepository().tryCacheFile(file, CacheRepository.SHA1, assetObject.getHash());
-            }
+        // Objects are verified in small shards concurrently, and each shard schedules downloads of
+        // missing or corrupted objects as soon as it finishes, instead of waiting for all objects to be verified.
+        List<AssetObject> objects = new ArrayList<>(index.getObjects().values());
+        int shardSize = Math.max(MIN_SHARD_SIZE, objects.size() / (Runtime.getRuntime().availableProcessors() * 16));
+        for (int i = 0; i < objects.size(); i += shardSize) {
+            dependencies.add(new VerificationTask(objects.subList(i, Math.min(i + shardSize, objects.size())), objects.size()));
+        }
+    }
+
+    private static final int MIN_SHARD_SIZE = 32;
+
+    private final AtomicInteger verified = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+
+    private synchronized void updateTotal() {
+        getProperties().put("total", total.incrementAndGet());
+        notifyPropertiesChanged();
+    }
+
+    private final class VerificationTask extends Task<Void> {
+        private final List<AssetObject> objects;
+        private final int objectCount;
+        private final List<Task<?>> downloads = new ArrayList<>();
 
-            updateProgress(++progress, index.getObjects().size());
+        VerificationTask(List<AssetObject> objects, int objectCount) {
+            this.objects = objects;
+            this.objectCount = objectCount;
+
+            setExecutor(Schedulers.io());
+            setSignificance(TaskSignificance.MINOR);
+        }
+
+        @Override
+        public Collection<Task<?>> getDependencies() {
+            return downloads;
         }
 
-        if (!dependencies.isEmpty()) {
-            getProperties().put("total", dependencies.size());
-            notifyPropertiesChanged();
+        @Override
+        public void execute() throws Exception {
+            for (AssetObject assetObject : objects) {
+                if (isCancelled())
+                    throw new InterruptedException();
+
+                Path file = dependencyManager.getGameRepository().getAssetObject(version.getId(), assetIndexInfo.getId(), assetObject);
+                boolean download = !Files.isRegularFile(file);
+                try {
+                    if (!download && integrityCheck && !assetObject.validateChecksum(file, true))
+                        download = true;
+                } catch (IOException e) {
+                    Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + file, e);
+                }
+                if (download) {
+                    List<URL> urls = dependencyManager.getDownloadProvider().getAssetObjectCandidates(assetObject.getLocation());
+
+                    FileDownloadTask task = new FileDownloadTask(urls, file.toFile(), new FileDownloadTask.IntegrityCheck("SHA-1", assetObject.getHash()));
+                    task.setName(assetObject.getHash());
+                    task.setCandidate(dependencyManager.getCacheRepository().getCommonDirectory()
+                            .resolve("assets").resolve("objects").resolve(assetObject.getLocation()));
+                    task.setCacheRepository(dependencyManager.getCacheRepository());
+                    task.setCaching(true);
+                    downloads.add(task.withCounter("hmcl.install.assets"));
+
+                    updateTotal();
+                } else {
+                    dependencyManager.getCacheRepository().tryCacheFile(file, CacheRepository.SHA1, assetObject.getHash());
+                }
+
+                GameAssetDownloadTask.this.updateProgress(verified.incrementAndGet(), objectCount);
+            }
         }
     }
 
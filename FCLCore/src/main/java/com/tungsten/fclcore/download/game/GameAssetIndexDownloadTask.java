@@ -9,13 +9,12 @@ import com.tungsten.fclcore.game.AssetIndexInfo;
 import com.tungsten.fclcore.game.Version;
 import com.tungsten.fclcore.task.FileDownloadTask;
 import com.tungsten.fclcore.task.Task;
-import com.tungsten.fclcore.util.DigestUtils;
-import com.tungsten.fclcore.util.Hex;
+import com.tungsten.fclcore.util.FileDigestCache;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fclcore.util.gson.JsonUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -60,7 +59,7 @@ public final class GameAssetIndexDownloadTask extends Task<Void> {
             // verify correctness of file content
             if (verifyHashCode) {
                 try {
-                    String actualSum = Hex.encodeHex(DigestUtils.digest("SHA-1", assetIndexFile));
+                    String actualSum = FileDigestCache.getInstance().digest("SHA-1", assetIndexFile);
                     if (actualSum.equalsIgnoreCase(assetIndexInfo.getSha1()))
                         return;
                 } catch (IOException e) {
@@ -68,8 +67,8 @@ public final class GameAssetIndexDownloadTask extends Task<Void> {
                     // continue downloading
                 }
             } else {
-                try {
-                    JsonUtils.fromNonNullJson(FileUtils.readText(assetIndexFile), AssetIndex.class);
+                try (InputStream input = Files.newInputStream(assetIndexFile)) {
+                    JsonUtils.fromNonNullJsonFully(input, AssetIndex.class);
                     return;
                 } catch (IOException | JsonParseException ignore) {
                 }
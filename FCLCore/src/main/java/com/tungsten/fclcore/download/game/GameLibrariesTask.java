@@ -5,6 +5,7 @@ import com.tungsten.fclcore.game.GameRepository;
 import com.tungsten.fclcore.game.Library;
 import com.tungsten.fclcore.game.Version;
 import com.tungsten.fclcore.task.FileDownloadTask;
+import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.io.FileUtils;
@@ -13,8 +14,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  * This task is to download game libraries.
@@ -87,15 +90,48 @@ public final class GameLibrariesTask extends Task<Void> {
 
     @Override
     public void execute() {
-        libraries.stream().filter(Library::appliesToCurrentEnvironment).forEach(library -> {
-            File file = dependencyManager.getGameRepository().getLibraryFile(version, library);
-            if (shouldDownloadLibrary(dependencyManager.getGameRepository(), version, library, integrityCheck)) {
-                if (library.hasDownloadURL() || !"optifine".equals(library.getGroupId()))
-                    dependencies.add(new LibraryDownloadTask(dependencyManager, file, library));
-            } else {
-                dependencyManager.getCacheRepository().tryCacheLibrary(library, file.toPath());
+        // Libraries are verified in small shards concurrently on the I/O thread pool, and each shard
+        // schedules downloads of missing or corrupted libraries as soon as it finishes, instead of waiting for all libraries to be verified.
+        List<Library> applied = libraries.stream().filter(Library::appliesToCurrentEnvironment).collect(Collectors.toList());
+        int shardSize = Math.max(MIN_SHARD_SIZE, applied.size() / (Runtime.getRuntime().availableProcessors() * 4));
+        for (int i = 0; i < applied.size(); i += shardSize) {
+            dependencies.add(new VerificationTask(applied.subList(i, Math.min(i + shardSize, applied.size()))));
+        }
+    }
+
+    private static final int MIN_SHARD_SIZE = 4;
+
+    private final class VerificationTask extends Task<Void> {
+        private final List<Library> libraries;
+        private final List<Task<?>> downloads = new ArrayList<>();
+
+        VerificationTask(List<Library> libraries) {
+            this.libraries = libraries;
+
+            setExecutor(Schedulers.io());
+            setSignificance(TaskSignificance.MINOR);
+        }
+
+        @Override
+        public Collection<Task<?>> getDependencies() {
+            return downloads;
+        }
+
+        @Override
+        public void execute() throws Exception {
+            for (Library library : libraries) {
+                if (isCancelled())
+                    throw new InterruptedException();
+
+                File file = dependencyManager.getGameRepository().getLibraryFile(version, library);
+                if (shouldDownloadLibrary(dependencyManager.getGameRepository(), version, library, integrityCheck)) {
+                    if (library.hasDownloadURL() || !"optifine".equals(library.getGroupId()))
+                        downloads.add(new LibraryDownloadTask(dependencyManager, file, library));
+                } else {
+                    dependencyManager.getCacheRepository().tryCacheLibrary(library, file.toPath());
+                }
             }
-        });
+        }
     }
 
 }
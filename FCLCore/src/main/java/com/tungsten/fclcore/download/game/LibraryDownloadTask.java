@@ -12,6 +12,7 @@ import com.tungsten.fclcore.game.Library;
 import com.tungsten.fclcore.task.DownloadException;
 import com.tungsten.fclcore.task.FileDownloadTask;
 import com.tungsten.fclcore.task.Task;
+import com.tungsten.fclcore.util.FileDigestCache;
 import com.tungsten.fclcore.util.Pack200Utils;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.io.IOUtils;
@@ -164,10 +165,10 @@ public class LibraryDownloadTask extends Task<Void> {
             if (checksums == null || checksums.isEmpty()) {
                 return true;
             }
-            byte[] fileData = Files.readAllBytes(libPath.toPath());
-            boolean valid = checksums.contains(encodeHex(digest("SHA-1", fileData)));
+            // The digest is shared with other checks of the same file, and the file is never read into memory as a whole.
+            boolean valid = checksums.contains(FileDigestCache.getInstance().digest("SHA-1", libPath.toPath()));
             if (!valid && libPath.getName().endsWith(".jar")) {
-                valid = validateJar(fileData, checksums);
+                valid = validateJar(libPath.toPath(), checksums);
             }
             return valid;
         } catch (IOException e) {
@@ -176,22 +177,22 @@ public class LibraryDownloadTask extends Task<Void> {
         return false;
     }
 
-    private static boolean validateJar(byte[] data, List<String> checksums) throws IOException {
+    private static boolean validateJar(Path path, List<String> checksums) throws IOException {
         HashMap<String, String> files = new HashMap<>();
         String[] hashes = null;
-        JarInputStream jar = new JarInputStream(new ByteArrayInputStream(data));
-        JarEntry entry = jar.getNextJarEntry();
-        while (entry != null) {
-            byte[] eData = IOUtils.readFullyWithoutClosing(jar);
-            if (entry.getName().equals("checksums.sha1")) {
-                hashes = new String(eData, StandardCharsets.UTF_8).split("\n");
-            }
-            if (!entry.isDirectory()) {
-                files.put(entry.getName(), encodeHex(digest("SHA-1", eData)));
+        try (JarInputStream jar = new JarInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            JarEntry entry = jar.getNextJarEntry();
+            while (entry != null) {
+                if (entry.getName().equals("checksums.sha1")) {
+                    byte[] eData = IOUtils.readFullyWithoutClosing(jar);
+                    hashes = new String(eData, StandardCharsets.UTF_8).split("\n");
+                    files.put(entry.getName(), encodeHex(digest("SHA-1", eData)));
+                } else if (!entry.isDirectory()) {
+                    files.put(entry.getName(), encodeHex(digest("SHA-1", jar)));
+                }
+                entry = jar.getNextJarEntry();
             }
-            entry = jar.getNextJarEntry();
         }
-        jar.close();
         if (hashes != null) {
             boolean failed = !checksums.contains(files.get("checksums.sha1"));
             if (!failed) {
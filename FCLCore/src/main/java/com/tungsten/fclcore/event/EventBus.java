@@ -7,19 +7,30 @@ import java.util.concurrent.ConcurrentHashMap;
 public final class EventBus {
 
     private final ConcurrentHashMap<Class<?>, EventManager<?>> events = new ConcurrentHashMap<>();
+    private volatile boolean debugLogging;
 
     @SuppressWarnings("unchecked")
     public <T extends Event> EventManager<T> channel(Class<T> clazz) {
-        events.putIfAbsent(clazz, new EventManager<>());
-        return (EventManager<T>) events.get(clazz);
+        EventManager<?> manager = events.get(clazz);
+        if (manager == null)
+            manager = events.computeIfAbsent(clazz, key -> new EventManager<>());
+        return (EventManager<T>) manager;
     }
 
     @SuppressWarnings("unchecked")
     public Event.Result fireEvent(Event obj) {
-        Logging.LOG.info(obj + " gets fired");
+        if (debugLogging)
+            Logging.LOG.info(obj + " gets fired");
 
         return channel((Class<Event>) obj.getClass()).fireEvent(obj);
     }
 
+    /**
+     * Log every fired event, disabled by default since some events are fired very frequently.
+     */
+    public void setDebugLogging(boolean debugLogging) {
+        this.debugLogging = debugLogging;
+    }
+
     public static final EventBus EVENT_BUS = new EventBus();
 }
@@ -1,16 +1,17 @@
 package com.tungsten.fclcore.event;
 
-import com.tungsten.fclcore.util.SimpleMultimap;
-
 import java.lang.ref.WeakReference;
-import java.util.EnumMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 public final class EventManager<T extends Event> {
 
-    private final SimpleMultimap<EventPriority, Consumer<T>> handlers
-            = new SimpleMultimap<>(() -> new EnumMap<>(EventPriority.class), CopyOnWriteArraySet::new);
+    /**
+     * Handlers sorted by priority, in the order of registration within the same priority.
+     * The array is never modified, registering and unregistering replace it so that firing needs no lock.
+     */
+    private volatile Registration<T>[] handlers = emptyHandlers();
 
     public Consumer<T> registerWeak(Consumer<T> consumer) {
         register(new WeakListener(consumer));
@@ -27,8 +28,25 @@ public final class EventManager<T extends Event> {
     }
 
     public synchronized void register(Consumer<T> consumer, EventPriority priority) {
-        if (!handlers.get(priority).contains(consumer))
-            handlers.put(priority, consumer);
+        Registration<T>[] handlers = this.handlers;
+        int index = handlers.length;
+        for (int i = 0; i < handlers.length; i++) {
+            Registration<T> handler = handlers[i];
+            if (handler.priority == priority && handler.consumer.equals(consumer))
+                return;
+            if (handler.priority.compareTo(priority) > 0 && index == handlers.length)
+                index = i;
+        }
+
+        List<Registration<T>> newHandlers = new ArrayList<>(handlers.length + 1);
+        for (int i = 0; i < handlers.length; i++) {
+            if (i == index)
+                newHandlers.add(new Registration<>(priority, consumer));
+            newHandlers.add(handlers[i]);
+        }
+        if (index == handlers.length)
+            newHandlers.add(new Registration<>(priority, consumer));
+        this.handlers = toArray(newHandlers);
     }
 
     public void register(Runnable runnable) {
@@ -39,11 +57,9 @@ public final class EventManager<T extends Event> {
         register(t -> runnable.run(), priority);
     }
 
-    public synchronized Event.Result fireEvent(T event) {
-        for (EventPriority priority : EventPriority.values()) {
-            for (Consumer<T> handler : handlers.get(priority))
-                handler.accept(event);
-        }
+    public Event.Result fireEvent(T event) {
+        for (Registration<T> handler : handlers)
+            handler.consumer.accept(event);
 
         if (event.hasResult())
             return event.getResult();
@@ -52,7 +68,33 @@ public final class EventManager<T extends Event> {
     }
 
     public synchronized void unregister(Consumer<T> consumer) {
-        handlers.removeValue(consumer);
+        Registration<T>[] handlers = this.handlers;
+        List<Registration<T>> newHandlers = new ArrayList<>(handlers.length);
+        for (Registration<T> handler : handlers)
+            if (!handler.consumer.equals(consumer))
+                newHandlers.add(handler);
+        if (newHandlers.size() != handlers.length)
+            this.handlers = toArray(newHandlers);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Event> Registration<T>[] emptyHandlers() {
+        return (Registration<T>[]) new Registration<?>[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Event> Registration<T>[] toArray(List<Registration<T>> handlers) {
+        return handlers.toArray((Registration<T>[]) new Registration<?>[0]);
+    }
+
+    private static final class Registration<T> {
+        final EventPriority priority;
+        final Consumer<T> consumer;
+
+        Registration(EventPriority priority, Consumer<T> consumer) {
+            this.priority = priority;
+            this.consumer = consumer;
+        }
     }
 
     private class WeakListener implements Consumer<T> {
@@ -2,6 +2,7 @@ package com.tungsten.fclcore.game;
 
 import com.google.gson.annotations.SerializedName;
 import com.tungsten.fclcore.util.Lang;
+import com.tungsten.fclcore.util.PersistentList;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -67,8 +68,8 @@ public final class Arguments {
             return a;
         else
             return new Arguments(
-                    a.game == null && b.game == null ? null : Lang.merge(a.game, b.game),
-                    a.jvm == null && b.jvm == null ? null : Lang.merge(a.jvm, b.jvm));
+                    a.game == null && b.game == null ? null : PersistentList.concat(a.game, b.game),
+                    a.jvm == null && b.jvm == null ? null : PersistentList.concat(a.jvm, b.jvm));
     }
 
     public static List<String> parseStringArguments(List<String> arguments, Map<String, String> keys) {
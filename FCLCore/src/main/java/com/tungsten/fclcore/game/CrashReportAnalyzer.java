@@ -125,15 +125,248 @@ public final class CrashReportAnalyzer {
         }
     }
 
+    private static final AnchorMatcher ANCHORS = new AnchorMatcher();
+
     public static List<Result> anaylze(String log) {
-        List<Result> results = new ArrayList<>();
-        for (Rule rule : Rule.values()) {
+        Result[] results = new Result[Rule.values().length];
+        boolean[] tried = new boolean[results.length];
+
+        for (Rule rule : ANCHORS.unanchoredRules) {
             Matcher matcher = rule.pattern.matcher(log);
-            if (matcher.find()) {
-                results.add(new Result(rule, log, matcher));
+            if (matcher.find())
+                results[rule.ordinal()] = new Result(rule, log, matcher);
+        }
+
+        int state = 0;
+        for (int i = 0, length = log.length(); i < length; i++) {
+            state = ANCHORS.next(state, log.charAt(i));
+            for (Anchor anchor : ANCHORS.outputs[state]) {
+                int ordinal = anchor.rule.ordinal();
+                if (tried[ordinal])
+                    continue;
+                tried[ordinal] = true;
+
+                // No match starts before the line of the first anchor, so matching from there to the end of the log
+                // finds the same match as matching the whole log, including patterns spanning lines.
+                int lineStart = log.lastIndexOf('\n', i - anchor.text.length()) + 1;
+                Matcher matcher = anchor.rule.pattern.matcher(log);
+                matcher.region(lineStart, length);
+                if (matcher.find())
+                    results[ordinal] = new Result(anchor.rule, log, matcher);
+            }
+        }
+
+        List<Result> list = new ArrayList<>();
+        for (Result result : results)
+            if (result != null)
+                list.add(result);
+        return list;
+    }
+
+    private static final class Anchor {
+        final Rule rule;
+        final String text;
+
+        Anchor(Rule rule, String text) {
+            this.rule = rule;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Aho-Corasick automaton over literal anchors of all rules.
+     *
+     * Every match of a rule starts in the same line as one of its anchors,
+     * so rules without anchors in the log are skipped and the others are matched from the first line containing their anchors.
+     */
+    private static final class AnchorMatcher {
+        private static final int ALPHABET = 128;
+        private static final int MIN_ANCHOR_LENGTH = 4;
+        private static final Anchor[] NO_ANCHORS = new Anchor[0];
+
+        final int[][] transitions;
+        final Anchor[][] outputs;
+        final List<Rule> unanchoredRules = new ArrayList<>();
+
+        AnchorMatcher() {
+            List<int[]> trie = new ArrayList<>();
+            List<List<Anchor>> trieOutputs = new ArrayList<>();
+            trie.add(new int[ALPHABET]);
+            trieOutputs.add(new ArrayList<>());
+
+            for (Rule rule : Rule.values()) {
+                List<String> anchors = findAnchors(rule.pattern.pattern());
+                if (anchors == null) {
+                    unanchoredRules.add(rule);
+                    continue;
+                }
+                for (String text : anchors) {
+                    int state = 0;
+                    for (int i = 0; i < text.length(); i++) {
+                        int c = text.charAt(i);
+                        if (trie.get(state)[c] == 0) {
+                            trie.add(new int[ALPHABET]);
+                            trieOutputs.add(new ArrayList<>());
+                            trie.get(state)[c] = trie.size() - 1;
+                        }
+                        state = trie.get(state)[c];
+                    }
+                    trieOutputs.get(state).add(new Anchor(rule, text));
+                }
+            }
+
+            // Turn the trie into a DFA by breadth first traversal with failure links.
+            transitions = trie.toArray(new int[0][]);
+            outputs = new Anchor[transitions.length][];
+            int[] fail = new int[transitions.length];
+            Deque<Integer> queue = new ArrayDeque<>();
+            outputs[0] = NO_ANCHORS;
+            for (int c = 0; c < ALPHABET; c++)
+                if (transitions[0][c] != 0)
+                    queue.add(transitions[0][c]);
+            while (!queue.isEmpty()) {
+                int state = queue.remove();
+                List<Anchor> output = new ArrayList<>(trieOutputs.get(state));
+                output.addAll(Arrays.asList(outputs[fail[state]]));
+                outputs[state] = output.isEmpty() ? NO_ANCHORS : output.toArray(NO_ANCHORS);
+
+                for (int c = 0; c < ALPHABET; c++) {
+                    int child = transitions[state][c];
+                    if (child != 0) {
+                        fail[child] = transitions[fail[state]][c];
+                        queue.add(child);
+                    } else {
+                        transitions[state][c] = transitions[fail[state]][c];
+                    }
+                }
+            }
+        }
+
+        int next(int state, char c) {
+            return c < ALPHABET ? transitions[state][c] : 0;
+        }
+
+        /**
+         * Find the longest literal text of each top-level alternative which must be in the same line as the start of a match.
+         *
+         * @return null if some alternative has no literal text long enough
+         */
+        @Nullable
+        private static List<String> findAnchors(String regex) {
+            List<String> alternatives = splitAlternatives(regex);
+            if (alternatives.size() == 1 && regex.startsWith("(") && !regex.startsWith("(?") && closingParenthesis(regex, 0) == regex.length() - 1)
+                alternatives = splitAlternatives(regex.substring(1, regex.length() - 1));
+
+            List<String> anchors = new ArrayList<>();
+            for (String alternative : alternatives) {
+                String anchor = findAnchor(alternative);
+                if (anchor.length() < MIN_ANCHOR_LENGTH)
+                    return null;
+                anchors.add(anchor);
+            }
+            return anchors;
+        }
+
+        private static String findAnchor(String regex) {
+            String longest = "";
+            StringBuilder current = new StringBuilder();
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                char literal;
+                if (c == '\\' && i + 1 < regex.length()) {
+                    char escaped = regex.charAt(++i);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // Character classes like \d; \s, \W and line breaks may cross lines so the line of the match start is unknown after them.
+                        if ("dw".indexOf(escaped) < 0)
+                            break;
+                        longest = longer(longest, current);
+                        current.setLength(0);
+                        continue;
+                    }
+                    literal = escaped;
+                } else if (c == '(' || c == '[' || c == '|') {
+                    break;
+                } else if (".^$".indexOf(c) >= 0) {
+                    longest = longer(longest, current);
+                    current.setLength(0);
+                    continue;
+                } else if (c == '{') {
+                    int end = regex.indexOf('}', i);
+                    i = end < 0 ? regex.length() : end;
+                    continue;
+                } else if ("*?+)".indexOf(c) >= 0) {
+                    continue;
+                } else {
+                    literal = c;
+                }
+
+                char quantifier = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+                if (quantifier == '*' || quantifier == '?' || quantifier == '{') {
+                    // The literal is optional or repeated, so it ends the current run.
+                    longest = longer(longest, current);
+                    current.setLength(0);
+                } else if (literal >= ALPHABET || literal == '\n' || literal == '\r') {
+                    longest = longer(longest, current);
+                    current.setLength(0);
+                } else {
+                    current.append(literal);
+                    if (quantifier == '+') {
+                        longest = longer(longest, current);
+                        current.setLength(0);
+                    }
+                }
             }
+            return longer(longest, current);
+        }
+
+        private static String longer(String longest, CharSequence current) {
+            return current.length() > longest.length() ? current.toString() : longest;
+        }
+
+        private static List<String> splitAlternatives(String regex) {
+            List<String> result = new ArrayList<>();
+            int depth = 0, start = 0;
+            boolean inClass = false;
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (inClass) {
+                    if (c == ']') inClass = false;
+                } else if (c == '[') {
+                    inClass = true;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (c == '|' && depth == 0) {
+                    result.add(regex.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            result.add(regex.substring(start));
+            return result;
+        }
+
+        private static int closingParenthesis(String regex, int open) {
+            int depth = 0;
+            boolean inClass = false;
+            for (int i = open; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (inClass) {
+                    if (c == ']') inClass = false;
+                } else if (c == '[') {
+                    inClass = true;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
         }
-        return results;
     }
 
     private static final Pattern CRASH_REPORT_LOCATION_PATTERN = Pattern.compile("#@!@# Game crashed! Crash report saved to: #@!@# (?<location>.*)");
@@ -1,6 +1,7 @@
 package com.tungsten.fclcore.game;
 
 import static com.tungsten.fclcore.util.Logging.LOG;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
@@ -25,8 +26,10 @@ import com.tungsten.fclcore.util.io.FileUtils;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
@@ -49,6 +52,10 @@ public class DefaultGameRepository implements GameRepository {
     private File baseDirectory;
     protected Map<String, Version> versions;
     private ConcurrentHashMap<File, Optional<String>> gameVersions = new ConcurrentHashMap<>();
+    private final VersionJsonCache versionJsonCache = new VersionJsonCache();
+    private final ResolvedVersionCache resolvedVersionCache = new ResolvedVersionCache();
+
+    private static final byte[] TLAUNCHER_VERSION_FIELD = "\"tlauncherVersion\"".getBytes(UTF_8);
 
     public DefaultGameRepository(File baseDirectory) {
         this.baseDirectory = baseDirectory;
@@ -74,6 +81,26 @@ public class DefaultGameRepository implements GameRepository {
         return versions.get(id);
     }
 
+    /**
+     * Versions of this repository are only resolved again after versions are refreshed, saved, renamed or removed.
+     */
+    @Override
+    public Version resolveVersion(Version version) {
+        if (isCurrentVersion(version))
+            return resolvedVersionCache.resolve(version, v -> v.resolveWithoutCache(this));
+        return version.resolveWithoutCache(this);
+    }
+
+    @Override
+    public Version getResolvedPreservingPatchesVersion(String id) {
+        return resolvedVersionCache.resolvePreservingPatches(getVersion(id), v -> v.resolvePreservingPatches(this));
+    }
+
+    private boolean isCurrentVersion(Version version) {
+        Map<String, Version> versions = this.versions;
+        return versions != null && version.getId() != null && versions.get(version.getId()) == version;
+    }
+
     @Override
     public int getVersionCount() {
         return versions.size();
@@ -155,20 +182,24 @@ public class DefaultGameRepository implements GameRepository {
     }
 
     public Version readVersionJson(File file) throws IOException, JsonParseException {
-        String jsonText = FileUtils.readText(file);
-        try {
-            // Try TLauncher version json format
-            return JsonUtils.fromNonNullJson(jsonText, TLauncherVersion.class).toVersion();
-        } catch (JsonParseException ignored) {
+        byte[] json = Files.readAllBytes(file.toPath());
+
+        // Only TLauncher version jsons have this field, other version jsons are parsed in official format directly.
+        if (contains(json, TLAUNCHER_VERSION_FIELD)) {
+            try {
+                // Try TLauncher version json format
+                return JsonUtils.fromNonNullJsonFully(new ByteArrayInputStream(json), TLauncherVersion.class).toVersion();
+            } catch (JsonParseException ignored) {
+            }
         }
 
         try {
             // Try official version json format
-            return JsonUtils.fromNonNullJson(jsonText, Version.class);
+            return JsonUtils.fromNonNullJsonFully(new ByteArrayInputStream(json), Version.class);
         } catch (JsonParseException ignored) {
         }
 
-        LOG.warning("Cannot parse version json + " + file.toString() + "\n" + jsonText);
+        LOG.warning("Cannot parse version json + " + file.toString() + "\n" + new String(json, UTF_8));
         throw new JsonParseException("Version json incorrect");
     }
 
@@ -212,6 +243,7 @@ public class DefaultGameRepository implements GameRepository {
                     FileUtils.writeText(json, JsonUtils.GSON.toJson(version.setInheritsFrom(to)));
                 }
             }
+            resolvedVersionCache.invalidate();
             return true;
         } catch (IOException | JsonParseException | VersionNotFoundException | InvalidPathException e) {
             LOG.log(Level.WARNING, "Unable to rename version " + from + " to " + to, e);
@@ -234,6 +266,7 @@ public class DefaultGameRepository implements GameRepository {
 
         try {
             versions.remove(id);
+            resolvedVersionCache.invalidate();
 
             // remove json files first to ensure HMCL will not recognize this folder as a valid version.
             List<File> jsons = FileUtils.listFilesByExtension(removedFile, "json");
@@ -293,7 +326,7 @@ public class DefaultGameRepository implements GameRepository {
 
                 Version version;
                 try {
-                    version = readVersionJson(json);
+                    version = versionJsonCache.read(json, this::readVersionJson);
                 } catch (Exception e) {
                     LOG.log(Level.WARNING, "Malformed version json " + id, e);
                     // JsonSyntaxException or IOException or NullPointerException(!!)
@@ -301,7 +334,7 @@ public class DefaultGameRepository implements GameRepository {
                         return Stream.empty();
 
                     try {
-                        version = readVersionJson(json);
+                        version = versionJsonCache.read(json, this::readVersionJson);
                     } catch (Exception e2) {
                         LOG.log(Level.SEVERE, "User corrected version json is still malformed", e2);
                         return Stream.empty();
@@ -341,6 +374,8 @@ public class DefaultGameRepository implements GameRepository {
                 return Stream.of(version);
             }).forEachOrdered(provider::addVersion);
 
+        versionJsonCache.commit();
+
         for (Version version : provider.getVersionMap().values()) {
             try {
                 Version resolved = version.resolve(provider);
@@ -355,6 +390,18 @@ public class DefaultGameRepository implements GameRepository {
 
         this.gameVersions.clear();
         this.versions = versions;
+        resolvedVersionCache.invalidate();
+    }
+
+    private static boolean contains(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++)
+                if (data[i + j] != pattern[j])
+                    continue outer;
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -369,7 +416,9 @@ public class DefaultGameRepository implements GameRepository {
     @Override
     public AssetIndex getAssetIndex(String version, String assetId) throws IOException {
         try {
-            return Objects.requireNonNull(JsonUtils.GSON.fromJson(FileUtils.readText(getIndexFile(version, assetId)), AssetIndex.class));
+            try (InputStream input = Files.newInputStream(getIndexFile(version, assetId))) {
+                return Objects.requireNonNull(JsonUtils.fromJsonFully(input, AssetIndex.class));
+            }
         } catch (JsonParseException | NullPointerException e) {
             throw new IOException("Asset index file malformed", e);
         }
@@ -430,8 +479,10 @@ public class DefaultGameRepository implements GameRepository {
         if (!Files.isRegularFile(indexFile))
             return assetsDir;
 
-        String assetIndexContent = FileUtils.readText(indexFile);
-        AssetIndex index = JsonUtils.GSON.fromJson(assetIndexContent, AssetIndex.class);
+        AssetIndex index;
+        try (InputStream input = Files.newInputStream(indexFile)) {
+            index = JsonUtils.fromJsonFully(input, AssetIndex.class);
+        }
 
         if (index == null)
             return assetsDir;
@@ -461,6 +512,7 @@ public class DefaultGameRepository implements GameRepository {
 
     public Task<Version> saveAsync(Version version) {
         this.gameVersions.remove(getVersionJar(version));
+        this.resolvedVersionCache.invalidate();
         if (version.isResolvedPreservingPatches()) {
             return new VersionJsonSaveTask(this, MaintainTask.maintainPreservingPatches(this, version));
         } else {
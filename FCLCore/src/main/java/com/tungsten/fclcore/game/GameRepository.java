@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 /**
  * Supports operations on versioning.
@@ -218,6 +219,16 @@ public interface GameRepository extends VersionProvider {
     Path getLoggingObject(String version, String assetId, LoggingInfo loggingInfo);
 
     default List<String> getClasspath(Version version) {
+        return getClasspath(version, f -> f.exists() && f.isFile());
+    }
+
+    /**
+     * Get the classpath of the given version.
+     *
+     * @param version the resolved version
+     * @param available tells whether a library file exists and can be put into the classpath
+     */
+    default List<String> getClasspath(Version version, Predicate<File> available) {
         List<String> classpath = new ArrayList<>();
         if (version.getMinimumLauncherVersion() >= 21) {
             classpath.add(FCLPath.LWJGL3_DIR + "/lwjgl.jar");
@@ -235,7 +246,7 @@ public interface GameRepository extends VersionProvider {
         for (Library library : version.getLibraries())
             if (library.appliesToCurrentEnvironment() && !library.isNative()) {
                 File f = getLibraryFile(version, library);
-                if (f.exists() && f.isFile())
+                if (available.test(f))
                     classpath.add(f.getAbsolutePath());
             }
         return classpath;
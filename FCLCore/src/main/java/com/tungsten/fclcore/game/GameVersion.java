@@ -5,8 +5,7 @@ import static com.tungsten.fclcore.util.Logging.LOG;
 
 import com.google.gson.JsonParseException;
 import com.tungsten.fclcore.util.gson.JsonUtils;
-import com.tungsten.fclcore.util.io.CompressingUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 
 import org.jenkinsci.constant_pool_scanner.ConstantPool;
 import org.jenkinsci.constant_pool_scanner.ConstantPoolScanner;
@@ -15,9 +14,6 @@ import org.jenkinsci.constant_pool_scanner.StringConstant;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,9 +25,9 @@ public final class GameVersion {
     private GameVersion() {
     }
 
-    private static Optional<String> getVersionFromJson(Path versionJson) {
+    private static Optional<String> getVersionFromJson(ZipReader gameJar) {
         try {
-            Map<?, ?> version = JsonUtils.fromNonNullJson(FileUtils.readText(versionJson), Map.class);
+            Map<?, ?> version = JsonUtils.fromNonNullJson(gameJar.readText("version.json"), Map.class);
             return tryCast(version.get("name"), String.class);
         } catch (IOException | JsonParseException e) {
             LOG.log(Level.WARNING, "Failed to parse version.json", e);
@@ -75,23 +71,22 @@ public final class GameVersion {
         if (file == null || !file.exists() || !file.isFile() || !file.canRead())
             return Optional.empty();
 
-        try (FileSystem gameJar = CompressingUtils.createReadOnlyZipFileSystem(file.toPath())) {
-            Path versionJson = gameJar.getPath("version.json");
-            if (Files.exists(versionJson)) {
-                Optional<String> result = getVersionFromJson(versionJson);
+        try (ZipReader gameJar = ZipReader.open(file.toPath())) {
+            if (gameJar.contains("version.json")) {
+                Optional<String> result = getVersionFromJson(gameJar);
                 if (result.isPresent())
                     return result;
             }
 
-            Path minecraft = gameJar.getPath("net/minecraft/client/Minecraft.class");
-            if (Files.exists(minecraft)) {
-                Optional<String> result = getVersionOfClassMinecraft(Files.readAllBytes(minecraft));
+            ZipReader.Entry minecraft = gameJar.getEntry("net/minecraft/client/Minecraft.class");
+            if (minecraft != null) {
+                Optional<String> result = getVersionOfClassMinecraft(gameJar.readBytes(minecraft));
                 if (result.isPresent())
                     return result;
             }
-            Path minecraftServer = gameJar.getPath("net/minecraft/server/MinecraftServer.class");
-            if (Files.exists(minecraftServer))
-                return getVersionFromClassMinecraftServer(Files.readAllBytes(minecraftServer));
+            ZipReader.Entry minecraftServer = gameJar.getEntry("net/minecraft/server/MinecraftServer.class");
+            if (minecraftServer != null)
+                return getVersionFromClassMinecraftServer(gameJar.readBytes(minecraftServer));
             return Optional.empty();
         } catch (IOException e) {
             return Optional.empty();
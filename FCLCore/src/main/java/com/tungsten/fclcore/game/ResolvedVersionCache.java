@@ -0,0 +1,55 @@
+package com.tungsten.fclcore.game;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Remembers resolved versions keyed by version id, so that a version and its parents are not merged again
+ * every time the same version is resolved.
+ *
+ * An entry is only used for the same version object it was resolved from.
+ * Since resolved versions also depend on the parents, all entries must be invalidated when any version is changed.
+ */
+final class ResolvedVersionCache {
+
+    private volatile Generation generation = new Generation();
+
+    Version resolve(Version version, Function<Version, Version> resolver) {
+        return get(generation.resolved, version, resolver);
+    }
+
+    Version resolvePreservingPatches(Version version, Function<Version, Version> resolver) {
+        return get(generation.resolvedPreservingPatches, version, resolver);
+    }
+
+    private static Version get(Map<String, Entry> entries, Version version, Function<Version, Version> resolver) {
+        Entry entry = entries.get(version.getId());
+        if (entry != null && entry.source == version)
+            return entry.resolved;
+
+        // Entries resolved while being invalidated go to the map of the old generation and are discarded.
+        Version resolved = resolver.apply(version);
+        entries.put(version.getId(), new Entry(version, resolved));
+        return resolved;
+    }
+
+    void invalidate() {
+        generation = new Generation();
+    }
+
+    private static final class Generation {
+        final Map<String, Entry> resolved = new ConcurrentHashMap<>();
+        final Map<String, Entry> resolvedPreservingPatches = new ConcurrentHashMap<>();
+    }
+
+    private static final class Entry {
+        final Version source;
+        final Version resolved;
+
+        Entry(Version source, Version resolved) {
+            this.source = source;
+            this.resolved = resolved;
+        }
+    }
+}
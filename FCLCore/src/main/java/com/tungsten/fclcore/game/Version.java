@@ -4,6 +4,7 @@ import com.google.gson.JsonParseException;
 import com.tungsten.fclcore.util.Constants;
 import com.tungsten.fclcore.util.Lang;
 import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.PersistentList;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fclcore.util.ToStringBuilder;
 import com.tungsten.fclcore.util.gson.JsonMap;
@@ -85,8 +86,8 @@ public class Version implements Comparable<Version>, Validation {
         this.assets = assets;
         this.complianceLevel = complianceLevel;
         this.javaVersion = javaVersion;
-        this.libraries = Lang.copyList(libraries);
-        this.compatibilityRules = Lang.copyList(compatibilityRules);
+        this.libraries = copyList(libraries);
+        this.compatibilityRules = copyList(compatibilityRules);
         this.downloads = downloads == null ? null : new JsonMap<>(downloads);
         this.logging = logging == null ? null : new JsonMap<>(logging);
         this.type = type;
@@ -95,7 +96,14 @@ public class Version implements Comparable<Version>, Validation {
         this.minimumLauncherVersion = minimumLauncherVersion;
         this.hidden = hidden;
         this.root = root;
-        this.patches = Lang.copyList(patches);
+        this.patches = copyList(patches);
+    }
+
+    /**
+     * Lists are kept as persistent lists, so that versions derived from this one share them instead of copying.
+     */
+    private static <T> List<T> copyList(List<T> list) {
+        return list == null || list.isEmpty() ? null : PersistentList.copyOf(list);
     }
 
     public Optional<String> getMinecraftArguments() {
@@ -221,6 +229,10 @@ public class Version implements Comparable<Version>, Validation {
      */
     public Version resolve(VersionProvider provider) throws VersionNotFoundException {
         if (isResolved()) return this;
+        return provider == null ? resolveWithoutCache(null) : provider.resolveVersion(this);
+    }
+
+    Version resolveWithoutCache(VersionProvider provider) throws VersionNotFoundException {
         return resolve(provider, new HashSet<>()).markAsResolved();
     }
 
@@ -239,8 +251,8 @@ public class Version implements Comparable<Version>, Validation {
                 assets == null ? parent.assets : assets,
                 complianceLevel,
                 javaVersion == null ? parent.javaVersion : javaVersion,
-                Lang.merge(this.libraries, parent.libraries),
-                Lang.merge(parent.compatibilityRules, this.compatibilityRules),
+                PersistentList.concat(this.libraries, parent.libraries),
+                PersistentList.concat(parent.compatibilityRules, this.compatibilityRules),
                 downloads == null ? parent.downloads : downloads,
                 logging == null ? parent.logging : logging,
                 type == null ? parent.type : type,
@@ -249,7 +261,7 @@ public class Version implements Comparable<Version>, Validation {
                 Lang.merge(minimumLauncherVersion, parent.minimumLauncherVersion, Math::max),
                 hidden,
                 true,
-                isPatch ? parent.patches : Lang.merge(Lang.merge(parent.patches, Collections.singleton(toPatch())), patches));
+                isPatch ? parent.patches : PersistentList.concat(PersistentList.concat(parent.patches, Collections.singleton(toPatch())), patches));
     }
 
     protected Version resolve(VersionProvider provider, Set<String> resolvedSoFar) throws VersionNotFoundException {
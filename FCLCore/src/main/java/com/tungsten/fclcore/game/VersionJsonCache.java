@@ -0,0 +1,83 @@
+package com.tungsten.fclcore.game;
+
+import com.google.gson.JsonParseException;
+import com.tungsten.fclcore.util.function.ExceptionalFunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers versions parsed from version jsons keyed by (path, size, mtime),
+ * so that unchanged version jsons are not parsed again on every refresh.
+ */
+final class VersionJsonCache {
+
+    /**
+     * Files modified within this interval before being parsed may be modified again
+     * without changing their mtime on file systems with coarse timestamps, so we do not remember them.
+     */
+    private static final long RACY_INTERVAL = 2000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Get the version of the version json, only parse the file with the given parser if it has been changed since last time.
+     */
+    Version read(File json, ExceptionalFunction<File, Version, IOException> parser) throws IOException, JsonParseException {
+        Path path = json.toPath();
+        String key = path.toAbsolutePath().normalize().toString();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(size, lastModified)) {
+            entry.used = true;
+            return entry.version;
+        }
+
+        long parsedAt = System.currentTimeMillis();
+        Version version = parser.apply(json);
+
+        BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class);
+        if (after.size() == size && after.lastModifiedTime().toMillis() == lastModified && lastModified < parsedAt - RACY_INTERVAL) {
+            Entry newEntry = new Entry(size, lastModified, version);
+            newEntry.used = true;
+            entries.put(key, newEntry);
+        } else {
+            entries.remove(key);
+        }
+        return version;
+    }
+
+    /**
+     * Forget version jsons not read since last time, so that removed versions are not kept in memory.
+     */
+    void commit() {
+        entries.values().removeIf(entry -> !entry.used);
+        for (Entry entry : entries.values())
+            entry.used = false;
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final Version version;
+        private volatile boolean used;
+
+        Entry(long size, long lastModified, Version version) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.version = version;
+        }
+
+        boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+}
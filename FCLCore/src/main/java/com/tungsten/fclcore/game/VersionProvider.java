@@ -22,4 +22,16 @@ public interface VersionProvider {
      * @return the version you want
      */
     Version getVersion(String id) throws VersionNotFoundException;
+
+    /**
+     * Resolve the given version with versions of this provider.
+     * Providers may remember the resolved versions of their own versions.
+     *
+     * @param version the version not resolved yet
+     * @return the resolved version
+     * @see Version#resolve(VersionProvider)
+     */
+    default Version resolveVersion(Version version) throws VersionNotFoundException {
+        return version.resolveWithoutCache(this);
+    }
 }
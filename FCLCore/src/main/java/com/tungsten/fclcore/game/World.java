@@ -9,6 +9,7 @@ import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.io.CompressingUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.io.Unzipper;
+import com.tungsten.fclcore.util.io.ZipReader;
 import com.tungsten.fclcore.util.io.Zipper;
 
 import java.io.IOException;
@@ -44,7 +45,7 @@ public class World {
     private void loadFromDirectory() throws IOException {
         fileName = FileUtils.getName(file);
         Path levelDat = file.resolve("level.dat");
-        getWorldName(levelDat);
+        getWorldName(parseLevelDat(levelDat));
     }
 
     public Path getFile() {
@@ -71,34 +72,39 @@ public class World {
         return gameVersion;
     }
 
-    private void loadFromZipImpl(Path root) throws IOException {
-        Path levelDat = root.resolve("level.dat");
-        if (!Files.exists(levelDat))
-            throw new IOException("Not a valid world zip file since level.dat cannot be found.");
-
-        getWorldName(levelDat);
-    }
-
     private void loadFromZip() throws IOException {
-        try (FileSystem fs = CompressingUtils.readonly(file).setAutoDetectEncoding(true).build()) {
-            Path cur = fs.getPath("/level.dat");
-            if (Files.isRegularFile(cur)) {
+        try (ZipReader zip = openZip(file)) {
+            ZipReader.Entry levelDat = zip.getEntry("level.dat");
+            if (levelDat != null) {
                 fileName = FileUtils.getName(file);
-                loadFromZipImpl(fs.getPath("/"));
+                getWorldName(parseLevelDat(zip, levelDat));
                 return;
             }
 
-            try (Stream<Path> stream = Files.list(fs.getPath("/"))) {
-                Path root = stream.filter(Files::isDirectory).findAny()
-                        .orElseThrow(() -> new IOException("Not a valid world zip file"));
-                fileName = FileUtils.getName(root);
-                loadFromZipImpl(root);
-            }
+            // The world may be packed in a top-level directory
+            levelDat = zip.getEntries().stream()
+                    .filter(entry -> {
+                        String name = entry.getName();
+                        int slash = name.indexOf('/');
+                        return slash > 0 && name.substring(slash + 1).equals("level.dat");
+                    })
+                    .findAny()
+                    .orElseThrow(() -> new IOException("Not a valid world zip file since level.dat cannot be found."));
+            fileName = levelDat.getName().substring(0, levelDat.getName().indexOf('/'));
+            getWorldName(parseLevelDat(zip, levelDat));
         }
     }
 
-    private void getWorldName(Path levelDat) throws IOException {
-        CompoundTag nbt = parseLevelDat(levelDat);
+    private static ZipReader openZip(Path file) throws IOException {
+        ZipReader zip = ZipReader.open(file);
+        if (!zip.hasMalformedNames())
+            return zip;
+
+        zip.close();
+        return ZipReader.open(file, CompressingUtils.findSuitableEncoding(file));
+    }
+
+    private void getWorldName(CompoundTag nbt) throws IOException {
 
         CompoundTag data = nbt.get("Data");
         if (data == null)
@@ -204,7 +210,15 @@ public class World {
     }
 
     private static CompoundTag parseLevelDat(Path path) throws IOException {
-        try (InputStream is = new GZIPInputStream(Files.newInputStream(path))) {
+        return parseLevelDat(Files.newInputStream(path));
+    }
+
+    private static CompoundTag parseLevelDat(ZipReader zip, ZipReader.Entry entry) throws IOException {
+        return parseLevelDat(zip.getInputStream(entry));
+    }
+
+    private static CompoundTag parseLevelDat(InputStream input) throws IOException {
+        try (InputStream is = new GZIPInputStream(input)) {
             Tag nbt = NBTIO.readTag(is);
             if (nbt instanceof CompoundTag)
                 return (CompoundTag) nbt;
@@ -26,6 +26,7 @@ import com.tungsten.fclcore.util.platform.CommandBuilder;
 import com.tungsten.fclcore.util.versioning.VersionNumber;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Supplier;
@@ -40,8 +41,11 @@ public class DefaultLauncher extends Launcher {
         super(context, surface, repository, version, authInfo, options, callback);
     }
 
+    private LaunchPlan launchPlan;
+
     private CommandBuilder generateCommandLine() throws IOException {
         CommandBuilder res = new CommandBuilder();
+        launchPlan = LaunchPlan.of(repository, version);
 
         switch (options.getProcessPriority()) {
             case HIGH:
@@ -120,12 +124,7 @@ public class DefaultLauncher extends Launcher {
         res.addDefault("-Dlwjgl.platform=", "FCL");
         res.addDefault("-Dorg.lwjgl.opengl.libname=", "${gl_lib_name}");
 
-        List<String> classpath = repository.getClasspath(version);
-
-        File jar = repository.getVersionJar(version);
-        if (!jar.exists() || !jar.isFile())
-            throw new IOException("Minecraft jar does not exist");
-        classpath.add(jar.getAbsolutePath());
+        List<String> classpath = launchPlan.getClasspath();
 
         // Provided Minecraft arguments
         Path gameAssets = repository.getActualAssetDirectory(version.getId(), version.getAssetIndex().getId());
@@ -206,8 +205,12 @@ public class DefaultLauncher extends Launcher {
     protected void appendJvmArgs(CommandBuilder result) {
     }
 
+    private Optional<String> getGameVersion() {
+        return launchPlan != null ? launchPlan.getGameVersion() : repository.getGameVersion(version);
+    }
+
     private boolean isUsingLog4j() {
-        return VersionNumber.VERSION_COMPARATOR.compare(repository.getGameVersion(version).orElse("1.7"), "1.7") >= 0;
+        return VersionNumber.VERSION_COMPARATOR.compare(getGameVersion().orElse("1.7"), "1.7") >= 0;
     }
 
     public File getLog4jConfigurationFile() {
@@ -217,14 +220,23 @@ public class DefaultLauncher extends Launcher {
     public void extractLog4jConfigurationFile() throws IOException {
         File targetFile = getLog4jConfigurationFile();
         InputStream source;
-        if (VersionNumber.VERSION_COMPARATOR.compare(repository.getGameVersion(version).orElse("0.0"), "1.12") < 0) {
+        if (VersionNumber.VERSION_COMPARATOR.compare(getGameVersion().orElse("0.0"), "1.12") < 0) {
             source = DefaultLauncher.class.getResourceAsStream("/assets/game/log4j2-1.7.xml");
         } else {
             source = DefaultLauncher.class.getResourceAsStream("/assets/game/log4j2-1.12.xml");
         }
 
-        try (InputStream input = source; OutputStream output = new FileOutputStream(targetFile)) {
-            IOUtils.copyTo(input, output);
+        byte[] configuration;
+        try (InputStream input = source) {
+            configuration = IOUtils.readFullyAsByteArray(input);
+        }
+
+        // The configuration is usually extracted by the previous launch already.
+        if (targetFile.length() == configuration.length && Arrays.equals(Files.readAllBytes(targetFile.toPath()), configuration))
+            return;
+
+        try (OutputStream output = new FileOutputStream(targetFile)) {
+            output.write(configuration);
         }
     }
 
@@ -0,0 +1,142 @@
+package com.tungsten.fclcore.launch;
+
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import com.google.gson.JsonParseException;
+import com.tungsten.fclcore.game.GameRepository;
+import com.tungsten.fclcore.game.Version;
+import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.Hex;
+import com.tungsten.fclcore.util.gson.JsonUtils;
+import com.tungsten.fclcore.util.io.FileUtils;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Parts of the launch command of a version that only change with the files of the version, remembered across launches,
+ * so that launching the version again does not check every library file or read the game version from the jar.
+ *
+ * A plan is keyed by the digest of what it is made from: the classpath candidates of the version,
+ * and the path, size and modification time of the game jar.
+ * Library files missing when the plan was made are checked again on every launch, since they may be downloaded later.
+ */
+final class LaunchPlan {
+
+    private static final String FILE_NAME = "launch-plan.cfg";
+
+    private final String key;
+    private final List<String> classpath;
+    private final List<String> missingLibraries;
+    @Nullable
+    private final String gameVersion;
+
+    /**
+     * For Gson.
+     */
+    private LaunchPlan() {
+        this(null, null, null, null);
+    }
+
+    private LaunchPlan(String key, List<String> classpath, List<String> missingLibraries, @Nullable String gameVersion) {
+        this.key = key;
+        this.classpath = classpath;
+        this.missingLibraries = missingLibraries;
+        this.gameVersion = gameVersion;
+    }
+
+    /**
+     * @return the classpath including the game jar
+     */
+    public List<String> getClasspath() {
+        return Collections.unmodifiableList(classpath);
+    }
+
+    public Optional<String> getGameVersion() {
+        return Optional.ofNullable(gameVersion);
+    }
+
+    private boolean isValid(String key) {
+        if (!key.equals(this.key) || classpath == null || missingLibraries == null)
+            return false;
+        for (String library : missingLibraries)
+            if (new File(library).isFile())
+                return false;
+        return true;
+    }
+
+    /**
+     * Get the plan of the given version, which is made again if files of the version have changed.
+     *
+     * @param version the resolved version
+     * @throws IOException if the game jar does not exist
+     */
+    static LaunchPlan of(GameRepository repository, Version version) throws IOException {
+        File jar = repository.getVersionJar(version);
+        BasicFileAttributes jarAttributes;
+        try {
+            jarAttributes = Files.readAttributes(jar.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            jarAttributes = null;
+        }
+        if (jarAttributes == null || !jarAttributes.isRegularFile())
+            throw new IOException("Minecraft jar does not exist");
+
+        List<String> candidates = repository.getClasspath(version, f -> true);
+        StringBuilder builder = new StringBuilder()
+                .append(version.getId()).append('\n')
+                .append(jar.getAbsolutePath()).append('\n')
+                .append(jarAttributes.size()).append('\n')
+                .append(jarAttributes.lastModifiedTime().toMillis()).append('\n');
+        for (String candidate : candidates)
+            builder.append(candidate).append('\n');
+        String key = Hex.encodeHex(DigestUtils.digest("SHA-1", builder.toString()));
+
+        Path file = repository.getVersionRoot(version.getId()).toPath().resolve(FILE_NAME);
+        LaunchPlan plan = read(file);
+        if (plan != null && plan.isValid(key))
+            return plan;
+
+        List<String> classpath = repository.getClasspath(version);
+        Set<String> available = new HashSet<>(classpath);
+        List<String> missingLibraries = new ArrayList<>();
+        for (String candidate : candidates)
+            if (!available.contains(candidate))
+                missingLibraries.add(candidate);
+        classpath.add(jar.getAbsolutePath());
+
+        plan = new LaunchPlan(key, classpath, missingLibraries, repository.getGameVersion(version).orElse(null));
+        try {
+            FileUtils.writeText(file.toFile(), JsonUtils.GSON.toJson(plan));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save launch plan " + file, e);
+        }
+        return plan;
+    }
+
+    @Nullable
+    private static LaunchPlan read(Path file) {
+        if (!Files.isRegularFile(file))
+            return null;
+        try (InputStream input = Files.newInputStream(file)) {
+            return JsonUtils.fromJsonFully(input, LaunchPlan.class);
+        } catch (IOException | JsonParseException e) {
+            LOG.log(Level.WARNING, "Unable to read launch plan " + file, e);
+            return null;
+        }
+    }
+}
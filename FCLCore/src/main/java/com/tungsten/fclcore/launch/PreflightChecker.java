@@ -0,0 +1,206 @@
+package com.tungsten.fclcore.launch;
+
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import com.tungsten.fclcore.download.MaintainTask;
+import com.tungsten.fclcore.download.game.GameLibrariesTask;
+import com.tungsten.fclcore.game.AssetIndex;
+import com.tungsten.fclcore.game.AssetIndexInfo;
+import com.tungsten.fclcore.game.AssetObject;
+import com.tungsten.fclcore.game.DefaultGameRepository;
+import com.tungsten.fclcore.game.Library;
+import com.tungsten.fclcore.game.Version;
+import com.tungsten.fclcore.game.VersionNotFoundException;
+import com.tungsten.fclcore.util.FileDigestCache;
+import com.tungsten.fclcore.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Checks in the background whether the selected version can be launched without downloading anything,
+ * so that launching it soon after does not check every file again while the user waits.
+ *
+ * The version checked is the resolved and maintained version, which is the one launched. It is ready if the game jar,
+ * every library applying to the current environment, the asset index and every asset object exist.
+ * Like the launch path, files are only checked for existence.
+ * The ready status is dropped when the version is changed in the repository, or after {@link #READY_TTL} milliseconds.
+ *
+ * After a version is found ready, its launch plan is made, and the game jar and the first libraries of the classpath
+ * are read once to bring them into the page cache, so that the game loads its first classes faster.
+ * Versions still ready are not checked or warmed up again.
+ */
+public final class PreflightChecker {
+
+    private static final long READY_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * At most this many bytes are read to warm up the page cache, the cache of the system is not unlimited.
+     */
+    private static final long WARM_UP_LIMIT = 128 * 1024 * 1024;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PreflightChecker");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final DefaultGameRepository repository;
+    private final Map<String, Ready> readyVersions = new ConcurrentHashMap<>();
+    private volatile String requested;
+    private volatile String pending;
+
+    public PreflightChecker(DefaultGameRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Check the given version in the background, checks of versions requested before are abandoned.
+     */
+    public void check(String id) {
+        requested = id;
+        // The same version is often requested several times in a row, when it is selected and versions are refreshed.
+        if (id.equals(pending)) return;
+        pending = id;
+        EXECUTOR.execute(() -> {
+            pending = null;
+            if (isAbandoned(id)) return;
+            try {
+                checkNow(id);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Unable to check version " + id + " before launching", e);
+            }
+        });
+    }
+
+    /**
+     * @return true if all files of the version were found recently and the version has not been changed since.
+     */
+    public boolean isReady(String id) {
+        Ready ready = readyVersions.get(id);
+        if (ready == null) return false;
+        if (System.currentTimeMillis() - ready.checkedTime > READY_TTL) {
+            readyVersions.remove(id, ready);
+            return false;
+        }
+
+        try {
+            return repository.isLoaded() && repository.getResolvedVersion(id) == ready.source;
+        } catch (VersionNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Drop the ready status of the given version, for example when files of the version are found broken.
+     */
+    public void invalidate(String id) {
+        readyVersions.remove(id);
+    }
+
+    private boolean isAbandoned(String id) {
+        return !id.equals(requested);
+    }
+
+    private void checkNow(String id) throws IOException {
+        if (!repository.isLoaded() || !repository.hasVersion(id)) return;
+        // Files of a ready version were checked and warmed up recently, selecting it again should not read them again.
+        if (isReady(id)) return;
+        readyVersions.remove(id);
+
+        long checkedTime = System.currentTimeMillis();
+        Version source = repository.getResolvedVersion(id);
+        Version version = MaintainTask.maintain(repository, source);
+
+        File jar = repository.getVersionJar(version);
+        if (!jar.isFile() || jar.length() == 0) {
+            notReady(id, "game jar " + jar + " is missing");
+            return;
+        }
+
+        for (Library library : version.getLibraries()) {
+            if (isAbandoned(id)) return;
+            if (library.appliesToCurrentEnvironment() && GameLibrariesTask.shouldDownloadLibrary(repository, version, library, false)) {
+                notReady(id, "library " + library.getName() + " is missing");
+                return;
+            }
+        }
+
+        AssetIndexInfo assetIndexInfo = version.getAssetIndex();
+        if (assetIndexInfo == null) {
+            notReady(id, "it has no asset index");
+            return;
+        }
+        Path assetIndexFile = repository.getIndexFile(id, assetIndexInfo.getId());
+        if (!Files.isRegularFile(assetIndexFile)) {
+            notReady(id, "asset index " + assetIndexFile + " is missing");
+            return;
+        }
+        if (StringUtils.isNotBlank(assetIndexInfo.getSha1()) && assetIndexInfo.getUrl().contains(assetIndexInfo.getSha1())
+                && !FileDigestCache.getInstance().digest("SHA-1", assetIndexFile).equalsIgnoreCase(assetIndexInfo.getSha1())) {
+            notReady(id, "asset index " + assetIndexFile + " is outdated");
+            return;
+        }
+        AssetIndex assetIndex = repository.getAssetIndex(id, assetIndexInfo.getId());
+        for (AssetObject object : assetIndex.getObjects().values()) {
+            if (isAbandoned(id)) return;
+            if (!Files.isRegularFile(repository.getAssetObject(id, assetIndexInfo.getId(), object))) {
+                notReady(id, "asset " + object.getHash() + " is missing");
+                return;
+            }
+        }
+
+        readyVersions.put(id, new Ready(source, checkedTime));
+        LOG.info("Version " + id + " is ready to launch, checked in " + (System.currentTimeMillis() - checkedTime) + " ms");
+
+        warmUp(id, LaunchPlan.of(repository, version), jar);
+    }
+
+    private void notReady(String id, String reason) {
+        LOG.info("Version " + id + " needs completion before launching, " + reason);
+    }
+
+    private void warmUp(String id, LaunchPlan plan, File jar) {
+        List<Path> files = new ArrayList<>();
+        files.add(jar.toPath());
+        for (String entry : plan.getClasspath())
+            if (!entry.equals(jar.getAbsolutePath()))
+                files.add(Paths.get(entry));
+
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = WARM_UP_LIMIT;
+        for (Path file : files) {
+            if (isAbandoned(id) || remaining <= 0) return;
+            try (InputStream input = Files.newInputStream(file)) {
+                int n;
+                while (remaining > 0 && (n = input.read(buffer)) >= 0)
+                    remaining -= n;
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Unable to read " + file, e);
+            }
+        }
+    }
+
+    private static final class Ready {
+        final Version source;
+        final long checkedTime;
+
+        Ready(Version source, long checkedTime) {
+            this.source = source;
+            this.checkedTime = checkedTime;
+        }
+    }
+}
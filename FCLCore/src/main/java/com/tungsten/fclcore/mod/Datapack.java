@@ -56,7 +56,7 @@ public class Datapack {
                     .setReplaceExistentFile(true)
                     .setFilter(new Unzipper.FileFilter() {
                         @Override
-                        public boolean accept(Path destPath, boolean isDirectory, Path zipEntry, String entryPath) {
+                        public boolean accept(String zipEntry, boolean isDirectory, Path destPath, String entryPath) {
                             // We will merge resources.zip instead of replacement.
                             return !entryPath.equals("resources.zip");
                         }
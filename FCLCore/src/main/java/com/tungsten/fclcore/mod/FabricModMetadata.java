@@ -3,13 +3,10 @@ package com.tungsten.fclcore.mod;
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
 import com.tungsten.fclcore.util.gson.JsonUtils;
-import com.tungsten.fclcore.util.io.CompressingUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
@@ -40,17 +37,20 @@ public final class FabricModMetadata {
     }
 
     public static LocalModFile fromFile(ModManager modManager, Path modFile) throws IOException, JsonParseException {
-        try (FileSystem fs = CompressingUtils.createReadOnlyZipFileSystem(modFile)) {
-            Path mcmod = fs.getPath("fabric.mod.json");
-            if (Files.notExists(mcmod))
-                throw new IOException("File " + modFile + " is not a Fabric mod.");
-            FabricModMetadata metadata = JsonUtils.fromNonNullJson(FileUtils.readText(mcmod), FabricModMetadata.class);
-            String authors = metadata.authors == null ? "" : metadata.authors.stream().map(author -> author.name).collect(Collectors.joining(", "));
-            return new LocalModFile(modManager, modManager.getLocalMod(metadata.id, ModLoaderType.FABRIC), modFile, metadata.name, new LocalModFile.Description(metadata.description),
-                    authors, metadata.version, "", metadata.contact != null ? metadata.contact.getOrDefault("homepage", "") : "", metadata.icon);
+        try (ZipReader zip = ZipReader.open(modFile)) {
+            return fromFile(modManager, modFile, zip);
         }
     }
 
+    public static LocalModFile fromFile(ModManager modManager, Path modFile, ZipReader zip) throws IOException, JsonParseException {
+        if (!zip.contains("fabric.mod.json"))
+            throw new IOException("File " + modFile + " is not a Fabric mod.");
+        FabricModMetadata metadata = JsonUtils.fromNonNullJson(zip.readText("fabric.mod.json"), FabricModMetadata.class);
+        String authors = metadata.authors == null ? "" : metadata.authors.stream().map(author -> author.name).collect(Collectors.joining(", "));
+        return new LocalModFile(modManager, modManager.getLocalMod(metadata.id, ModLoaderType.FABRIC), modFile, metadata.name, new LocalModFile.Description(metadata.description),
+                authors, metadata.version, "", metadata.contact != null ? metadata.contact.getOrDefault("homepage", "") : "", metadata.icon);
+    }
+
     @JsonAdapter(FabricModAuthorSerializer.class)
     public static final class FabricModAuthor {
         private final String name;
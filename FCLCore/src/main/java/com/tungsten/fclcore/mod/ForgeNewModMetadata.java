@@ -4,12 +4,10 @@ import static com.tungsten.fclcore.util.Logging.LOG;
 
 import com.google.gson.JsonParseException;
 import com.moandjiezana.toml.Toml;
-import com.tungsten.fclcore.util.io.CompressingUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
@@ -114,28 +112,30 @@ public final class ForgeNewModMetadata {
     }
 
     public static LocalModFile fromFile(ModManager modManager, Path modFile) throws IOException, JsonParseException {
-        try (FileSystem fs = CompressingUtils.createReadOnlyZipFileSystem(modFile)) {
-            Path modstoml = fs.getPath("META-INF/mods.toml");
-            if (Files.notExists(modstoml))
-                throw new IOException("File " + modFile + " is not a Forge 1.13+ mod.");
-            ForgeNewModMetadata metadata = new Toml().read(FileUtils.readText(modstoml)).to(ForgeNewModMetadata.class);
-            if (metadata == null || metadata.getMods().isEmpty())
-                throw new IOException("Mod " + modFile + " `mods.toml` is malformed..");
-            Mod mod = metadata.getMods().get(0);
-            Path manifestMF = fs.getPath("META-INF/MANIFEST.MF");
-            String jarVersion = "";
-            if (Files.exists(manifestMF)) {
-                try {
-                    Manifest manifest = new Manifest(Files.newInputStream(manifestMF));
-                    jarVersion = manifest.getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_VERSION);
-                } catch (IOException e) {
-                    LOG.log(Level.WARNING, "Failed to parse MANIFEST.MF in file " + modFile);
-                }
+        try (ZipReader zip = ZipReader.open(modFile)) {
+            return fromFile(modManager, modFile, zip);
+        }
+    }
+
+    public static LocalModFile fromFile(ModManager modManager, Path modFile, ZipReader zip) throws IOException, JsonParseException {
+        if (!zip.contains("META-INF/mods.toml"))
+            throw new IOException("File " + modFile + " is not a Forge 1.13+ mod.");
+        ForgeNewModMetadata metadata = new Toml().read(zip.readText("META-INF/mods.toml")).to(ForgeNewModMetadata.class);
+        if (metadata == null || metadata.getMods().isEmpty())
+            throw new IOException("Mod " + modFile + " `mods.toml` is malformed..");
+        Mod mod = metadata.getMods().get(0);
+        String jarVersion = "";
+        if (zip.contains("META-INF/MANIFEST.MF")) {
+            try (InputStream input = zip.getInputStream("META-INF/MANIFEST.MF")) {
+                Manifest manifest = new Manifest(input);
+                jarVersion = manifest.getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_VERSION);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to parse MANIFEST.MF in file " + modFile);
             }
-            return new LocalModFile(modManager, modManager.getLocalMod(mod.getModId(), ModLoaderType.FORGE), modFile, mod.getDisplayName(), new LocalModFile.Description(mod.getDescription()),
-                    mod.getAuthors(), mod.getVersion().replace("${file.jarVersion}", jarVersion), "",
-                    mod.getDisplayURL(),
-                    metadata.getLogoFile());
         }
+        return new LocalModFile(modManager, modManager.getLocalMod(mod.getModId(), ModLoaderType.FORGE), modFile, mod.getDisplayName(), new LocalModFile.Description(mod.getDescription()),
+                mod.getAuthors(), mod.getVersion().replace("${file.jarVersion}", jarVersion), "",
+                mod.getDisplayURL(),
+                metadata.getLogoFile());
     }
 }
@@ -5,12 +5,9 @@ import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fclcore.util.gson.JsonUtils;
-import com.tungsten.fclcore.util.io.CompressingUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -98,27 +95,30 @@ public final class ForgeOldModMetadata {
     }
 
     public static LocalModFile fromFile(ModManager modManager, Path modFile) throws IOException, JsonParseException {
-        try (FileSystem fs = CompressingUtils.createReadOnlyZipFileSystem(modFile)) {
-            Path mcmod = fs.getPath("mcmod.info");
-            if (Files.notExists(mcmod))
-                throw new IOException("File " + modFile + " is not a Forge mod.");
-            List<ForgeOldModMetadata> modList = JsonUtils.GSON.fromJson(FileUtils.readText(mcmod),
-                    new TypeToken<List<ForgeOldModMetadata>>() {
-                    }.getType());
-            if (modList == null || modList.isEmpty())
-                throw new IOException("Mod " + modFile + " `mcmod.info` is malformed..");
-            ForgeOldModMetadata metadata = modList.get(0);
-            String authors = metadata.getAuthor();
-            if (StringUtils.isBlank(authors) && metadata.getAuthors().length > 0)
-                authors = String.join(", ", metadata.getAuthors());
-            if (StringUtils.isBlank(authors) && metadata.getAuthorList().length > 0)
-                authors = String.join(", ", metadata.getAuthorList());
-            if (StringUtils.isBlank(authors))
-                authors = metadata.getCredits();
-            return new LocalModFile(modManager, modManager.getLocalMod(metadata.getModId(), ModLoaderType.FORGE), modFile, metadata.getName(), new LocalModFile.Description(metadata.getDescription()),
-                    authors, metadata.getVersion(), metadata.getGameVersion(),
-                    StringUtils.isBlank(metadata.getUrl()) ? metadata.getUpdateUrl() : metadata.url,
-                    metadata.getLogoFile());
+        try (ZipReader zip = ZipReader.open(modFile)) {
+            return fromFile(modManager, modFile, zip);
         }
     }
+
+    public static LocalModFile fromFile(ModManager modManager, Path modFile, ZipReader zip) throws IOException, JsonParseException {
+        if (!zip.contains("mcmod.info"))
+            throw new IOException("File " + modFile + " is not a Forge mod.");
+        List<ForgeOldModMetadata> modList = JsonUtils.GSON.fromJson(zip.readText("mcmod.info"),
+                new TypeToken<List<ForgeOldModMetadata>>() {
+                }.getType());
+        if (modList == null || modList.isEmpty())
+            throw new IOException("Mod " + modFile + " `mcmod.info` is malformed..");
+        ForgeOldModMetadata metadata = modList.get(0);
+        String authors = metadata.getAuthor();
+        if (StringUtils.isBlank(authors) && metadata.getAuthors().length > 0)
+            authors = String.join(", ", metadata.getAuthors());
+        if (StringUtils.isBlank(authors) && metadata.getAuthorList().length > 0)
+            authors = String.join(", ", metadata.getAuthorList());
+        if (StringUtils.isBlank(authors))
+            authors = metadata.getCredits();
+        return new LocalModFile(modManager, modManager.getLocalMod(metadata.getModId(), ModLoaderType.FORGE), modFile, metadata.getName(), new LocalModFile.Description(metadata.getDescription()),
+                authors, metadata.getVersion(), metadata.getGameVersion(),
+                StringUtils.isBlank(metadata.getUrl()) ? metadata.getUpdateUrl() : metadata.url,
+                metadata.getLogoFile());
+    }
 }
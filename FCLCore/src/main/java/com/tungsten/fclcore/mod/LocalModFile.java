@@ -62,10 +62,13 @@ public final class LocalModFile implements Comparable<LocalModFile> {
 
         fileName = FileUtils.getNameWithoutExtension(ModManager.getModName(file));
 
-        if (isOld()) {
-            mod.getOldFiles().add(this);
-        } else {
-            mod.getFiles().add(this);
+        // Mod files may be loaded concurrently by ModManager
+        synchronized (mod) {
+            if (isOld()) {
+                mod.getOldFiles().add(this);
+            } else {
+                mod.getFiles().add(this);
+            }
         }
     }
 
@@ -4,17 +4,19 @@ import static com.tungsten.fclcore.util.DigestUtils.digest;
 import static com.tungsten.fclcore.util.Hex.encodeHex;
 
 import com.tungsten.fclcore.task.Task;
+import com.tungsten.fclcore.util.Lang;
 import com.tungsten.fclcore.util.gson.JsonUtils;
-import com.tungsten.fclcore.util.io.CompressingUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 public final class MinecraftInstanceTask<T> extends Task<ModpackConfiguration<T>> {
@@ -43,20 +45,28 @@ public final class MinecraftInstanceTask<T> extends Task<ModpackConfiguration<T>
     public void execute() throws Exception {
         List<ModpackConfiguration.FileInformation> overrides = new ArrayList<>();
 
-        try (FileSystem fs = CompressingUtils.readonly(zipFile.toPath()).setEncoding(encoding).build()) {
+        try (ZipReader zip = ZipReader.open(zipFile.toPath(), encoding)) {
             for (String subDirectory : subDirectories) {
-                Path root = fs.getPath(subDirectory);
+                String prefix = subDirectory.equals("/") ? "" : subDirectory.substring(1) + "/";
+                List<ZipReader.Entry> entries = zip.getEntries().stream()
+                        .filter(entry -> !entry.isDirectory() && entry.getName().startsWith(prefix))
+                        .sorted(Comparator.comparing(ZipReader.Entry::getName))
+                        .collect(Collectors.toList());
 
-                if (Files.exists(root))
-                    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                            String relativePath = root.relativize(file).normalize().toString().replace(File.separatorChar, '/');
-                            overrides.add(new ModpackConfiguration.FileInformation(relativePath, encodeHex(digest("SHA-1", file))));
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
+                // Entries are hashed concurrently since every stream reads the zip file by its own position.
+                overrides.addAll(entries.parallelStream()
+                        .map(Lang.wrap(entry -> {
+                            String relativePath = entry.getName().substring(prefix.length());
+                            try (InputStream input = zip.getInputStream(entry)) {
+                                return new ModpackConfiguration.FileInformation(relativePath, encodeHex(digest("SHA-1", input)));
+                            }
+                        }))
+                        .collect(Collectors.toList()));
             }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
         }
 
         ModpackConfiguration<T> configuration = new ModpackConfiguration<>(manifest, type, name, version, overrides);
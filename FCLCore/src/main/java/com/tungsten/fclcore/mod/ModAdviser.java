@@ -27,6 +27,7 @@ public interface ModAdviser {
             "launcher_accounts.json", "launcher_cef_log.txt", "launcher_log.txt", "launcher_msa_credentials.bin", "launcher_settings.json", "launcher_ui_state.json", "realms_persistence.json", "webcache2", "treatment_tags.json", // New Minecraft Launcher
             "clientId.txt", "PCL.ini", // Plain Craft Launcher
             "backup", "pack.json", "launcher.jar", "cache", "modpack.cfg", // HMCL
+            "mods.cache", "launch-plan.cfg", // FCL
             "manifest.json", "minecraftinstance.json", ".curseclient", // Curse
             ".fabric", ".mixin.out", // Fabric
             "jars", "logs", "versions", "assets", "libraries", "crash-reports", "NVIDIA", "AMD", "screenshots", "natives", "native", "$native", "server-resource-packs", // Minecraft
@@ -1,17 +1,23 @@
 package com.tungsten.fclcore.mod;
 
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.tungsten.fclcore.game.GameRepository;
 import com.tungsten.fclcore.util.StringUtils;
-import com.tungsten.fclcore.util.io.CompressingUtils;
+import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 import com.tungsten.fclcore.util.versioning.VersionNumber;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Objects;
-import java.util.TreeSet;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 public final class ModManager {
     private final GameRepository repository;
@@ -38,7 +44,7 @@ public final class ModManager {
         return repository.getRunDirectory(id).toPath().resolve("mods");
     }
 
-    public LocalMod getLocalMod(String id, ModLoaderType modLoaderType) {
+    public synchronized LocalMod getLocalMod(String id, ModLoaderType modLoaderType) {
         return localMods.computeIfAbsent(new LocalMod(id, modLoaderType), x -> x);
     }
 
@@ -56,24 +62,36 @@ public final class ModManager {
         String fileName = StringUtils.removeSuffix(FileUtils.getName(modFile), DISABLED_EXTENSION, OLD_EXTENSION);
         String description;
         if (fileName.endsWith(".zip") || fileName.endsWith(".jar")) {
-            try {
-                return ForgeOldModMetadata.fromFile(this, modFile);
-            } catch (Exception ignore) {
-            }
+            // Open the archive only once, and only try parsers whose descriptor exists.
+            try (ZipReader zip = ZipReader.open(modFile)) {
+                if (zip.contains("mcmod.info")) {
+                    try {
+                        return ForgeOldModMetadata.fromFile(this, modFile, zip);
+                    } catch (Exception ignore) {
+                    }
+                }
 
-            try {
-                return ForgeNewModMetadata.fromFile(this, modFile);
-            } catch (Exception ignore) {
-            }
+                if (zip.contains("META-INF/mods.toml")) {
+                    try {
+                        return ForgeNewModMetadata.fromFile(this, modFile, zip);
+                    } catch (Exception ignore) {
+                    }
+                }
 
-            try {
-                return FabricModMetadata.fromFile(this, modFile);
-            } catch (Exception ignore) {
-            }
+                if (zip.contains("fabric.mod.json")) {
+                    try {
+                        return FabricModMetadata.fromFile(this, modFile, zip);
+                    } catch (Exception ignore) {
+                    }
+                }
 
-            try {
-                return PackMcMeta.fromFile(this, modFile);
-            } catch (Exception ignore) {
+                if (zip.contains("pack.mcmeta")) {
+                    try {
+                        return PackMcMeta.fromFile(this, modFile, zip);
+                    } catch (Exception ignore) {
+                    }
+                }
+            } catch (IOException ignore) {
             }
 
             description = "";
@@ -96,6 +114,7 @@ public final class ModManager {
     public void refreshMods() throws IOException {
         localModFiles.clear();
         localMods.clear();
+        List<Path> files = new ArrayList<>();
         if (Files.isDirectory(getModsDirectory())) {
             try (DirectoryStream<Path> modsDirectoryStream = Files.newDirectoryStream(getModsDirectory())) {
                 for (Path subitem : modsDirectoryStream) {
@@ -103,18 +122,144 @@ public final class ModManager {
                         // If the folder name is game version, forge will search mod in this subdirectory
                         try (DirectoryStream<Path> subitemDirectoryStream = Files.newDirectoryStream(subitem)) {
                             for (Path subsubitem : subitemDirectoryStream) {
-                                addModInfo(subsubitem);
+                                files.add(subsubitem);
                             }
                         }
                     } else {
-                        addModInfo(subitem);
+                        files.add(subitem);
                     }
                 }
             }
         }
+
+        Map<String, CachedModInfo> cache = loadModInfoCache();
+        Map<String, CachedModInfo> newCache = new ConcurrentHashMap<>();
+        List<LocalModFile> modFiles = files.parallelStream()
+                .map(file -> getCachedModInfo(file, cache, newCache))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        for (LocalModFile modFile : modFiles) {
+            if (!modFile.isOld()) {
+                localModFiles.add(modFile);
+            }
+        }
+        if (!newCache.equals(cache))
+            saveModInfoCache(newCache);
+
         loaded = true;
     }
 
+    private Path getModInfoCacheFile() {
+        return repository.getVersionRoot(id).toPath().resolve("mods.cache");
+    }
+
+    private Map<String, CachedModInfo> loadModInfoCache() {
+        Path cacheFile = getModInfoCacheFile();
+        if (Files.isRegularFile(cacheFile)) {
+            try {
+                Map<String, CachedModInfo> cache = JsonUtils.GSON.fromJson(FileUtils.readText(cacheFile), new TypeToken<Map<String, CachedModInfo>>() {
+                }.getType());
+                if (cache != null)
+                    return cache;
+            } catch (IOException | JsonParseException e) {
+                LOG.log(Level.WARNING, "Unable to read mod info cache " + cacheFile, e);
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    private void saveModInfoCache(Map<String, CachedModInfo> cache) {
+        Path cacheFile = getModInfoCacheFile();
+        try {
+            FileUtils.saveSafely(cacheFile, JsonUtils.GSON.toJson(cache));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save mod info cache " + cacheFile, e);
+        }
+    }
+
+    /**
+     * Get mod info from the cache if the file is not changed since last parsing, or parse it and put it into the new cache.
+     *
+     * @return null if the file is not a mod file.
+     */
+    private LocalModFile getCachedModInfo(Path file, Map<String, CachedModInfo> cache, Map<String, CachedModInfo> newCache) {
+        if (!isFileNameMod(file)) return null;
+
+        // Disabling or enabling a mod renames the file, which should not invalidate the cache.
+        Path relative = getModsDirectory().relativize(file);
+        String key = relative.resolveSibling(getModName(file)).toString();
+
+        long size, lastModified;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            size = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            size = lastModified = -1;
+        }
+
+        CachedModInfo cached = cache.get(key);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            newCache.put(key, cached);
+            return cached.toLocalModFile(this, file);
+        }
+
+        try {
+            LocalModFile modFile = getModInfo(file);
+            if (size >= 0)
+                newCache.put(key, new CachedModInfo(size, lastModified, modFile));
+            return modFile;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class CachedModInfo {
+        private final long size;
+        private final long lastModified;
+        private final String id;
+        private final ModLoaderType modLoaderType;
+        private final String name;
+        private final LocalModFile.Description description;
+        private final String authors;
+        private final String version;
+        private final String gameVersion;
+        private final String url;
+        private final String logoPath;
+
+        CachedModInfo(long size, long lastModified, LocalModFile modFile) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.id = modFile.getId();
+            this.modLoaderType = modFile.getModLoaderType();
+            this.name = modFile.getName();
+            this.description = modFile.getDescription();
+            this.authors = modFile.getAuthors();
+            this.version = modFile.getVersion();
+            this.gameVersion = modFile.getGameVersion();
+            this.url = modFile.getUrl();
+            this.logoPath = modFile.getLogoPath();
+        }
+
+        LocalModFile toLocalModFile(ModManager modManager, Path file) {
+            return new LocalModFile(modManager, modManager.getLocalMod(id, modLoaderType), file, name, description,
+                    authors, version, gameVersion, url, logoPath);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CachedModInfo that = (CachedModInfo) o;
+            return size == that.size && lastModified == that.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified);
+        }
+    }
+
     public Collection<LocalModFile> getMods() throws IOException {
         if (!loaded)
             refreshMods();
@@ -246,23 +391,23 @@ public final class ModManager {
     }
 
     public static boolean isFileMod(Path modFile) {
-        try (FileSystem fs = CompressingUtils.createReadOnlyZipFileSystem(modFile)) {
-            if (Files.exists(fs.getPath("mcmod.info")) || Files.exists(fs.getPath("META-INF/mods.toml"))) {
+        try (ZipReader zip = ZipReader.open(modFile)) {
+            if (zip.contains("mcmod.info") || zip.contains("META-INF/mods.toml")) {
                 // Forge mod
                 return true;
             }
 
-            if (Files.exists(fs.getPath("fabric.mod.json"))) {
+            if (zip.contains("fabric.mod.json")) {
                 // Fabric mod
                 return true;
             }
 
-            if (Files.exists(fs.getPath("litemod.json"))) {
+            if (zip.contains("litemod.json")) {
                 // Liteloader mod
                 return true;
             }
 
-            if (Files.exists(fs.getPath("pack.mcmeta"))) {
+            if (zip.contains("pack.mcmeta")) {
                 // resource pack, data pack
                 return true;
             }
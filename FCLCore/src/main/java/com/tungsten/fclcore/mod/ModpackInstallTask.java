@@ -1,9 +1,7 @@
 package com.tungsten.fclcore.mod;
 
-import static com.tungsten.fclcore.util.DigestUtils.digest;
-import static com.tungsten.fclcore.util.Hex.encodeHex;
-
 import com.tungsten.fclcore.task.Task;
+import com.tungsten.fclcore.util.FileDigestCache;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.io.Unzipper;
 
@@ -62,7 +60,7 @@ public class ModpackInstallTask<T> extends Task<Void> {
                     .setTerminateIfSubDirectoryNotExists()
                     .setReplaceExistentFile(true)
                     .setEncoding(charset)
-                    .setFilter((destPath, isDirectory, zipEntry, entryPath) -> {
+                    .setFilter((zipEntry, isDirectory, destPath, entryPath) -> {
                         if (isDirectory) return true;
                         if (!callback.test(entryPath)) return false;
                         entries.add(entryPath);
@@ -76,7 +74,7 @@ public class ModpackInstallTask<T> extends Task<Void> {
                         } else {
                             // If both old and new modpacks have this entry, and user has modified this file,
                             // we will not replace it since this modified file is what user expects.
-                            String fileHash = encodeHex(digest("SHA-1", destPath));
+                            String fileHash = FileDigestCache.getInstance().digest("SHA-1", destPath);
                             String oldHash = files.get(entryPath).getHash();
                             return Objects.equals(oldHash, fileHash);
                         }
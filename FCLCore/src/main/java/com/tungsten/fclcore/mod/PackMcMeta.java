@@ -5,13 +5,11 @@ import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.gson.Validation;
-import com.tungsten.fclcore.util.io.CompressingUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.ZipReader;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -125,18 +123,21 @@ public class PackMcMeta implements Validation {
     }
 
     public static LocalModFile fromFile(ModManager modManager, Path modFile) throws IOException, JsonParseException {
-        try (FileSystem fs = CompressingUtils.createReadOnlyZipFileSystem(modFile)) {
-            Path mcmod = fs.getPath("pack.mcmeta");
-            if (Files.notExists(mcmod))
-                throw new IOException("File " + modFile + " is not a resource pack.");
-            PackMcMeta metadata = JsonUtils.fromNonNullJson(FileUtils.readText(mcmod), PackMcMeta.class);
-            return new LocalModFile(
-                    modManager,
-                    modManager.getLocalMod(FileUtils.getNameWithoutExtension(modFile), ModLoaderType.PACK),
-                    modFile,
-                    FileUtils.getNameWithoutExtension(modFile),
-                    metadata.pack.description,
-                    "", "", "", "", "");
+        try (ZipReader zip = ZipReader.open(modFile)) {
+            return fromFile(modManager, modFile, zip);
         }
     }
+
+    public static LocalModFile fromFile(ModManager modManager, Path modFile, ZipReader zip) throws IOException, JsonParseException {
+        if (!zip.contains("pack.mcmeta"))
+            throw new IOException("File " + modFile + " is not a resource pack.");
+        PackMcMeta metadata = JsonUtils.fromNonNullJson(zip.readText("pack.mcmeta"), PackMcMeta.class);
+        return new LocalModFile(
+                modManager,
+                modManager.getLocalMod(FileUtils.getNameWithoutExtension(modFile), ModLoaderType.PACK),
+                modFile,
+                FileUtils.getNameWithoutExtension(modFile),
+                metadata.pack.description,
+                "", "", "", "", "");
+    }
 }
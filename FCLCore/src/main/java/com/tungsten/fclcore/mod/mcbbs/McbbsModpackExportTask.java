@@ -5,7 +5,6 @@ import static com.tungsten.fclcore.download.LibraryAnalyzer.LibraryType.FORGE;
 import static com.tungsten.fclcore.download.LibraryAnalyzer.LibraryType.LITELOADER;
 import static com.tungsten.fclcore.download.LibraryAnalyzer.LibraryType.MINECRAFT;
 import static com.tungsten.fclcore.download.LibraryAnalyzer.LibraryType.OPTIFINE;
-import static com.tungsten.fclcore.util.DigestUtils.digest;
 import static com.tungsten.fclcore.util.Hex.encodeHex;
 
 import com.tungsten.fclcore.download.LibraryAnalyzer;
@@ -25,7 +24,6 @@ import com.tungsten.fclcore.util.io.Zipper;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -57,18 +55,9 @@ public class McbbsModpackExportTask extends Task<Void> {
         try (Zipper zip = new Zipper(modpackFile.toPath())) {
             Path runDirectory = repository.getRunDirectory(version).toPath();
             List<McbbsModpackManifest.File> files = new ArrayList<>();
-            zip.putDirectory(runDirectory, "overrides", path -> {
-                if (Modpack.acceptFile(path, blackList, info.getWhitelist())) {
-                    Path file = runDirectory.resolve(path);
-                    if (Files.isRegularFile(file)) {
-                        String relativePath = runDirectory.relativize(file).normalize().toString().replace(File.separatorChar, '/');
-                        files.add(new McbbsModpackManifest.AddonFile(true, relativePath, encodeHex(digest("SHA-1", file))));
-                    }
-                    return true;
-                } else {
-                    return false;
-                }
-            });
+            // Files are hashed while being compressed, so that each file is only read once.
+            zip.putDirectory(runDirectory, "overrides", path -> Modpack.acceptFile(path, blackList, info.getWhitelist()), "SHA-1",
+                    (relativePath, hash) -> files.add(new McbbsModpackManifest.AddonFile(true, relativePath, encodeHex(hash))));
 
             LibraryAnalyzer analyzer = LibraryAnalyzer.analyze(repository.getResolvedPreservingPatchesVersion(version));
             String gameVersion = repository.getGameVersion(version)
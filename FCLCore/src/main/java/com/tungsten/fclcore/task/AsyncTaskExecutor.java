@@ -11,10 +11,14 @@ import com.tungsten.fclcore.util.Logging;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public final class AsyncTaskExecutor extends TaskExecutor {
 
+    private static final int MAX_INLINE_DEPTH = 32;
+    private static final ThreadLocal<int[]> INLINE_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
     private CompletableFuture<Boolean> future;
 
     public AsyncTaskExecutor(Task<?> task) {
@@ -24,7 +28,8 @@ public final class AsyncTaskExecutor extends TaskExecutor {
     @Override
     public TaskExecutor start() {
         taskListeners.forEach(TaskListener::onStart);
-        future = executeTasks(null, Collections.singleton(firstTask))
+        future = CompletableFuture.completedFuture(null)
+                .thenComposeAsync(unused -> executeTasks(null, Collections.singleton(firstTask)))
                 .thenApplyAsync(exception -> {
                     boolean success = exception == null;
 
@@ -81,25 +86,23 @@ public final class AsyncTaskExecutor extends TaskExecutor {
         if (tasks == null || tasks.isEmpty())
             return CompletableFuture.completedFuture(null);
 
-        return CompletableFuture.completedFuture(null)
-                .thenComposeAsync(unused -> {
-                    totTask.addAndGet(tasks.size());
+        totTask.addAndGet(tasks.size());
 
-                    if (isCancelled()) {
-                        for (Task<?> task : tasks) task.setException(new CancellationException());
-                        return CompletableFuture.runAsync(this::checkCancellation);
-                    }
+        if (isCancelled()) {
+            for (Task<?> task : tasks) task.setException(new CancellationException());
+            return failedFuture(new CancellationException("Cancelled by user"));
+        }
 
-                    return CompletableFuture.allOf(tasks.stream()
-                            .map(task -> CompletableFuture.completedFuture(null)
-                                    .thenComposeAsync(unused2 -> executeTask(parentTask, task))
-                            ).toArray(CompletableFuture<?>[]::new));
-                });
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+        int i = 0;
+        for (Task<?> task : tasks)
+            futures[i++] = inline(() -> executeTask(parentTask, task));
+        return CompletableFuture.allOf(futures);
     }
 
     private CompletableFuture<Exception> executeTasks(Task<?> parentTask, Collection<? extends Task<?>> tasks) {
         return executeTasksExceptionally(parentTask, tasks)
-                .thenApplyAsync(unused -> (Exception) null)
+                .thenApply(unused -> (Exception) null)
                 .exceptionally(throwable -> {
                     Throwable resolved = resolveException(throwable);
                     if (resolved instanceof Exception) {
@@ -112,33 +115,37 @@ public final class AsyncTaskExecutor extends TaskExecutor {
     }
 
     private <T> CompletableFuture<T> executeCompletableFutureTask(Task<?> parentTask, CompletableFutureTask<T> task) {
-        return CompletableFuture.completedFuture(null)
-                .thenComposeAsync(unused -> {
-                    checkCancellation();
-
-                    task.setCancelled(this::isCancelled);
-                    task.setState(Task.TaskState.READY);
-                    if (parentTask != null && task.getStage() == null)
-                        task.setStage(parentTask.getStage());
-
-                    if (task.getSignificance().shouldLog())
-                        Logging.LOG.log(Level.FINE, "Executing task: " + task.getName());
-
-                    taskListeners.forEach(it -> it.onReady(task));
-
-                    return task.getFuture(new TaskCompletableFuture() {
-                        @Override
-                        public <T2> CompletableFuture<T2> one(Task<T2> subtask) {
-                            return executeTask(task, subtask);
-                        }
+        CompletableFuture<T> future;
+        try {
+            checkCancellation();
+
+            task.setCancelled(this::isCancelled);
+            task.setState(Task.TaskState.READY);
+            if (parentTask != null && task.getStage() == null)
+                task.setStage(parentTask.getStage());
+
+            if (task.getSignificance().shouldLog())
+                Logging.LOG.log(Level.FINE, "Executing task: " + task.getName());
+
+            taskListeners.forEach(it -> it.onReady(task));
+
+            future = task.getFuture(new TaskCompletableFuture() {
+                @Override
+                public <T2> CompletableFuture<T2> one(Task<T2> subtask) {
+                    return executeTask(task, subtask);
+                }
+
+                @Override
+                public CompletableFuture<?> all(Collection<Task<?>> tasks) {
+                    return executeTasksExceptionally(task, tasks);
+                }
+            });
+        } catch (Throwable e) {
+            future = failedFuture(e);
+        }
 
-                        @Override
-                        public CompletableFuture<?> all(Collection<Task<?>> tasks) {
-                            return executeTasksExceptionally(task, tasks);
-                        }
-                    });
-                })
-                .thenApplyAsync(result -> {
+        return future
+                .thenApply(result -> {
                     checkCancellation();
 
                     if (task.getSignificance().shouldLog()) {
@@ -182,32 +189,36 @@ public final class AsyncTaskExecutor extends TaskExecutor {
     }
 
     private <T> CompletableFuture<T> executeNormalTask(Task<?> parentTask, Task<T> task) {
-        return CompletableFuture.completedFuture(null)
-                .thenComposeAsync(unused -> {
-                    checkCancellation();
-
-                    task.setCancelled(this::isCancelled);
-                    task.setState(Task.TaskState.READY);
-                    if (task.getStage() != null) {
-                        task.setInheritedStage(task.getStage());
-                    } else if (parentTask != null) {
-                        task.setInheritedStage(parentTask.getInheritedStage());
-                    }
-                    task.setNotifyPropertiesChanged(() -> taskListeners.forEach(it -> it.onPropertiesUpdate(task)));
-
-                    if (task.getSignificance().shouldLog())
-                        Logging.LOG.log(Level.FINE, "Executing task: " + task.getName());
-
-                    taskListeners.forEach(it -> it.onReady(task));
+        CompletableFuture<Void> ready;
+        try {
+            checkCancellation();
+
+            task.setCancelled(this::isCancelled);
+            task.setState(Task.TaskState.READY);
+            if (task.getStage() != null) {
+                task.setInheritedStage(task.getStage());
+            } else if (parentTask != null) {
+                task.setInheritedStage(parentTask.getInheritedStage());
+            }
+            task.setNotifyPropertiesChanged(() -> taskListeners.forEach(it -> it.onPropertiesUpdate(task)));
+
+            if (task.getSignificance().shouldLog())
+                Logging.LOG.log(Level.FINE, "Executing task: " + task.getName());
+
+            taskListeners.forEach(it -> it.onReady(task));
+
+            if (task.doPreExecute()) {
+                ready = runOn(task, wrap(task::preExecute));
+            } else {
+                ready = CompletableFuture.completedFuture(null);
+            }
+        } catch (Throwable e) {
+            ready = failedFuture(e);
+        }
 
-                    if (task.doPreExecute()) {
-                        return CompletableFuture.runAsync(wrap(task::preExecute), task.getExecutor());
-                    } else {
-                        return CompletableFuture.completedFuture(null);
-                    }
-                })
-                .thenComposeAsync(unused -> executeTasks(task, task.getDependents()))
-                .thenComposeAsync(dependentsException -> {
+        return ready
+                .thenCompose(unused -> executeTasks(task, task.getDependents()))
+                .thenCompose(dependentsException -> {
                     boolean isDependentsSucceeded = dependentsException == null;
 
                     if (isDependentsSucceeded) {
@@ -220,30 +231,31 @@ public final class AsyncTaskExecutor extends TaskExecutor {
                         }
                     }
 
-                    return CompletableFuture.runAsync(wrap(() -> {
-                        task.setState(Task.TaskState.RUNNING);
-                        taskListeners.forEach(it -> it.onRunning(task));
-                        task.execute();
-                    }), task.getExecutor()).whenComplete((unused, throwable) -> {
-                        task.setState(Task.TaskState.EXECUTED);
-                        rethrow(throwable);
-                    });
+                    return runOn(task, wrap(() -> {
+                        try {
+                            task.setState(Task.TaskState.RUNNING);
+                            taskListeners.forEach(it -> it.onRunning(task));
+                            task.execute();
+                        } finally {
+                            task.setState(Task.TaskState.EXECUTED);
+                        }
+                    }));
                 })
-                .thenComposeAsync(unused -> executeTasks(task, task.getDependencies()))
-                .thenComposeAsync(dependenciesException -> {
+                .thenCompose(unused -> executeTasks(task, task.getDependencies()))
+                .thenCompose(dependenciesException -> {
                     boolean isDependenciesSucceeded = dependenciesException == null;
 
                     if (isDependenciesSucceeded)
                         task.setDependenciesSucceeded();
 
                     if (task.doPostExecute()) {
-                        return CompletableFuture.runAsync(wrap(task::postExecute), task.getExecutor())
+                        return runOn(task, wrap(task::postExecute))
                                 .thenApply(unused -> dependenciesException);
                     } else {
                         return CompletableFuture.completedFuture(dependenciesException);
                     }
                 })
-                .thenApplyAsync(dependenciesException -> {
+                .thenApply(dependenciesException -> {
                     boolean isDependenciesSucceeded = dependenciesException == null;
 
                     if (!isDependenciesSucceeded) {
@@ -300,6 +312,44 @@ public final class AsyncTaskExecutor extends TaskExecutor {
         }
     }
 
+    /**
+     * Run the stage of the task on its executor.
+     * The following stages run on the thread completing the stage, unless it is a special executor like the UI thread,
+     * in which case they are moved back to the default scheduler.
+     */
+    private static CompletableFuture<Void> runOn(Task<?> task, Runnable runnable) {
+        Executor executor = task.getExecutor();
+        CompletableFuture<Void> future = CompletableFuture.runAsync(runnable, executor);
+        if (executor == Schedulers.defaultScheduler())
+            return future;
+        else
+            return future.whenCompleteAsync((unused, throwable) -> {
+            });
+    }
+
+    /**
+     * Subtasks are started on the current thread since starting a task only schedules its stages to the executors.
+     * Once too many tasks are started recursively, the subtask is started asynchronously to bound the stack depth.
+     */
+    private static <T> CompletableFuture<T> inline(Supplier<CompletableFuture<T>> starter) {
+        int[] depth = INLINE_DEPTH.get();
+        if (depth[0] >= MAX_INLINE_DEPTH)
+            return CompletableFuture.completedFuture(null).thenComposeAsync(unused -> starter.get());
+
+        depth[0]++;
+        try {
+            return starter.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
     private void checkCancellation() {
         if (isCancelled()) {
             throw new CancellationException("Cancelled by user");
@@ -1,20 +1,25 @@
 package com.tungsten.fclcore.task;
 
 import static com.tungsten.fclcore.util.Lang.threadPool;
+import static com.tungsten.fclcore.util.Pair.pair;
 
 import com.tungsten.fclcore.event.Event;
 import com.tungsten.fclcore.event.EventBus;
 import com.tungsten.fclcore.util.CacheRepository;
 import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.Pair;
 import com.tungsten.fclcore.util.ToStringBuilder;
+import com.tungsten.fclcore.util.io.HttpConnectionManager;
 import com.tungsten.fclcore.util.io.IOUtils;
 import com.tungsten.fclcore.util.io.NetworkUtils;
 import com.tungsten.fclcore.util.io.ResponseCodeException;
+import com.tungsten.fclcore.util.io.http2.Http2Transport;
 
 import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
@@ -22,6 +27,8 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -71,7 +78,10 @@ public abstract class FetchTask<T> extends Task<T> {
         }
 
         int repeat = 0;
-        download: for (URL url : urls) {
+        // Once a server rejects the partial download, it is restarted from the beginning in this execution.
+        boolean resumable = true;
+        download: for (int urlIndex = 0; urlIndex < urls.size(); urlIndex++) {
+            URL url = urls.get(urlIndex);
             for (int retryTime = 0; retryTime < retry; retryTime++) {
                 if (isCancelled()) {
                     break download;
@@ -82,14 +92,38 @@ public abstract class FetchTask<T> extends Task<T> {
 
                     updateProgress(0);
 
-                    URLConnection conn = NetworkUtils.createConnection(url);
-                    if (checkETag) repository.injectConnection(conn);
+                    Resumption resumption = resumable ? getResumption() : null;
+                    URL source = url;
+                    URLConnection conn;
+                    URL alternative = resumption == null && retryTime == 0 ? getHedgeCandidate(urlIndex) : null;
+                    OptionalLong hedgeDelay = alternative != null ? getHedgeDelay(url) : OptionalLong.empty();
+                    if (hedgeDelay.isPresent()) {
+                        Pair<URL, URLConnection> connected = connectHedged(url, alternative, hedgeDelay.getAsLong(), checkETag);
+                        source = connected.getKey();
+                        conn = connected.getValue();
+                    } else {
+                        conn = connect(url, resumption, checkETag);
+                    }
 
                     if (conn instanceof HttpURLConnection) {
-                        conn = NetworkUtils.resolveConnection((HttpURLConnection) conn);
                         int responseCode = ((HttpURLConnection) conn).getResponseCode();
 
+                        if (resumption != null && !resumption.accepts(conn)) {
+                            Logging.LOG.log(Level.FINE, "Unable to resume downloading " + url + ", response code " + responseCode + ", restart from the beginning");
+                            discardResumption();
+                            resumption = null;
+                            resumable = false;
+                            if (responseCode != HttpURLConnection.HTTP_OK) {
+                                // The range is not satisfiable, reconnect the server without range settings.
+                                HttpConnectionManager.release((HttpURLConnection) conn);
+                                retryTime--;
+                                continue;
+                            }
+                        }
+
                         if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                            HttpConnectionManager.release((HttpURLConnection) conn);
+
                             // Handle cache
                             try {
                                 Path cache = repository.getCachedRemoteFile(conn);
@@ -104,13 +138,42 @@ public abstract class FetchTask<T> extends Task<T> {
                                 continue;
                             }
                         } else if (responseCode / 100 == 4) {
-                            throw new FileNotFoundException(url.toString());
+                            HttpConnectionManager.release((HttpURLConnection) conn);
+                            throw new FileNotFoundException(source.toString());
                         } else if (responseCode / 100 != 2) {
-                            throw new ResponseCodeException(url, responseCode);
+                            HttpConnectionManager.release((HttpURLConnection) conn);
+                            throw new ResponseCodeException(source, responseCode);
+                        }
+                    }
+
+                    long transferStart = System.nanoTime();
+                    if (resumption != null) {
+                        try (RangedContext context = getRangedContext(conn, resumption.getContentLength(), resumption.getSegments(), checkETag)) {
+                            long remaining = resumption.getContentLength() - resumption.getOffset();
+                            downloadSegmented(conn, resumption.getContentLength(), resumption.getSegments(), context);
+                            if (isCancelled()) break download;
+
+                            context.withResult(true);
+                            MirrorStatistics.recordTransfer(source, remaining, System.nanoTime() - transferStart);
+                        }
+                        return;
+                    }
+
+                    long contentLength = conn.getContentLengthLong();
+                    if (shouldDownloadSegmented(conn, contentLength)) {
+                        List<Segment> segments = Segment.split(contentLength, (int) Math.min(Math.min(MAX_SEGMENTS, getDownloadExecutorConcurrency()), contentLength / MIN_SEGMENT_SIZE));
+                        try (RangedContext context = getRangedContext(conn, contentLength, segments, checkETag)) {
+                            if (context != null) {
+                                downloadSegmented(conn, contentLength, segments, context);
+                                if (isCancelled()) break download;
+
+                                context.withResult(true);
+                                MirrorStatistics.recordTransfer(source, contentLength, System.nanoTime() - transferStart);
+                                return;
+                            }
                         }
                     }
 
-                    long contentLength = conn.getContentLength();
                     try (Context context = getContext(conn, checkETag); InputStream stream = conn.getInputStream()) {
                         int lastDownloaded = 0, downloaded = 0;
                         byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
@@ -141,6 +204,7 @@ public abstract class FetchTask<T> extends Task<T> {
                             throw new IOException("Unexpected file size: " + downloaded + ", expected: " + contentLength);
 
                         context.withResult(true);
+                        MirrorStatistics.recordTransfer(source, downloaded, System.nanoTime() - transferStart);
                     }
 
                     return;
@@ -162,6 +226,175 @@ public abstract class FetchTask<T> extends Task<T> {
             throw new DownloadException(failedURL, exception);
     }
 
+    /**
+     * Open the connection to the given URL and receive the response code.
+     */
+    private URLConnection connect(URL url, Resumption resumption, boolean checkETag) throws IOException {
+        return connect(url, resumption, checkETag, null);
+    }
+
+    /**
+     * @param opened receives the connection before it is connected, null if not needed
+     */
+    private URLConnection connect(URL url, Resumption resumption, boolean checkETag, AtomicReference<URLConnection> opened) throws IOException {
+        URLConnection conn = NetworkUtils.createConnection(url);
+        if (opened != null) opened.set(conn);
+        if (resumption != null) {
+            conn.setRequestProperty("Range", "bytes=" + resumption.getOffset() + "-");
+            conn.setRequestProperty("If-Range", resumption.getValidator());
+        } else if (checkETag) repository.injectConnection(conn);
+
+        if (conn instanceof HttpURLConnection) {
+            long start = System.nanoTime();
+            try {
+                conn = NetworkUtils.resolveConnection((HttpURLConnection) conn);
+                int responseCode = ((HttpURLConnection) conn).getResponseCode();
+                MirrorStatistics.recordResponse(url, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), responseCode);
+            } catch (IOException e) {
+                MirrorStatistics.recordFailure(url);
+                throw e;
+            }
+        }
+        return conn;
+    }
+
+    private static volatile boolean hedgingEnabled = true;
+    private static final double HEDGE_PERCENTILE = 0.9;
+    private static final long MIN_HEDGE_DELAY = 200;
+    private static final long MAX_HEDGE_DELAY = 4000;
+
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Download Hedge Timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Only hedge requests run here, which are made rarely.
+     */
+    private static final ExecutorService HEDGE_EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+        Thread t = new Thread(r, "Download Hedge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Enable or disable hedged requests. When the response of a mirror is slower than its usual latency
+     * of {@value #HEDGE_PERCENTILE} percentile, the same file is requested from the next mirror as well,
+     * and the first mirror that responds successfully is used.
+     */
+    public static void setHedgingEnabled(boolean enabled) {
+        hedgingEnabled = enabled;
+    }
+
+    /**
+     * @return the first candidate after the given URL which belongs to another mirror, or null if none.
+     */
+    private URL getHedgeCandidate(int index) {
+        URL url = urls.get(index);
+        if (!hedgingEnabled || !(url.getProtocol().equals("http") || url.getProtocol().equals("https")))
+            return null;
+
+        String mirror = MirrorStatistics.getMirror(url);
+        for (int i = index + 1; i < urls.size(); i++) {
+            if (!MirrorStatistics.getMirror(urls.get(i)).equals(mirror))
+                return urls.get(i);
+        }
+        return null;
+    }
+
+    private static OptionalLong getHedgeDelay(URL url) {
+        OptionalLong latency = MirrorStatistics.getLatency(url, HEDGE_PERCENTILE);
+        if (!latency.isPresent()) return latency;
+        return OptionalLong.of(Math.max(MIN_HEDGE_DELAY, Math.min(MAX_HEDGE_DELAY, latency.getAsLong())));
+    }
+
+    /**
+     * Connect to the given URL in the calling thread, and request the alternative URL in the background as well
+     * if no response is received in the given milliseconds.
+     * If the alternative URL responds successfully first, the connection to the given URL is disconnected.
+     * The connection responded successfully is returned and the other one is released.
+     * If neither succeeds, the result of the given URL is returned.
+     *
+     * @return the URL connected, and the connection
+     */
+    private Pair<URL, URLConnection> connectHedged(URL url, URL alternative, long delay, boolean checkETag) throws IOException {
+        AtomicReference<URLConnection> primaryInFlight = new AtomicReference<>();
+        CompletableFuture<URLConnection> hedge = new CompletableFuture<>();
+        ScheduledFuture<?> hedgeTimer = HEDGE_TIMER.schedule(() -> HEDGE_EXECUTOR.execute(() -> {
+            Logging.LOG.log(Level.FINER, "No response from " + url + " in " + delay + "ms, requesting " + alternative + " as well");
+            try {
+                beforeDownload(alternative);
+                URLConnection conn = connect(alternative, null, checkETag);
+                hedge.complete(conn);
+                if (isSuccessful(conn)) {
+                    URLConnection primary = primaryInFlight.getAndSet(null);
+                    if (primary instanceof HttpURLConnection)
+                        ((HttpURLConnection) primary).disconnect();
+                }
+            } catch (Throwable e) {
+                hedge.completeExceptionally(e);
+            }
+        }), delay, TimeUnit.MILLISECONDS);
+
+        URLConnection primary = null;
+        IOException primaryException = null;
+        try {
+            primary = connect(url, null, checkETag, primaryInFlight);
+        } catch (IOException e) {
+            primaryException = e;
+        }
+        // The hedge request clears the reference when it disconnects the primary connection.
+        boolean disconnected = primaryInFlight.getAndSet(null) == null;
+
+        if (hedgeTimer.cancel(false)) {
+            // No hedge request is made.
+            if (primaryException != null) throw primaryException;
+            return pair(url, primary);
+        }
+
+        if (!disconnected && primary != null && isSuccessful(primary)) {
+            hedge.thenAccept(FetchTask::releaseConnection);
+            return pair(url, primary);
+        }
+
+        URLConnection alternativeConnection;
+        try {
+            alternativeConnection = hedge.get();
+        } catch (InterruptedException e) {
+            hedge.thenAccept(FetchTask::releaseConnection);
+            if (primary != null) releaseConnection(primary);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting " + alternative);
+        } catch (ExecutionException e) {
+            alternativeConnection = null;
+        }
+
+        if (alternativeConnection != null && isSuccessful(alternativeConnection)) {
+            if (primary != null) releaseConnection(primary);
+            return pair(alternative, alternativeConnection);
+        }
+
+        // Neither responded successfully, hand over the result of the primary URL.
+        if (alternativeConnection != null) releaseConnection(alternativeConnection);
+        if (primaryException != null) throw primaryException;
+        return pair(url, primary);
+    }
+
+    private static boolean isSuccessful(URLConnection conn) {
+        try {
+            return !(conn instanceof HttpURLConnection) || ((HttpURLConnection) conn).getResponseCode() / 100 == 2
+                    || ((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void releaseConnection(URLConnection conn) {
+        if (conn instanceof HttpURLConnection)
+            HttpConnectionManager.release((HttpURLConnection) conn);
+    }
+
     private static final Timer timer = new Timer("DownloadSpeedRecorder", true);
     private static final AtomicInteger downloadSpeed = new AtomicInteger(0);
     public static final EventBus speedEvent = new EventBus();
@@ -222,64 +455,334 @@ public abstract class FetchTask<T> extends Task<T> {
         CACHED
     }
     
-    protected class DownloadState {
-        private final int startPosition;
-        private final int endPosition;
-        private final int currentPosition;
-        private final boolean finished;
-
-        public DownloadState(int startPosition, int endPosition, int currentPosition) {
-            if (currentPosition < startPosition || currentPosition > endPosition) {
-                throw new IllegalArgumentException("Illegal download state: start " + startPosition + ", end " + endPosition + ", cur " + currentPosition);
-            }
-            this.startPosition = startPosition;
-            this.endPosition = endPosition;
-            this.currentPosition = currentPosition;
-            finished = currentPosition == endPosition;
+    /**
+     * Context for ranged downloads, segments of the same file are written concurrently
+     * at their own positions.
+     */
+    protected static abstract class RangedContext extends Context {
+
+        /**
+         * Write downloaded bytes at the given position of the file.
+         * This method will be called by multiple threads concurrently.
+         */
+        public abstract void write(long position, byte[] buffer, int offset, int len) throws IOException;
+
+        @Override
+        public final void write(byte[] buffer, int offset, int len) {
+            throw new UnsupportedOperationException("Ranged context requires positional writes");
+        }
+    }
+
+    /**
+     * Files not smaller than this size will be split into several segments if the server supports byte ranges.
+     */
+    public static final long SEGMENTED_DOWNLOAD_THRESHOLD = 8L * 1024 * 1024;
+    private static final long MIN_SEGMENT_SIZE = 2L * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 8;
+
+    private volatile boolean rangesUnsupported = false;
+
+    /**
+     * Create a context that accepts positional writes, so that the file can be downloaded in segments.
+     *
+     * @param segments segments to be downloaded, some of them may be partially finished if resumed.
+     * @return null if this task does not support segmented downloading.
+     */
+    protected RangedContext getRangedContext(URLConnection conn, long contentLength, List<Segment> segments, boolean checkETag) throws IOException {
+        return null;
+    }
+
+    /**
+     * Restore the state of a download interrupted by previous attempts.
+     *
+     * @return null if there is nothing to resume.
+     */
+    protected Resumption getResumption() {
+        return null;
+    }
+
+    /**
+     * Called when the state returned by {@link #getResumption()} cannot be resumed,
+     * for example the remote file has been changed.
+     */
+    protected void discardResumption() {
+    }
+
+    private boolean shouldDownloadSegmented(URLConnection conn, long contentLength) throws IOException {
+        return !rangesUnsupported
+                && conn instanceof HttpURLConnection
+                && ((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_OK
+                && contentLength >= SEGMENTED_DOWNLOAD_THRESHOLD
+                && "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"))
+                && getDownloadExecutorConcurrency() > 1;
+    }
+
+    /**
+     * Get the validator of the remote entity for If-Range header.
+     * Weak entity tags cannot be used in If-Range, we fall back to Last-Modified then.
+     *
+     * @return null if the remote entity cannot be validated.
+     */
+    protected static String getRangeValidator(URLConnection conn) {
+        String eTag = conn.getHeaderField("ETag");
+        if (eTag != null && !eTag.startsWith("W/"))
+            return eTag;
+        return conn.getHeaderField("Last-Modified");
+    }
+
+    protected static final class Segment {
+        private final long start;
+        private final long end; // exclusive
+        private long current;
+
+        public Segment(long start, long end, long current) {
+            if (current < start || current > end)
+                throw new IllegalArgumentException("Illegal segment: start " + start + ", end " + end + ", current " + current);
+            this.start = start;
+            this.end = end;
+            this.current = current;
         }
 
-        public int getStartPosition() {
-            return startPosition;
+        public long getStart() {
+            return start;
         }
 
-        public int getEndPosition() {
-            return endPosition;
+        public long getEnd() {
+            return end;
         }
 
-        public int getCurrentPosition() {
-            return currentPosition;
+        public long getCurrent() {
+            return current;
         }
 
         public boolean isFinished() {
-            return finished;
+            return current == end;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + "), current " + current;
+        }
+
+        public static List<Segment> split(long contentLength, int count) {
+            long segmentSize = (contentLength + count - 1) / count;
+            List<Segment> segments = new ArrayList<>(count);
+            for (long start = 0; start < contentLength; start += segmentSize) {
+                segments.add(new Segment(start, Math.min(start + segmentSize, contentLength), start));
+            }
+            return segments;
         }
     }
 
-    protected class DownloadMission {
+    protected static final class Resumption {
+        private final String validator;
+        private final long contentLength;
+        private final List<Segment> segments;
 
+        public Resumption(String validator, long contentLength, List<Segment> segments) {
+            this.validator = Objects.requireNonNull(validator);
+            this.contentLength = contentLength;
+            this.segments = Objects.requireNonNull(segments);
+        }
+
+        public String getValidator() {
+            return validator;
+        }
+
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        public List<Segment> getSegments() {
+            return segments;
+        }
+
+        public long getOffset() {
+            for (Segment segment : segments)
+                if (!segment.isFinished())
+                    return segment.current;
+            return contentLength;
+        }
+
+        /**
+         * Check whether the server responds the remaining part of the same remote file.
+         */
+        boolean accepts(URLConnection conn) throws IOException {
+            if (((HttpURLConnection) conn).getResponseCode() != HttpURLConnection.HTTP_PARTIAL)
+                return false;
+
+            // Content-Range: bytes <offset>-<last>/<length>
+            String contentRange = conn.getHeaderField("Content-Range");
+            return contentRange != null && contentRange.startsWith("bytes " + getOffset() + "-")
+                    && contentRange.endsWith("/" + contentLength);
+        }
+    }
+
+    private void downloadSegmented(URLConnection conn, long contentLength, List<Segment> segments, RangedContext context) throws IOException {
+        List<Segment> remaining = segments.stream().filter(segment -> !segment.isFinished()).collect(Collectors.toList());
+        if (remaining.isEmpty()) return;
+
+        URL url = conn.getURL();
+        // Make sure that all segments are parts of the same entity
+        String ifRange = getRangeValidator(conn);
+
+        Logging.LOG.log(Level.FINER, "Downloading " + url + " in " + remaining.size() + " segments");
+
+        AtomicLong downloaded = new AtomicLong(contentLength - remaining.stream().mapToLong(segment -> segment.end - segment.current).sum());
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(remaining.size());
+        Queue<Segment> pending = new ConcurrentLinkedQueue<>(remaining.subList(1, remaining.size()));
+
+        Runnable worker = () -> {
+            Segment segment;
+            while ((segment = pending.poll()) != null) {
+                try {
+                    if (failure.get() == null)
+                        downloadSegment(url, ifRange, segment, null, contentLength, downloaded, context, failure);
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+
+        // Segments are also drained by the current thread, so they will not be starved when the executor is busy.
+        for (int i = 1; i < remaining.size(); i++) {
+            download().execute(worker);
+        }
+
+        // The first remaining segment reuses the stream of the opened connection,
+        // unless it shares an HTTP/2 connection, segments are requested over connections of their own then.
+        URLConnection initial = conn;
+        if (Http2Transport.isMultiplexed(conn)) {
+            ((HttpURLConnection) conn).disconnect();
+            initial = null;
+        }
+
+        try {
+            downloadSegment(url, ifRange, remaining.get(0), initial, contentLength, downloaded, context, failure);
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            latch.countDown();
+        }
+
+        worker.run();
 
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for segments of " + url);
+        }
 
+        if (failure.get() != null)
+            throw failure.get();
+    }
+
+    private void downloadSegment(URL url, String ifRange, Segment segment, URLConnection initial, long contentLength, AtomicLong downloaded, RangedContext context, AtomicReference<IOException> failure) throws IOException {
+        IOException exception = null;
+        for (int retryTime = 0; retryTime < retry && !segment.isFinished(); retryTime++) {
+            if (isCancelled() || failure.get() != null) return;
+
+            URLConnection conn = initial;
+            initial = null;
+            try {
+                if (conn == null) {
+                    conn = NetworkUtils.createConnection(url);
+                    conn.setRequestProperty("Range", "bytes=" + segment.current + "-" + (segment.end - 1));
+                    if (ifRange != null)
+                        conn.setRequestProperty("If-Range", ifRange);
+                    conn = NetworkUtils.resolveConnection((HttpURLConnection) conn);
+
+                    int responseCode = ((HttpURLConnection) conn).getResponseCode();
+                    if (responseCode == HttpURLConnection.HTTP_OK) {
+                        // The server ignores our range or the remote file has changed
+                        rangesUnsupported = true;
+                        throw new IOException("Server does not respect range request of " + url);
+                    } else if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                        throw new ResponseCodeException(url, responseCode);
+                    }
+                }
+
+                try (InputStream stream = conn.getInputStream()) {
+                    byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+                    while (!segment.isFinished()) {
+                        if (isCancelled() || failure.get() != null) return;
+
+                        int len = stream.read(buffer, 0, (int) Math.min(buffer.length, segment.end - segment.current));
+                        if (len == -1)
+                            throw new IOException("Unexpected end of segment " + segment + " of " + url);
+
+                        context.write(segment.current, buffer, 0, len);
+                        segment.current += len;
+
+                        updateProgress(downloaded.addAndGet(len), contentLength);
+                        updateDownloadSpeed(len);
+                    }
+                }
+                return;
+            } catch (IOException e) {
+                if (rangesUnsupported) throw e;
+
+                exception = e;
+                Logging.LOG.log(Level.WARNING, "Failed to download segment " + segment + " of " + url + ", repeat times: " + (retryTime + 1), e);
+            } finally {
+                if (conn instanceof HttpURLConnection && !segment.isFinished())
+                    ((HttpURLConnection) conn).disconnect();
+            }
+        }
+
+        if (!segment.isFinished())
+            throw exception != null ? exception : new IOException("Unable to download segment " + segment + " of " + url);
     }
 
     public static int DEFAULT_CONCURRENCY = Math.min(Runtime.getRuntime().availableProcessors() * 4, 64);
     private static int downloadExecutorConcurrency = DEFAULT_CONCURRENCY;
+    private static DownloadExecutionMode downloadExecutionMode = DownloadExecutionMode.THREAD_POOL;
     private static volatile ThreadPoolExecutor DOWNLOAD_EXECUTOR;
+    private static volatile VirtualThreadExecutor VIRTUAL_DOWNLOAD_EXECUTOR;
+    private static volatile ExecutorService CURRENT_DOWNLOAD_EXECUTOR;
+
+    public enum DownloadExecutionMode {
+        /**
+         * Transfers run on a fixed thread pool of {@link #getDownloadExecutorConcurrency()} threads.
+         */
+        THREAD_POOL,
+        /**
+         * Every transfer runs on its own virtual thread, at most {@link #getDownloadExecutorConcurrency()} of them
+         * are transferring at the same time. Falls back to {@link #THREAD_POOL} if virtual threads are not supported.
+         */
+        VIRTUAL_THREADS
+    }
 
     /**
-     * Get singleton instance of the thread pool for file downloading.
+     * Get singleton instance of the executor for file downloading.
      *
-     * @return Thread pool for FetchTask
+     * @return Executor for FetchTask
      */
     protected static ExecutorService download() {
-        if (DOWNLOAD_EXECUTOR == null) {
-            synchronized (Schedulers.class) {
-                if (DOWNLOAD_EXECUTOR == null) {
-                    DOWNLOAD_EXECUTOR = threadPool("Download", true, downloadExecutorConcurrency, 10, TimeUnit.SECONDS);
-                }
+        ExecutorService executor = CURRENT_DOWNLOAD_EXECUTOR;
+        if (executor != null)
+            return executor;
+
+        synchronized (Schedulers.class) {
+            if (downloadExecutionMode == DownloadExecutionMode.VIRTUAL_THREADS) {
+                if (VIRTUAL_DOWNLOAD_EXECUTOR == null)
+                    VIRTUAL_DOWNLOAD_EXECUTOR = VirtualThreadExecutor.create(downloadExecutorConcurrency);
+                if (VIRTUAL_DOWNLOAD_EXECUTOR != null)
+                    return CURRENT_DOWNLOAD_EXECUTOR = VIRTUAL_DOWNLOAD_EXECUTOR;
+
+                Logging.LOG.warning("Virtual threads are not supported, downloading with thread pool");
+                downloadExecutionMode = DownloadExecutionMode.THREAD_POOL;
             }
-        }
 
-        return DOWNLOAD_EXECUTOR;
+            if (DOWNLOAD_EXECUTOR == null) {
+                DOWNLOAD_EXECUTOR = threadPool("Download", true, downloadExecutorConcurrency, 10, TimeUnit.SECONDS);
+            }
+            return CURRENT_DOWNLOAD_EXECUTOR = DOWNLOAD_EXECUTOR;
+        }
     }
 
     public static void setDownloadExecutorConcurrency(int concurrency) {
@@ -287,8 +790,17 @@ public abstract class FetchTask<T> extends Task<T> {
         synchronized (Schedulers.class) {
             downloadExecutorConcurrency = concurrency;
             if (DOWNLOAD_EXECUTOR != null) {
-                DOWNLOAD_EXECUTOR.setCorePoolSize(concurrency);
-                DOWNLOAD_EXECUTOR.setMaximumPoolSize(concurrency);
+                // The core pool size must never exceed the maximum pool size.
+                if (concurrency > DOWNLOAD_EXECUTOR.getMaximumPoolSize()) {
+                    DOWNLOAD_EXECUTOR.setMaximumPoolSize(concurrency);
+                    DOWNLOAD_EXECUTOR.setCorePoolSize(concurrency);
+                } else {
+                    DOWNLOAD_EXECUTOR.setCorePoolSize(concurrency);
+                    DOWNLOAD_EXECUTOR.setMaximumPoolSize(concurrency);
+                }
+            }
+            if (VIRTUAL_DOWNLOAD_EXECUTOR != null) {
+                VIRTUAL_DOWNLOAD_EXECUTOR.setConcurrency(concurrency);
             }
         }
     }
@@ -298,4 +810,107 @@ public abstract class FetchTask<T> extends Task<T> {
             return downloadExecutorConcurrency;
         }
     }
+
+    /**
+     * Change how transfers are executed, only affects tasks created after this call.
+     */
+    public static void setDownloadExecutionMode(DownloadExecutionMode mode) {
+        synchronized (Schedulers.class) {
+            downloadExecutionMode = Objects.requireNonNull(mode);
+            CURRENT_DOWNLOAD_EXECUTOR = null;
+        }
+    }
+
+    public static DownloadExecutionMode getDownloadExecutionMode() {
+        synchronized (Schedulers.class) {
+            return downloadExecutionMode;
+        }
+    }
+
+    /**
+     * Runs every task on a new virtual thread, tasks wait for a permit before running
+     * so that no more than the given number of transfers are in flight.
+     * Waiting virtual threads do not occupy platform threads.
+     */
+    private static final class VirtualThreadExecutor extends AbstractExecutorService {
+        private final ExecutorService executor;
+        private final Permits permits;
+
+        private VirtualThreadExecutor(ExecutorService executor, int concurrency) {
+            this.executor = executor;
+            this.permits = new Permits(concurrency);
+        }
+
+        /**
+         * @return null if virtual threads are not supported by the runtime
+         */
+        static VirtualThreadExecutor create(int concurrency) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                return new VirtualThreadExecutor(executor, concurrency);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+
+        void setConcurrency(int concurrency) {
+            permits.resize(concurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+
+    private static final class Permits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private int total;
+
+        Permits(int permits) {
+            super(permits);
+            this.total = permits;
+        }
+
+        synchronized void resize(int permits) {
+            if (permits > total)
+                release(permits - total);
+            else if (permits < total)
+                reducePermits(total - permits);
+            total = permits;
+        }
+    }
 }
@@ -4,20 +4,27 @@ import static com.tungsten.fclcore.util.DigestUtils.getDigest;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.math.BigInteger;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.gson.JsonParseException;
+import com.tungsten.fclcore.util.DigestUtils;
 import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.io.ChecksumMismatchException;
 import com.tungsten.fclcore.util.io.CompressingUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
@@ -61,10 +68,21 @@ public class FileDownloadTask extends FetchTask<Void> {
         }
     }
 
+    /**
+     * Downloads of files not smaller than this size will be resumed from where they stopped by later attempts.
+     */
+    public static final long RESUMABLE_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Part files used by running tasks, a part file is used by one task at a time.
+     */
+    private static final Set<Path> PART_FILES_IN_USE = ConcurrentHashMap.newKeySet();
+
     private final File file;
     private final IntegrityCheck integrityCheck;
     private Path candidate;
     private final ArrayList<IntegrityCheckHandler> integrityCheckHandlers = new ArrayList<>();
+    private boolean partFileClaimed = false;
 
     /**
      * @param url the URL of remote file.
@@ -140,6 +158,18 @@ public class FileDownloadTask extends FetchTask<Void> {
         integrityCheckHandlers.add(Objects.requireNonNull(handler));
     }
 
+    @Override
+    public void execute() throws Exception {
+        try {
+            super.execute();
+        } finally {
+            if (partFileClaimed) {
+                partFileClaimed = false;
+                PART_FILES_IN_USE.remove(getPartFile());
+            }
+        }
+    }
+
     @Override
     protected EnumCheckETag shouldCheckETag() {
         // Check cache
@@ -172,11 +202,21 @@ public class FileDownloadTask extends FetchTask<Void> {
 
     @Override
     protected Context getContext(URLConnection conn, boolean checkETag) throws IOException {
-        Path temp = Files.createTempFile(null, null);
+        long contentLength = conn.getContentLengthLong();
+        String validator = getRangeValidator(conn);
+        // Large files are written next to the destination, so that they can be resumed by later attempts.
+        boolean resumable = contentLength >= RESUMABLE_THRESHOLD && validator != null
+                && !"none".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"))
+                && claimPartFile();
+
+        Path temp = resumable ? createPartFile() : Files.createTempFile(null, null);
         RandomAccessFile rFile = new RandomAccessFile(temp.toFile(), "rw");
+        if (resumable) rFile.setLength(contentLength);
         MessageDigest digest = integrityCheck == null ? null : integrityCheck.createDigest();
 
         return new Context() {
+            long downloaded = 0;
+
             @Override
             public void write(byte[] buffer, int offset, int len) throws IOException {
                 if (digest != null) {
@@ -184,6 +224,7 @@ public class FileDownloadTask extends FetchTask<Void> {
                 }
 
                 rFile.write(buffer, offset, len);
+                downloaded += len;
             }
 
             @Override
@@ -195,6 +236,11 @@ public class FileDownloadTask extends FetchTask<Void> {
                 }
 
                 if (!isSuccess()) {
+                    if (resumable && downloaded > 0 && downloaded <= contentLength) {
+                        saveResumption(conn, validator, contentLength, Collections.singletonList(new Segment(0, contentLength, downloaded)));
+                        return;
+                    }
+
                     try {
                         Files.delete(temp);
                     } catch (IOException e) {
@@ -203,40 +249,219 @@ public class FileDownloadTask extends FetchTask<Void> {
                     return;
                 }
 
-                for (IntegrityCheckHandler handler : integrityCheckHandlers) {
-                    handler.checkIntegrity(temp, file.toPath());
-                }
+                complete(temp, digest, conn, checkETag);
+            }
+        };
+    }
 
-                Files.deleteIfExists(file.toPath());
-                if (!FileUtils.makeDirectory(file.getAbsoluteFile().getParentFile()))
-                    throw new IOException("Unable to make parent directory " + file);
+    @Override
+    protected RangedContext getRangedContext(URLConnection conn, long contentLength, List<Segment> segments, boolean checkETag) throws IOException {
+        // If another task downloading the same file is using the part file, this download cannot be resumed.
+        String validator = claimPartFile() ? getRangeValidator(conn) : null;
+        Path temp = validator != null ? createPartFile() : Files.createTempFile(null, null);
+        RandomAccessFile rFile = new RandomAccessFile(temp.toFile(), "rw");
+        FileChannel channel = rFile.getChannel();
+        try {
+            // Keeps the content already downloaded only if resumed, the part file may be left by an attempt not saved.
+            boolean resumed = false;
+            for (Segment segment : segments)
+                resumed |= segment.getCurrent() > segment.getStart();
+            if (!resumed)
+                rFile.setLength(0);
+            rFile.setLength(contentLength);
+        } catch (IOException e) {
+            rFile.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
 
-                try {
-                    FileUtils.moveFile(temp.toFile(), file);
-                } catch (Exception e) {
-                    throw new IOException("Unable to move temp file from " + temp + " to " + file, e);
+        return new RangedContext() {
+            @Override
+            public void write(long position, byte[] buffer, int offset, int len) throws IOException {
+                ByteBuffer buf = ByteBuffer.wrap(buffer, offset, len);
+                while (buf.hasRemaining()) {
+                    position += channel.write(buf, position);
                 }
+            }
 
-                // Integrity check
-                if (integrityCheck != null) {
-                    integrityCheck.performCheck(digest);
+            @Override
+            public void close() throws IOException {
+                try {
+                    rFile.close();
+                } catch (IOException e) {
+                    Logging.LOG.log(Level.WARNING, "Failed to close file: " + rFile, e);
                 }
 
-                if (caching && integrityCheck != null) {
+                if (!isSuccess()) {
+                    if (validator != null) {
+                        saveResumption(conn, validator, contentLength, segments);
+                        return;
+                    }
+
                     try {
-                        repository.cacheFile(file.toPath(), integrityCheck.getAlgorithm(), integrityCheck.getChecksum());
+                        Files.delete(temp);
                     } catch (IOException e) {
-                        Logging.LOG.log(Level.WARNING, "Failed to cache file", e);
+                        Logging.LOG.log(Level.WARNING, "Failed to delete file: " + rFile, e);
                     }
+                    return;
                 }
 
-                if (checkETag) {
-                    repository.cacheRemoteFile(file.toPath(), conn);
+                // Segments arrive out of order, so the digest can only be computed after all of them are written.
+                MessageDigest digest = null;
+                if (integrityCheck != null) {
+                    try (InputStream is = Files.newInputStream(temp)) {
+                        digest = DigestUtils.updateDigest(integrityCheck.createDigest(), is);
+                    }
                 }
+
+                complete(temp, digest, conn, checkETag);
             }
         };
     }
 
+    private Path getPartFile() {
+        return file.toPath().toAbsolutePath().resolveSibling(file.getName() + ".part");
+    }
+
+    private Path getPartStateFile() {
+        return file.toPath().resolveSibling(file.getName() + ".part.json");
+    }
+
+    /**
+     * @return true if this task can use the part file, which is not used by other running tasks.
+     */
+    private boolean claimPartFile() {
+        if (!partFileClaimed)
+            partFileClaimed = PART_FILES_IN_USE.add(getPartFile());
+        return partFileClaimed;
+    }
+
+    private Path createPartFile() throws IOException {
+        if (!FileUtils.makeDirectory(file.getAbsoluteFile().getParentFile()))
+            throw new IOException("Unable to make parent directory " + file);
+        return getPartFile();
+    }
+
+    @Override
+    protected Resumption getResumption() {
+        Path stateFile = getPartStateFile();
+        if (!Files.isRegularFile(stateFile) || !claimPartFile()) return null;
+
+        try {
+            PartialDownload state = JsonUtils.fromNonNullJson(FileUtils.readText(stateFile), PartialDownload.class);
+            Path part = getPartFile();
+            if (state.validator == null || state.segments == null || state.segments.isEmpty())
+                throw new IOException("Malformed partial download state");
+            if (!Files.isRegularFile(part) || Files.size(part) != state.contentLength
+                    || Files.getLastModifiedTime(part).toMillis() != state.lastModified)
+                throw new IOException("Partially downloaded file has been modified");
+
+            List<Segment> segments = new ArrayList<>(state.segments.size());
+            for (long[] segment : state.segments) {
+                if (segment.length != 3 || segment[1] > state.contentLength)
+                    throw new IOException("Malformed partial download state");
+                segments.add(new Segment(segment[0], segment[1], segment[2]));
+            }
+
+            Logging.LOG.log(Level.FINE, "Resuming download of " + file + " from " + state.url);
+            return new Resumption(state.validator, state.contentLength, segments);
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to resume download of " + file, e);
+            discardResumption();
+            return null;
+        }
+    }
+
+    @Override
+    protected void discardResumption() {
+        if (!partFileClaimed) return;
+        try {
+            Files.deleteIfExists(getPartStateFile());
+            Files.deleteIfExists(getPartFile());
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Failed to delete partially downloaded file of " + file, e);
+        }
+    }
+
+    private void saveResumption(URLConnection conn, String validator, long contentLength, List<Segment> segments) {
+        try {
+            List<long[]> states = new ArrayList<>(segments.size());
+            for (Segment segment : segments)
+                states.add(new long[]{segment.getStart(), segment.getEnd(), segment.getCurrent()});
+
+            long lastModified = Files.getLastModifiedTime(getPartFile()).toMillis();
+            FileUtils.writeText(getPartStateFile(), JsonUtils.GSON.toJson(new PartialDownload(conn.getURL().toString(), validator, contentLength, lastModified, states)));
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Failed to save partial download state of " + file, e);
+            discardResumption();
+        }
+    }
+
+    /**
+     * State of partially downloaded file, saved in {@code <file>.part.json}.
+     */
+    private static final class PartialDownload {
+        private final String url;
+        private final String validator;
+        private final long contentLength;
+        /**
+         * Last modified time of the part file, used to detect modifications by others.
+         */
+        private final long lastModified;
+        /**
+         * [start, end, current] of each segment.
+         */
+        private final List<long[]> segments;
+
+        public PartialDownload() {
+            this(null, null, 0, 0, null);
+        }
+
+        public PartialDownload(String url, String validator, long contentLength, long lastModified, List<long[]> segments) {
+            this.url = url;
+            this.validator = validator;
+            this.contentLength = contentLength;
+            this.lastModified = lastModified;
+            this.segments = segments;
+        }
+    }
+
+    private void complete(Path temp, MessageDigest digest, URLConnection conn, boolean checkETag) throws IOException {
+        if (partFileClaimed)
+            Files.deleteIfExists(getPartStateFile());
+
+        for (IntegrityCheckHandler handler : integrityCheckHandlers) {
+            handler.checkIntegrity(temp, file.toPath());
+        }
+
+        Files.deleteIfExists(file.toPath());
+        if (!FileUtils.makeDirectory(file.getAbsoluteFile().getParentFile()))
+            throw new IOException("Unable to make parent directory " + file);
+
+        try {
+            FileUtils.moveFile(temp.toFile(), file);
+        } catch (Exception e) {
+            throw new IOException("Unable to move temp file from " + temp + " to " + file, e);
+        }
+
+        // Integrity check
+        if (integrityCheck != null) {
+            integrityCheck.performCheck(digest);
+        }
+
+        if (caching && integrityCheck != null) {
+            try {
+                repository.cacheFile(file.toPath(), integrityCheck.getAlgorithm(), integrityCheck.getChecksum());
+            } catch (IOException e) {
+                Logging.LOG.log(Level.WARNING, "Failed to cache file", e);
+            }
+        }
+
+        if (checkETag) {
+            repository.cacheRemoteFile(file.toPath(), conn);
+        }
+    }
+
     public interface IntegrityCheckHandler {
         /**
          * Check whether the file is corrupted or not.
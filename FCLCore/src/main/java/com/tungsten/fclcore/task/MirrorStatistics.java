@@ -0,0 +1,283 @@
+package com.tungsten.fclcore.task;
+
+import com.tungsten.fclcore.util.CacheRepository;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks how download mirrors performed recently, so that the best mirror can be tried first.
+ *
+ * A mirror is identified by the scheme, host and port of URLs. For every mirror, the latency until the response code
+ * is received, the throughput of transfers and the outcomes of the last {@value #WINDOW_SIZE} requests are kept.
+ * Summaries are persisted in {@link CacheRepository.Storage}, they are used until enough requests are made in this session.
+ */
+public final class MirrorStatistics {
+    private MirrorStatistics() {
+    }
+
+    private static final int WINDOW_SIZE = 32;
+    private static final int MIN_SAMPLES = 4;
+    private static final int SAVE_INTERVAL = 64;
+
+    /**
+     * Transfers smaller than this are dominated by latency and do not tell the throughput.
+     */
+    private static final long MIN_TRANSFER_SIZE = 64 * 1024;
+
+    /**
+     * Mirrors are compared by the estimated time of downloading a file of this size.
+     */
+    private static final long REFERENCE_SIZE = 1024 * 1024;
+    private static final double DEFAULT_THROUGHPUT = 512 * 1024;
+    private static final double MIN_SUCCESS_RATE = 0.05;
+
+    private static final String STORAGE_NAME = "download";
+    private static final String STORAGE_KEY = "mirrors";
+
+    private static final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+    private static final AtomicInteger unsavedSamples = new AtomicInteger();
+    private static volatile boolean loaded = false;
+
+    public static String getMirror(URL url) {
+        return url.getProtocol() + "://" + url.getHost() + (url.getPort() == -1 ? "" : ":" + url.getPort());
+    }
+
+    private static Mirror mirror(URL url) {
+        load();
+        return mirrors.computeIfAbsent(getMirror(url), key -> new Mirror());
+    }
+
+    /**
+     * Record that the response code of a request to the given URL is received.
+     *
+     * @param latency milliseconds from connecting to receiving the response code
+     */
+    public static void recordResponse(URL url, long latency, int responseCode) {
+        byte outcome;
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE)
+            outcome = Mirror.NOT_FOUND;
+        else if (responseCode >= 400)
+            outcome = Mirror.ERROR;
+        else
+            outcome = Mirror.OK;
+        mirror(url).addRequest(latency, outcome);
+        sampleAdded();
+    }
+
+    /**
+     * Record that a request to the given URL failed without a response, or the transfer was broken.
+     */
+    public static void recordFailure(URL url) {
+        mirror(url).addRequest(-1, Mirror.ERROR);
+        sampleAdded();
+    }
+
+    public static void recordTransfer(URL url, long bytes, long nanos) {
+        if (bytes < MIN_TRANSFER_SIZE || nanos <= 0) return;
+        mirror(url).addThroughput(bytes * 1e9 / nanos);
+    }
+
+    /**
+     * @return the estimated milliseconds of downloading a file from the mirror, including the cost of failures,
+     * or empty if the mirror is not known yet.
+     */
+    public static OptionalDouble getScore(URL url) {
+        return mirror(url).getScore();
+    }
+
+    /**
+     * @return the latency of the given percentile in milliseconds, or empty if the mirror is not known yet.
+     */
+    public static OptionalLong getLatency(URL url, double percentile) {
+        return mirror(url).getLatency(percentile);
+    }
+
+    /**
+     * Order candidates from the best mirror to the worst one.
+     * Candidates of mirrors that are not known yet keep their positions, so that they still get requests
+     * to be measured, and the configured order is used before anything is known.
+     */
+    public static List<URL> sort(List<URL> candidates) {
+        if (candidates.size() <= 1) return candidates;
+
+        // Scores are kept by position, hashing URL would resolve the host name.
+        List<Integer> positions = new ArrayList<>();
+        double[] scores = new double[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            OptionalDouble score = getScore(candidates.get(i));
+            if (score.isPresent()) {
+                positions.add(i);
+                scores[i] = score.getAsDouble();
+            }
+        }
+        if (positions.size() <= 1) return candidates;
+
+        List<Integer> known = new ArrayList<>(positions);
+        known.sort((a, b) -> Double.compare(scores[a], scores[b]));
+        List<URL> result = new ArrayList<>(candidates);
+        for (int i = 0; i < positions.size(); i++)
+            result.set(positions.get(i), candidates.get(known.get(i)));
+        return result;
+    }
+
+    private static void sampleAdded() {
+        if (unsavedSamples.incrementAndGet() >= SAVE_INTERVAL) {
+            unsavedSamples.set(0);
+            save();
+        }
+    }
+
+    private static void load() {
+        if (loaded) return;
+        synchronized (MirrorStatistics.class) {
+            if (loaded) return;
+            loaded = true;
+
+            Object entry = CacheRepository.getInstance().getStorage(STORAGE_NAME).getEntry(STORAGE_KEY);
+            if (!(entry instanceof Map)) return;
+            for (Map.Entry<?, ?> item : ((Map<?, ?>) entry).entrySet()) {
+                if (item.getKey() instanceof String && item.getValue() instanceof Map)
+                    mirrors.computeIfAbsent((String) item.getKey(), key -> new Mirror()).restore((Map<?, ?>) item.getValue());
+            }
+        }
+    }
+
+    /**
+     * Persist the summaries of mirrors.
+     */
+    public static void save() {
+        Map<String, Object> summaries = new HashMap<>();
+        mirrors.forEach((name, mirror) -> {
+            Map<String, Object> summary = mirror.summarize();
+            if (summary != null)
+                summaries.put(name, summary);
+        });
+        CacheRepository.getInstance().getStorage(STORAGE_NAME).putEntry(STORAGE_KEY, summaries);
+    }
+
+    private static final class Mirror {
+        static final byte OK = 0;
+        static final byte ERROR = 1;
+        static final byte NOT_FOUND = 2;
+
+        // Ring buffers of the last requests, latency is -1 if no response is received.
+        private final long[] latencies = new long[WINDOW_SIZE];
+        private final byte[] outcomes = new byte[WINDOW_SIZE];
+        private int requests;
+
+        private final double[] throughputs = new double[WINDOW_SIZE];
+        private int transfers;
+
+        // Summary of previous sessions
+        private double priorLatency = -1;
+        private double priorThroughput = -1;
+        private double priorErrorRate;
+        private double priorNotFoundRate;
+
+        synchronized void addRequest(long latency, byte outcome) {
+            latencies[requests % WINDOW_SIZE] = latency;
+            outcomes[requests % WINDOW_SIZE] = outcome;
+            requests++;
+        }
+
+        synchronized void addThroughput(double throughput) {
+            throughputs[transfers % WINDOW_SIZE] = throughput;
+            transfers++;
+        }
+
+        private long[] sortedLatencies() {
+            int count = Math.min(requests, WINDOW_SIZE);
+            long[] result = new long[count];
+            int size = 0;
+            for (int i = 0; i < count; i++)
+                if (latencies[i] >= 0)
+                    result[size++] = latencies[i];
+            result = Arrays.copyOf(result, size);
+            Arrays.sort(result);
+            return result;
+        }
+
+        private double medianThroughput() {
+            int count = Math.min(transfers, WINDOW_SIZE);
+            if (count == 0) return priorThroughput;
+            double[] sorted = Arrays.copyOf(throughputs, count);
+            Arrays.sort(sorted);
+            return sorted[count / 2];
+        }
+
+        private double rate(byte outcome) {
+            int count = Math.min(requests, WINDOW_SIZE);
+            int matched = 0;
+            for (int i = 0; i < count; i++)
+                if (outcomes[i] == outcome)
+                    matched++;
+            return (double) matched / count;
+        }
+
+        synchronized OptionalLong getLatency(double percentile) {
+            long[] sorted = sortedLatencies();
+            if (sorted.length < MIN_SAMPLES) return OptionalLong.empty();
+            return OptionalLong.of(sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))]);
+        }
+
+        synchronized OptionalDouble getScore() {
+            double latency, errorRate, notFoundRate;
+            if (requests >= MIN_SAMPLES) {
+                long[] sorted = sortedLatencies();
+                // Every request failed without response, the latency does not matter.
+                latency = sorted.length == 0 ? 0 : sorted[sorted.length / 2];
+                errorRate = rate(ERROR);
+                notFoundRate = rate(NOT_FOUND);
+            } else if (priorLatency >= 0) {
+                latency = priorLatency;
+                errorRate = priorErrorRate;
+                notFoundRate = priorNotFoundRate;
+            } else {
+                return OptionalDouble.empty();
+            }
+
+            double throughput = medianThroughput();
+            if (throughput <= 0) throughput = DEFAULT_THROUGHPUT;
+
+            double cost = latency + REFERENCE_SIZE * 1000 / throughput;
+            return OptionalDouble.of(cost / Math.max(1 - errorRate - notFoundRate, MIN_SUCCESS_RATE));
+        }
+
+        synchronized Map<String, Object> summarize() {
+            Map<String, Object> summary = new HashMap<>();
+            if (requests < MIN_SAMPLES) {
+                if (priorLatency < 0) return null;
+                summary.put("latency", priorLatency);
+                summary.put("throughput", medianThroughput());
+                summary.put("errorRate", priorErrorRate);
+                summary.put("notFoundRate", priorNotFoundRate);
+                return summary;
+            }
+
+            long[] sorted = sortedLatencies();
+            summary.put("latency", sorted.length == 0 ? 0 : sorted[sorted.length / 2]);
+            summary.put("throughput", medianThroughput());
+            summary.put("errorRate", rate(ERROR));
+            summary.put("notFoundRate", rate(NOT_FOUND));
+            return summary;
+        }
+
+        synchronized void restore(Map<?, ?> summary) {
+            if (!(summary.get("latency") instanceof Number)) return;
+            priorLatency = ((Number) summary.get("latency")).doubleValue();
+            priorThroughput = summary.get("throughput") instanceof Number ? ((Number) summary.get("throughput")).doubleValue() : -1;
+            priorErrorRate = summary.get("errorRate") instanceof Number ? ((Number) summary.get("errorRate")).doubleValue() : 0;
+            priorNotFoundRate = summary.get("notFoundRate") instanceof Number ? ((Number) summary.get("notFoundRate")).doubleValue() : 0;
+        }
+    }
+}
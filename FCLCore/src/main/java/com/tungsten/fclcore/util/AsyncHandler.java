@@ -0,0 +1,138 @@
+package com.tungsten.fclcore.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Publishes records to the target handlers on a single writer thread,
+ * so that threads logging do not wait for formatting and I/O.
+ *
+ * Records are published in batches and the targets are flushed once per batch.
+ * When more than {@code capacity} records are waiting, records below {@link Level#INFO} are dropped
+ * and a summary of dropped records is logged instead.
+ */
+final class AsyncHandler extends Handler {
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final Handler[] targets;
+    private final int capacity;
+
+    private final ConcurrentLinkedQueue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger peakDepth = new AtomicInteger();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private long reportedDroppedRecords;
+
+    private final Object drainLock = new Object();
+    private final Thread writer;
+    private volatile boolean waiting;
+
+    AsyncHandler(int capacity, Handler... targets) {
+        this.capacity = capacity;
+        this.targets = targets;
+
+        writer = new Thread(this::run, "Logging");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record))
+            return;
+
+        if (record.getLevel().intValue() < Level.INFO.intValue() && depth.get() >= capacity) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+
+        // The caller is inferred from the stack trace lazily, it must be done on the logging thread.
+        record.getSourceClassName();
+
+        queue.add(record);
+        int current = depth.incrementAndGet();
+        int peak;
+        while (current > (peak = peakDepth.get()) && !peakDepth.compareAndSet(peak, current)) ;
+
+        if (waiting)
+            LockSupport.unpark(writer);
+    }
+
+    private void run() {
+        while (true) {
+            if (!drain()) {
+                waiting = true;
+                if (queue.isEmpty())
+                    LockSupport.park(this);
+                waiting = false;
+            }
+        }
+    }
+
+    /**
+     * @return false if there is nothing to publish
+     */
+    private boolean drain() {
+        synchronized (drainLock) {
+            int count = 0;
+            LogRecord record;
+            while (count < MAX_BATCH_SIZE && (record = queue.poll()) != null) {
+                depth.decrementAndGet();
+                count++;
+                for (Handler target : targets)
+                    target.publish(record);
+            }
+
+            long dropped = droppedRecords.get();
+            if (dropped != reportedDroppedRecords) {
+                LogRecord summary = new LogRecord(Level.WARNING, (dropped - reportedDroppedRecords) + " log records below INFO were dropped because the logging queue is full");
+                summary.setSourceClassName(Logging.class.getName());
+                summary.setSourceMethodName("log");
+                reportedDroppedRecords = dropped;
+                count++;
+                for (Handler target : targets)
+                    target.publish(summary);
+            }
+
+            if (count == 0)
+                return false;
+            for (Handler target : targets)
+                target.flush();
+            return true;
+        }
+    }
+
+    int getQueueDepth() {
+        return depth.get();
+    }
+
+    int getPeakQueueDepth() {
+        return peakDepth.get();
+    }
+
+    long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * Publish all the waiting records on the calling thread.
+     */
+    @Override
+    public void flush() {
+        synchronized (drainLock) {
+            while (drain()) ;
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        for (Handler target : targets)
+            target.close();
+    }
+}
@@ -3,6 +3,7 @@ package com.tungsten.fclcore.util;
 import static com.tungsten.fclcore.util.Logging.LOG;
 
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 import com.tungsten.fclcore.util.function.ExceptionalSupplier;
@@ -12,6 +13,7 @@ import com.tungsten.fclcore.util.io.IOUtils;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.net.URLConnection;
@@ -20,11 +22,17 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiFunction;
@@ -44,25 +52,40 @@ public class CacheRepository {
     public void changeDirectory(Path commonDir) {
         commonDirectory = commonDir;
         cacheDirectory = commonDir.resolve("cache");
-        indexFile = cacheDirectory.resolve("etag.json");
+        Path indexFile = cacheDirectory.resolve("etag.json");
+        FileDigestCache.getInstance().changeIndexFile(cacheDirectory.resolve("digests.bin"));
 
         lock.writeLock().lock();
         try {
+            // Entries of the previous directory should not be saved into the new one
+            if (indexSaveScheduled.getAndSet(false) && this.indexFile != null) {
+                try {
+                    saveETagIndex();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Unable to save index file", e);
+                }
+            }
+
+            this.indexFile = indexFile;
+
             for (Storage storage : storages.values()) {
                 storage.changeDirectory(cacheDirectory);
             }
 
             if (Files.isRegularFile(indexFile)) {
-                ETagIndex raw = JsonUtils.GSON.fromJson(FileUtils.readText(indexFile.toFile()), ETagIndex.class);
+                ETagIndex raw;
+                try (InputStream input = Files.newInputStream(indexFile)) {
+                    raw = JsonUtils.fromJsonFully(input, ETagIndex.class);
+                }
                 if (raw == null)
-                    index = new HashMap<>();
+                    index = new ConcurrentHashMap<>();
                 else
                     index = joinETagIndexes(raw.eTag);
             } else
-                index = new HashMap<>();
+                index = new ConcurrentHashMap<>();
         } catch (IOException | JsonParseException e) {
             LOG.log(Level.WARNING, "Unable to read index file", e);
-            index = new HashMap<>();
+            index = new ConcurrentHashMap<>();
         } finally {
             lock.writeLock().unlock();
         }
@@ -78,11 +101,16 @@ public class CacheRepository {
     }
 
     public Storage getStorage(String key) {
-        lock.readLock().lock();
+        lock.writeLock().lock();
         try {
-            return storages.computeIfAbsent(key, Storage::new);
+            return storages.computeIfAbsent(key, name -> {
+                Storage storage = new Storage(name);
+                if (cacheDirectory != null)
+                    storage.changeDirectory(cacheDirectory);
+                return storage;
+            });
         } finally {
-            lock.readLock().unlock();
+            lock.writeLock().unlock();
         }
     }
 
@@ -95,7 +123,7 @@ public class CacheRepository {
         Path file = getFile(algorithm, hash);
         if (Files.exists(file)) {
             try {
-                return Hex.encodeHex(DigestUtils.digest(algorithm, file)).equalsIgnoreCase(hash);
+                return FileDigestCache.getInstance().checksumMatches(algorithm, file, hash);
             } catch (IOException e) {
                 return false;
             }
@@ -123,8 +151,7 @@ public class CacheRepository {
         if (original != null && Files.exists(original)) {
             if (hash != null) {
                 try {
-                    String checksum = Hex.encodeHex(DigestUtils.digest(algorithm, original));
-                    if (checksum.equalsIgnoreCase(hash))
+                    if (FileDigestCache.getInstance().checksumMatches(algorithm, original, hash))
                         return Optional.of(restore(original, () -> cacheFile(original, algorithm, hash)));
                 } catch (IOException e) {
                     // we cannot check the hashcode.
@@ -157,7 +184,7 @@ public class CacheRepository {
         if (StringUtils.isBlank(eTagItem.hash) || !fileExists(SHA1, eTagItem.hash)) throw new FileNotFoundException();
         Path file = getFile(SHA1, eTagItem.hash);
         if (Files.getLastModifiedTime(file).toMillis() != eTagItem.localLastModified) {
-            String hash = Hex.encodeHex(DigestUtils.digest(SHA1, file));
+            String hash = FileDigestCache.getInstance().digest(SHA1, file);
             if (!Objects.equals(hash, eTagItem.hash))
                 throw new IOException("This file is modified");
         }
@@ -211,21 +238,20 @@ public class CacheRepository {
         }, conn);
     }
 
-    public synchronized void cacheData(ExceptionalSupplier<CacheResult, IOException> cacheSupplier, URLConnection conn) throws IOException {
+    public void cacheData(ExceptionalSupplier<CacheResult, IOException> cacheSupplier, URLConnection conn) throws IOException {
         String eTag = conn.getHeaderField("ETag");
         if (eTag == null) return;
         String url = conn.getURL().toString();
         String lastModified = conn.getHeaderField("Last-Modified");
         CacheResult cacheResult = cacheSupplier.get();
         ETagItem eTagItem = new ETagItem(url, eTag, cacheResult.hash, Files.getLastModifiedTime(cacheResult.cachedFile).toMillis(), lastModified);
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
+        lock.readLock().lock();
         try {
             index.compute(eTagItem.url, updateEntity(eTagItem));
-            saveETagIndex();
         } finally {
-            writeLock.unlock();
+            lock.readLock().unlock();
         }
+        scheduleSaveETagIndex();
     }
 
     private static class CacheResult {
@@ -270,20 +296,110 @@ public class CacheRepository {
         return eTags;
     }
 
+    /**
+     * Delay of saving the index file after it is modified, so that entries cached in a short time
+     * are written in one batch instead of rewriting the whole file for each entry.
+     */
+    private static final long SAVE_INDEX_DELAY = 2000;
+    private static final ScheduledExecutorService INDEX_SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "CacheIndexSaver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Repositories with entries not saved yet, saved when the launcher exits.
+     */
+    private static final Set<CacheRepository> UNSAVED_REPOSITORIES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (CacheRepository repository : UNSAVED_REPOSITORIES)
+                repository.flushETagIndex();
+        }, "CacheIndexFlusher"));
+    }
+
+    private static final Object INDEX_FILE_LOCK = new Object();
+
+    private final AtomicBoolean indexSaveScheduled = new AtomicBoolean(false);
+
+    private void scheduleSaveETagIndex() {
+        if (indexSaveScheduled.compareAndSet(false, true)) {
+            UNSAVED_REPOSITORIES.add(this);
+            INDEX_SAVER.schedule(this::flushETagIndex, SAVE_INDEX_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Save the index now if it is modified and not saved yet.
+     */
+    public void flushETagIndex() {
+        UNSAVED_REPOSITORIES.remove(this);
+        if (!indexSaveScheduled.getAndSet(false)) return;
+        try {
+            saveETagIndex();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save index file", e);
+        }
+    }
+
+    /**
+     * Merge the index with the one on disk, which may be modified by other processes, and save it.
+     * The index file is locked across processes while it is merged, and replaced atomically under the lock.
+     */
     public void saveETagIndex() throws IOException {
-        try (RandomAccessFile file = new RandomAccessFile(indexFile.toFile(), "rw"); FileChannel channel = file.getChannel()) {
-            FileLock lock = channel.lock();
-            try {
-                ETagIndex indexOnDisk = JsonUtils.fromMaybeMalformedJson(new String(IOUtils.readFullyWithoutClosing(Channels.newInputStream(channel)), UTF_8), ETagIndex.class);
-                Map<String, ETagItem> newIndex = joinETagIndexes(indexOnDisk == null ? null : indexOnDisk.eTag, index.values());
-                channel.truncate(0);
-                OutputStream os = Channels.newOutputStream(channel);
-                ETagIndex writeTo = new ETagIndex(newIndex.values());
-                IOUtils.write(JsonUtils.GSON.toJson(writeTo).getBytes(UTF_8), os);
-                this.index = newIndex;
-            } finally {
-                lock.release();
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(indexFile.getParent());
+            // A file lock only excludes other processes, saving threads of this process are excluded here.
+            synchronized (INDEX_FILE_LOCK) {
+                while (true) {
+                    boolean existed = Files.isRegularFile(indexFile);
+                    Object fileKey = getFileKey(indexFile);
+                    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        FileLock fileLock = channel.lock();
+                        try {
+                            // Another process may have replaced the index file while we were waiting for the lock,
+                            // then the file we locked is no longer the index file.
+                            if (!existed || !Objects.equals(fileKey, getFileKey(indexFile)))
+                                continue;
+
+                            ETagIndex indexOnDisk;
+                            try {
+                                // The channel must not be closed by the stream, the lock is held until the file is replaced.
+                                indexOnDisk = JsonUtils.fromJsonFully(Channels.newInputStream(channel), ETagIndex.class);
+                            } catch (JsonSyntaxException e) {
+                                indexOnDisk = null;
+                            }
+                            if (indexOnDisk != null && indexOnDisk.eTag != null) {
+                                for (ETagItem eTag : indexOnDisk.eTag) {
+                                    index.compute(eTag.url, updateEntity(eTag));
+                                }
+                            }
+
+                            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+                            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                                IOUtils.write(JsonUtils.GSON.toJson(new ETagIndex(index.values())).getBytes(UTF_8), Channels.newOutputStream(out));
+                                out.force(true);
+                            }
+                            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                            return;
+                        } finally {
+                            fileLock.release();
+                        }
+                    }
+                }
             }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Object getFileKey(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
         }
     }
 
@@ -358,7 +474,7 @@ public class CacheRepository {
      */
     public static class Storage {
         private final String name;
-        private Map<String, Object> storage;
+        private Map<String, Object> storage = new HashMap<>();
         private final ReadWriteLock lock = new ReentrantReadWriteLock();
         private Path indexFile;
 
@@ -394,8 +510,10 @@ public class CacheRepository {
             try {
                 indexFile = cacheDirectory.resolve(name + ".json");
                 if (Files.isRegularFile(indexFile)) {
-                    joinEntries(JsonUtils.fromNonNullJson(FileUtils.readText(indexFile.toFile()), new TypeToken<Map<String, Object>>() {
-                    }.getType()));
+                    try (InputStream input = Files.newInputStream(indexFile)) {
+                        joinEntries(JsonUtils.fromNonNullJsonFully(input, new TypeToken<Map<String, Object>>() {
+                        }.getType()));
+                    }
                 }
             } catch (IOException | JsonParseException e) {
                 LOG.log(Level.WARNING, "Unable to read storage {" + name + "} file");
@@ -405,16 +523,23 @@ public class CacheRepository {
         }
 
         public void saveToFile() {
+            if (indexFile == null) return;
             try (RandomAccessFile file = new RandomAccessFile(indexFile.toFile(), "rw"); FileChannel channel = file.getChannel()) {
                 FileLock lock = channel.lock();
                 try {
-                    Map<String, Object> indexOnDisk = JsonUtils.fromMaybeMalformedJson(new String(IOUtils.readFullyWithoutClosing(Channels.newInputStream(channel)), UTF_8), new TypeToken<Map<String, Object>>() {
-                    }.getType());
+                    Map<String, Object> indexOnDisk;
+                    try {
+                        // The channel must not be closed by the stream, it is written later.
+                        indexOnDisk = JsonUtils.fromJsonFully(Channels.newInputStream(channel), new TypeToken<Map<String, Object>>() {
+                        }.getType());
+                    } catch (JsonSyntaxException e) {
+                        indexOnDisk = null;
+                    }
                     if (indexOnDisk == null) indexOnDisk = new HashMap<>();
                     indexOnDisk.putAll(storage);
                     channel.truncate(0);
                     OutputStream os = Channels.newOutputStream(channel);
-                    IOUtils.write(JsonUtils.GSON.toJson(storage).getBytes(UTF_8), os);
+                    IOUtils.write(JsonUtils.GSON.toJson(indexOnDisk).getBytes(UTF_8), os);
                     this.storage = indexOnDisk;
                 } finally {
                     lock.release();
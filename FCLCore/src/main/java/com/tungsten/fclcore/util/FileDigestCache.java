@@ -0,0 +1,197 @@
+package com.tungsten.fclcore.util;
+
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Remembers digests of local files keyed by (path, size, mtime, file key),
+ * so that unchanged files are verified by a stat call instead of being hashed again.
+ */
+public final class FileDigestCache {
+
+    private static final int MAGIC = 0x46444331; // FDC1
+    private static final long SAVE_DELAY = 2000;
+
+    /**
+     * Files modified within this interval before being hashed may be modified again
+     * without changing their mtime on file systems with coarse timestamps, so we do not remember them.
+     */
+    private static final long RACY_INTERVAL = 2000;
+
+    private static final ScheduledExecutorService SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FileDigestCacheSaver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final FileDigestCache INSTANCE = new FileDigestCache();
+
+    public static FileDigestCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+    private volatile Path indexFile;
+
+    private FileDigestCache() {
+    }
+
+    /**
+     * Load the index from the given file, entries will also be saved to it later.
+     */
+    public synchronized void changeIndexFile(Path indexFile) {
+        if (Objects.equals(this.indexFile, indexFile)) return;
+
+        if (saveScheduled.getAndSet(false))
+            save();
+
+        this.indexFile = indexFile;
+        entries.clear();
+
+        if (!Files.isRegularFile(indexFile)) return;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC)
+                throw new IOException("Unrecognized digest index file");
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = input.readUTF();
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                String fileKey = input.readBoolean() ? input.readUTF() : null;
+                String digest = input.readUTF();
+                entries.put(key, new Entry(size, lastModified, fileKey, digest));
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to read digest index file " + indexFile, e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get hex encoded digest of the file, only hash the file if it has been changed since last time.
+     */
+    public String digest(String algorithm, Path file) throws IOException {
+        // Paths in zip file systems look like local paths, and their attributes cannot tell changes reliably.
+        if (file.getFileSystem() != FileSystems.getDefault())
+            return Hex.encodeHex(DigestUtils.digest(algorithm, file));
+
+        String key = algorithm + ":" + file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(size, lastModified, fileKey))
+            return entry.digest;
+
+        long hashedAt = System.currentTimeMillis();
+        String digest = Hex.encodeHex(DigestUtils.digest(algorithm, file));
+
+        BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+        if (after.size() == size && after.lastModifiedTime().toMillis() == lastModified && lastModified < hashedAt - RACY_INTERVAL) {
+            entries.put(key, new Entry(size, lastModified, fileKey, digest));
+            scheduleSave();
+        } else {
+            entries.remove(key);
+        }
+        return digest;
+    }
+
+    public boolean checksumMatches(String algorithm, Path file, String checksum) throws IOException {
+        return digest(algorithm, file).equalsIgnoreCase(checksum);
+    }
+
+    private void scheduleSave() {
+        if (indexFile != null && saveScheduled.compareAndSet(false, true)) {
+            SAVER.schedule(() -> {
+                if (saveScheduled.getAndSet(false))
+                    save();
+            }, SAVE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void save() {
+        Path indexFile = this.indexFile;
+        if (indexFile == null) return;
+
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                Map<String, Entry> snapshot = new HashMap<>(entries);
+                // Entries of files deleted or changed since they were hashed will never be hit again, drop them so that the index does not grow forever.
+                snapshot.entrySet().removeIf(pair -> {
+                    if (!isStale(pair.getKey(), pair.getValue())) return false;
+                    entries.remove(pair.getKey(), pair.getValue());
+                    return true;
+                });
+                output.writeInt(MAGIC);
+                output.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> pair : snapshot.entrySet()) {
+                    Entry entry = pair.getValue();
+                    output.writeUTF(pair.getKey());
+                    output.writeLong(entry.size);
+                    output.writeLong(entry.lastModified);
+                    output.writeBoolean(entry.fileKey != null);
+                    if (entry.fileKey != null)
+                        output.writeUTF(entry.fileKey);
+                    output.writeUTF(entry.digest);
+                }
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save digest index file " + indexFile, e);
+        }
+    }
+
+    private static boolean isStale(String key, Entry entry) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(key.substring(key.indexOf(':') + 1)), BasicFileAttributes.class);
+            return !entry.matches(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey() == null ? null : attributes.fileKey().toString());
+        } catch (IOException | InvalidPathException e) {
+            return true;
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+        private final String digest;
+
+        Entry(long size, long lastModified, String fileKey, String digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        boolean matches(long size, long lastModified, String fileKey) {
+            return this.size == size && this.lastModified == lastModified && Objects.equals(this.fileKey, fileKey);
+        }
+    }
+}
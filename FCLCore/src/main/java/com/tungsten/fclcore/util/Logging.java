@@ -5,10 +5,18 @@ import com.tungsten.fclcore.util.io.IOUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.text.MessageFormat;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -19,12 +27,19 @@ public final class Logging {
     }
 
     public static final Logger LOG = Logger.getLogger("FCL");
-    private static final ByteArrayOutputStream storedLogs = new ByteArrayOutputStream(IOUtils.DEFAULT_BUFFER_SIZE);
+
+    /**
+     * Only the latest logs of this size are kept in memory for exporting.
+     */
+    private static final int STORED_LOGS_SIZE = 4 * 1024 * 1024;
+    private static final RingBufferHandler storedLogs = new RingBufferHandler(STORED_LOGS_SIZE);
 
     private static final ConcurrentMap<String, String> forbiddenTokens = new ConcurrentHashMap<>();
+    private static volatile TokenMatcher forbiddenTokenMatcher = new TokenMatcher(Collections.emptyMap());
 
-    public static void registerForbiddenToken(String token, String replacement) {
+    public static synchronized void registerForbiddenToken(String token, String replacement) {
         forbiddenTokens.put(token, replacement);
+        forbiddenTokenMatcher = new TokenMatcher(forbiddenTokens);
     }
 
     public static void registerAccessToken(String accessToken) {
@@ -32,13 +47,23 @@ public final class Logging {
     }
 
     public static String filterForbiddenToken(String message) {
-        for (Map.Entry<String, String> entry : forbiddenTokens.entrySet()) {
-            message = message.replace(entry.getKey(), entry.getValue());
-        }
-        return message;
+        return forbiddenTokenMatcher.replace(message);
     }
 
+    /**
+     * Records below INFO are dropped when more records than this are waiting to be written asynchronously.
+     */
+    private static final int ASYNC_QUEUE_CAPACITY = 8192;
+    private static volatile AsyncHandler asyncHandler;
+
     public static void start(File logFolder) {
+        start(logFolder, true);
+    }
+
+    /**
+     * @param async whether to format and write records on a background thread instead of the logging thread.
+     */
+    public static void start(File logFolder, boolean async) {
         LOG.setLevel(Level.ALL);
         LOG.setUseParentHandlers(false);
         LOG.setFilter(record -> {
@@ -46,13 +71,17 @@ public final class Logging {
             return true;
         });
 
+        List<Handler> handlers = new ArrayList<>();
         try {
             FileUtils.makeDirectory(logFolder);
-            FileHandler fileHandler = new FileHandler(logFolder + "/fcl.log");
+            // FileHandler flushes every record, the asynchronous handler flushes once per batch instead.
+            StreamHandler fileHandler = async
+                    ? new StreamHandler(new FileOutputStream(new File(logFolder, "fcl.log")), DefaultFormatter.INSTANCE)
+                    : new FileHandler(logFolder + "/fcl.log");
             fileHandler.setLevel(Level.FINEST);
             fileHandler.setFormatter(DefaultFormatter.INSTANCE);
             fileHandler.setEncoding("UTF-8");
-            LOG.addHandler(fileHandler);
+            handlers.add(fileHandler);
         } catch (IOException e) {
             System.err.println("Unable to create fcl.log, " + e.getMessage());
         }
@@ -60,22 +89,52 @@ public final class Logging {
         ConsoleHandler consoleHandler = new ConsoleHandler();
         consoleHandler.setFormatter(DefaultFormatter.INSTANCE);
         consoleHandler.setLevel(Level.FINER);
-        LOG.addHandler(consoleHandler);
+        handlers.add(consoleHandler);
 
-        StreamHandler streamHandler = new StreamHandler(storedLogs, DefaultFormatter.INSTANCE) {
-            @Override
-            public synchronized void publish(LogRecord record) {
-                super.publish(record);
-                flush();
-            }
-        };
-        try {
-            streamHandler.setEncoding("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+        storedLogs.setFormatter(DefaultFormatter.INSTANCE);
+        storedLogs.setLevel(Level.ALL);
+        handlers.add(storedLogs);
+
+        if (async) {
+            asyncHandler = new AsyncHandler(ASYNC_QUEUE_CAPACITY, handlers.toArray(new Handler[0]));
+            asyncHandler.setLevel(Level.ALL);
+            LOG.addHandler(asyncHandler);
+            // The writer thread is a daemon thread, records still waiting when the launcher exits would be lost.
+            Runtime.getRuntime().addShutdownHook(new Thread(Logging::flush, "LoggingFlusher"));
+        } else {
+            for (Handler handler : handlers)
+                LOG.addHandler(handler);
         }
-        streamHandler.setLevel(Level.ALL);
-        LOG.addHandler(streamHandler);
+    }
+
+    /**
+     * Write all the records waiting in the asynchronous logging queue.
+     */
+    public static void flush() {
+        AsyncHandler handler = asyncHandler;
+        if (handler != null)
+            handler.flush();
+    }
+
+    /**
+     * @return number of records waiting to be written asynchronously
+     */
+    public static int getQueueDepth() {
+        AsyncHandler handler = asyncHandler;
+        return handler == null ? 0 : handler.getQueueDepth();
+    }
+
+    public static int getPeakQueueDepth() {
+        AsyncHandler handler = asyncHandler;
+        return handler == null ? 0 : handler.getPeakQueueDepth();
+    }
+
+    /**
+     * @return number of low level records dropped because the asynchronous logging queue was full
+     */
+    public static long getDroppedRecords() {
+        AsyncHandler handler = asyncHandler;
+        return handler == null ? 0 : handler.getDroppedRecords();
     }
 
     public static void initForTest() {
@@ -89,34 +148,236 @@ public final class Logging {
     }
 
     public static byte[] getRawLogs() {
-        return storedLogs.toByteArray();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(IOUtils.DEFAULT_BUFFER_SIZE);
+        try {
+            writeLogs(output);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return output.toByteArray();
     }
 
     public static String getLogs() {
-        try {
-            return storedLogs.toString("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            return e.getMessage();
+        return new String(getRawLogs(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the stored logs encoded in UTF-8 to the output without copying all of them into the heap.
+     */
+    public static void writeLogs(OutputStream output) throws IOException {
+        flush();
+        storedLogs.writeTo(output);
+    }
+
+    /**
+     * Keeps the latest formatted records in a fixed size off-heap buffer, older records are overwritten.
+     */
+    private static final class RingBufferHandler extends Handler {
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        private final ByteBuffer buffer;
+        private final int capacity;
+
+        /**
+         * Total bytes ever written, the buffer contains the last {@code min(written, capacity)} bytes.
+         */
+        private long written;
+
+        RingBufferHandler(int capacity) {
+            this.capacity = capacity;
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            if (!isLoggable(record))
+                return;
+
+            String message;
+            try {
+                message = getFormatter().format(record);
+            } catch (Exception e) {
+                reportError(null, e, ErrorManager.FORMAT_FAILURE);
+                return;
+            }
+
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            int offset = Math.max(0, bytes.length - capacity);
+            int length = bytes.length - offset;
+            int position = (int) (written % capacity);
+            int first = Math.min(length, capacity - position);
+            buffer.position(position);
+            buffer.put(bytes, offset, first);
+            if (first < length) {
+                buffer.position(0);
+                buffer.put(bytes, offset + first, length - first);
+            }
+            written += length;
+        }
+
+        /**
+         * Copy the buffer chunk by chunk so that loggers are not blocked while the output is being written.
+         */
+        void writeTo(OutputStream output) throws IOException {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            long position, end;
+            synchronized (this) {
+                end = written;
+                position = Math.max(0, written - capacity);
+            }
+
+            // The oldest record may be partially overwritten, skip to the next line.
+            boolean skipLine = position > 0;
+
+            while (true) {
+                int length;
+                synchronized (this) {
+                    position = Math.max(position, written - capacity);
+                    if (position >= end)
+                        break;
+                    length = (int) Math.min(chunk.length, end - position);
+                    int start = (int) (position % capacity);
+                    int first = Math.min(length, capacity - start);
+                    buffer.position(start);
+                    buffer.get(chunk, 0, first);
+                    if (first < length) {
+                        buffer.position(0);
+                        buffer.get(chunk, first, length - first);
+                    }
+                }
+                position += length;
+
+                int offset = 0;
+                if (skipLine) {
+                    while (offset < length && chunk[offset] != '\n')
+                        offset++;
+                    if (offset == length)
+                        continue;
+                    offset++;
+                    skipLine = false;
+                }
+                output.write(chunk, offset, length - offset);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Replaces all occurrences of the given tokens in one pass over the message.
+     * Candidates are indexed by their first character, so most characters are skipped with one array lookup.
+     */
+    private static final class TokenMatcher {
+        private static final int ASCII = 128;
+
+        private final String[][] asciiTokens = new String[ASCII][];
+        private final Map<Character, String[]> otherTokens = new HashMap<>();
+        private final Map<String, String> replacements;
+
+        TokenMatcher(Map<String, String> tokens) {
+            this.replacements = new HashMap<>(tokens);
+
+            Map<Character, List<String>> index = new HashMap<>();
+            for (String token : replacements.keySet())
+                if (!token.isEmpty())
+                    index.computeIfAbsent(token.charAt(0), key -> new ArrayList<>()).add(token);
+
+            for (Map.Entry<Character, List<String>> entry : index.entrySet()) {
+                List<String> candidates = entry.getValue();
+                // Prefer the longest token if some tokens are prefixes of others.
+                candidates.sort(Comparator.comparingInt(String::length).reversed());
+                String[] array = candidates.toArray(new String[0]);
+                char c = entry.getKey();
+                if (c < ASCII)
+                    asciiTokens[c] = array;
+                else
+                    otherTokens.put(c, array);
+            }
+        }
+
+        String replace(String message) {
+            if (message == null || replacements.isEmpty())
+                return message;
+
+            StringBuilder builder = null;
+            int copied = 0;
+            for (int i = 0; i < message.length(); ) {
+                char c = message.charAt(i);
+                String[] candidates = c < ASCII ? asciiTokens[c] : otherTokens.get(c);
+                String matched = null;
+                if (candidates != null) {
+                    for (String candidate : candidates) {
+                        if (message.startsWith(candidate, i)) {
+                            matched = candidate;
+                            break;
+                        }
+                    }
+                }
+
+                if (matched == null) {
+                    i++;
+                } else {
+                    if (builder == null)
+                        builder = new StringBuilder(message.length());
+                    builder.append(message, copied, i).append(replacements.get(matched));
+                    i += matched.length();
+                    copied = i;
+                }
+            }
+
+            if (builder == null)
+                return message;
+            return builder.append(message, copied, message.length()).toString();
         }
     }
 
     private static final class DefaultFormatter extends Formatter {
 
         static final DefaultFormatter INSTANCE = new DefaultFormatter();
-        private static final MessageFormat format = new MessageFormat("[{0,date,HH:mm:ss}] [{1}.{2}/{3}] {4}\n");
+
+        /**
+         * Records logged in the same second share the formatted time.
+         */
+        private volatile CachedTime cachedTime = new CachedTime(Long.MIN_VALUE, "");
 
         @Override
         public String format(LogRecord record) {
-            String log = format.format(new Object[]{
-                    new Date(record.getMillis()),
-                    record.getSourceClassName(), record.getSourceMethodName(), record.getLevel().getName(),
-                    record.getMessage()
-            }, new StringBuffer(128), null).toString();
+            String message = record.getMessage();
+            StringBuilder builder = new StringBuilder(64 + (message == null ? 4 : message.length()));
+            builder.append('[').append(formatTime(record.getMillis())).append("] [")
+                    .append(record.getSourceClassName()).append('.').append(record.getSourceMethodName())
+                    .append('/').append(record.getLevel().getName()).append("] ")
+                    .append(message).append('\n');
             if (record.getThrown() != null)
-                log += StringUtils.getStackTrace(record.getThrown());
+                builder.append(StringUtils.getStackTrace(record.getThrown()));
+
+            return builder.toString();
+        }
 
-            return log;
+        private String formatTime(long millis) {
+            long second = Math.floorDiv(millis, 1000);
+            CachedTime time = cachedTime;
+            if (time.second != second) {
+                time = new CachedTime(second, new SimpleDateFormat("HH:mm:ss").format(new Date(millis)));
+                cachedTime = time;
+            }
+            return time.text;
         }
 
+        private static final class CachedTime {
+            final long second;
+            final String text;
+
+            CachedTime(long second, String text) {
+                this.second = second;
+                this.text = text;
+            }
+        }
     }
-}
\ No newline at end of file
+}
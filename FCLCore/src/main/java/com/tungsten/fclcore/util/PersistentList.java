@@ -0,0 +1,142 @@
+package com.tungsten.fclcore.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * An immutable list which shares its elements with the lists it is made from.
+ *
+ * Concatenating two persistent lists does not copy their elements, and copying a persistent list returns itself,
+ * so that derived objects holding lists, like versions merged with their parents, can be built without copying
+ * the elements again and again.
+ */
+public abstract class PersistentList<T> extends AbstractList<T> implements RandomAccess {
+
+    /**
+     * Concatenations deeper than this are flattened, so that accessing elements stays cheap.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    private static final PersistentList<Object> EMPTY = new Leaf<>(new Object[0]);
+
+    private PersistentList() {
+    }
+
+    abstract int depth();
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentList<T> empty() {
+        return (PersistentList<T>) EMPTY;
+    }
+
+    /**
+     * @return the given list itself if it is a persistent list, or an immutable copy of it.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentList<T> copyOf(Collection<? extends T> collection) {
+        if (collection instanceof PersistentList)
+            return (PersistentList<T>) collection;
+        if (collection == null || collection.isEmpty())
+            return empty();
+        return new Leaf<>(collection.toArray());
+    }
+
+    /**
+     * Concatenate two collections, null is treated as an empty collection.
+     * Elements of persistent lists are shared instead of being copied.
+     */
+    public static <T> PersistentList<T> concat(Collection<? extends T> a, Collection<? extends T> b) {
+        PersistentList<T> left = copyOf(a), right = copyOf(b);
+        if (left.isEmpty()) return right;
+        if (right.isEmpty()) return left;
+        if (Math.max(left.depth(), right.depth()) >= MAX_DEPTH)
+            return new Leaf<>(Lang.merge(left, right).toArray());
+        return new Concat<>(left, right);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[size()];
+        int[] index = new int[1];
+        forEach(element -> result[index[0]++] = element);
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        int[] hash = {1};
+        forEach(element -> hash[0] = 31 * hash[0] + (element == null ? 0 : element.hashCode()));
+        return hash[0];
+    }
+
+    private static final class Leaf<T> extends PersistentList<T> {
+        private final Object[] elements;
+
+        Leaf(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index) {
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void forEach(Consumer<? super T> action) {
+            for (Object element : elements)
+                action.accept((T) element);
+        }
+    }
+
+    private static final class Concat<T> extends PersistentList<T> {
+        private final PersistentList<T> left;
+        private final PersistentList<T> right;
+        private final int size;
+        private final int depth;
+
+        Concat(PersistentList<T> left, PersistentList<T> right) {
+            this.left = left;
+            this.right = right;
+            this.size = left.size() + right.size();
+            this.depth = Math.max(left.depth(), right.depth()) + 1;
+        }
+
+        @Override
+        int depth() {
+            return depth;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            int leftSize = left.size();
+            return index < leftSize ? left.get(index) : right.get(index - leftSize);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void forEach(Consumer<? super T> action) {
+            left.forEach(action);
+            right.forEach(action);
+        }
+    }
+}
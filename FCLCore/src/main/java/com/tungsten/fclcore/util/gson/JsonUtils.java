@@ -4,13 +4,24 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.time.Instant;
 import java.util.Date;
 import java.util.UUID;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public final class JsonUtils {
 
     public static final Gson GSON = defaultGsonBuilder().create();
@@ -54,6 +65,52 @@ public final class JsonUtils {
         }
     }
 
+    /**
+     * Decode the JSON document from the stream without reading it into a string first.
+     * The stream is read until the end of the document and is not closed.
+     *
+     * Unlike {@link Gson#fromJson(java.io.Reader, Type)}, failures of reading the stream are thrown as they are
+     * instead of being wrapped in {@link JsonSyntaxException}.
+     *
+     * @return null if the stream is empty
+     */
+    public static <T> T fromJsonFully(InputStream json, Type type) throws IOException, JsonParseException {
+        JsonReader reader = new JsonReader(new InputStreamReader(json, UTF_8));
+        reader.setLenient(true);
+        boolean empty = true;
+        try {
+            reader.peek();
+            empty = false;
+            @SuppressWarnings("unchecked")
+            TypeAdapter<T> adapter = (TypeAdapter<T>) GSON.getAdapter(TypeToken.get(type));
+            T result = adapter.read(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
+            return result;
+        } catch (EOFException e) {
+            if (empty)
+                return null;
+            throw new JsonSyntaxException(e);
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static <T> T fromJsonFully(InputStream json, Class<T> classOfT) throws IOException, JsonParseException {
+        return fromJsonFully(json, (Type) classOfT);
+    }
+
+    public static <T> T fromNonNullJsonFully(InputStream json, Type type) throws IOException, JsonParseException {
+        T parsed = fromJsonFully(json, type);
+        if (parsed == null)
+            throw new JsonParseException("Json object cannot be null.");
+        return parsed;
+    }
+
+    public static <T> T fromNonNullJsonFully(InputStream json, Class<T> classOfT) throws IOException, JsonParseException {
+        return fromNonNullJsonFully(json, (Type) classOfT);
+    }
+
     public static GsonBuilder defaultGsonBuilder() {
         return new GsonBuilder()
                 .enableComplexMapKeySerialization()
@@ -0,0 +1,141 @@
+package com.tungsten.fclcore.util.io;
+
+import com.tungsten.fclcore.util.Logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Helps {@link HttpURLConnection} reuse connections.
+ *
+ * Connections are pooled per host by the keep-alive cache of the platform, which keeps only a few idle connections
+ * and evicts them when they are idle for a while. A connection is only returned to the cache when its response has
+ * been fully read and closed, and {@link HttpURLConnection#disconnect()} closes the socket instead.
+ * TLS sessions are resumed from the session cache of the default {@link SSLContext}.
+ *
+ * Also remembers where URLs were redirected to, so that following requests to the same URL,
+ * like retries and segments of the same file, go to the mirror directly.
+ */
+public final class HttpConnectionManager {
+    private HttpConnectionManager() {
+    }
+
+    /**
+     * Responses not larger than this are read to the end when released to keep the connection alive,
+     * it is cheaper to close the connection for larger ones.
+     */
+    private static final int MAX_DRAIN_SIZE = 64 * 1024;
+
+    /**
+     * Enough for every download thread to keep its connection alive.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 64;
+    private static final int TLS_SESSION_CACHE_SIZE = 256;
+
+    private static final long PERMANENT_REDIRECT_TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long TEMPORARY_REDIRECT_TTL = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAX_REDIRECTS = 1024;
+
+    private static final Map<String, Redirect> redirects = new ConcurrentHashMap<>();
+
+    private static boolean initialized = false;
+
+    /**
+     * Configure the keep-alive cache of the platform, must be called before the first connection is made.
+     * Properties set by users are not overridden.
+     */
+    static synchronized void init() {
+        if (initialized) return;
+        initialized = true;
+
+        if (System.getProperty("http.keepAlive") == null)
+            System.setProperty("http.keepAlive", "true");
+        if (System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+
+        try {
+            SSLSessionContext sessions = SSLContext.getDefault().getClientSessionContext();
+            if (sessions != null && sessions.getSessionCacheSize() != 0 && sessions.getSessionCacheSize() < TLS_SESSION_CACHE_SIZE)
+                sessions.setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+        } catch (Exception e) {
+            Logging.LOG.log(Level.FINE, "Unable to configure TLS session cache", e);
+        }
+    }
+
+    /**
+     * Finish the connection whose response code has been received, so that it can be reused.
+     * Unlike {@link HttpURLConnection#disconnect()}, the rest of small responses is read to keep the connection alive.
+     */
+    public static void release(HttpURLConnection conn) {
+        try {
+            long length = conn.getContentLengthLong();
+            if (length > MAX_DRAIN_SIZE) {
+                conn.disconnect();
+                return;
+            }
+
+            InputStream stream = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            if (stream == null) return;
+            try (InputStream input = stream) {
+                byte[] buffer = new byte[4096];
+                long drained = 0;
+                int n;
+                while ((n = input.read(buffer)) >= 0) {
+                    drained += n;
+                    if (drained > MAX_DRAIN_SIZE) {
+                        conn.disconnect();
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * @return the URL where the given URL was redirected recently, or null if not known.
+     */
+    public static URL getRedirect(URL url) {
+        Redirect redirect = redirects.get(url.toString());
+        if (redirect == null) return null;
+        if (redirect.expireTime < System.currentTimeMillis()) {
+            redirects.remove(url.toString(), redirect);
+            return null;
+        }
+        return redirect.target;
+    }
+
+    public static void putRedirect(URL url, URL target, int responseCode) {
+        // URL.equals resolves the hosts, compare the URLs as written instead.
+        if (url.toExternalForm().equals(target.toExternalForm())) return;
+
+        boolean permanent = responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == 308;
+        if (redirects.size() >= MAX_REDIRECTS)
+            redirects.clear();
+        redirects.put(url.toString(), new Redirect(target, System.currentTimeMillis() + (permanent ? PERMANENT_REDIRECT_TTL : TEMPORARY_REDIRECT_TTL)));
+    }
+
+    public static void removeRedirect(URL url) {
+        redirects.remove(url.toString());
+    }
+
+    private static final class Redirect {
+        final URL target;
+        final long expireTime;
+
+        Redirect(URL target, long expireTime) {
+            this.target = target;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -10,10 +10,12 @@ import com.google.gson.JsonParseException;
 import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fclcore.util.Pair;
 import com.tungsten.fclcore.util.function.ExceptionalBiConsumer;
+import com.tungsten.fclcore.util.function.ExceptionalFunction;
 import com.tungsten.fclcore.util.function.ExceptionalSupplier;
 import com.tungsten.fclcore.util.gson.JsonUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
@@ -84,7 +86,7 @@ public abstract class HttpRequest {
     }
 
     public <T> T getJson(Class<T> typeOfT) throws IOException, JsonParseException {
-        return JsonUtils.fromNonNullJson(getString(), typeOfT);
+        return getJson((Type) typeOfT);
     }
 
     public <T> T getJson(Type type) throws IOException, JsonParseException {
@@ -92,11 +94,11 @@ public abstract class HttpRequest {
     }
 
     public <T> CompletableFuture<T> getJsonAsync(Class<T> typeOfT) {
-        return getStringAsync().thenApplyAsync(jsonString -> JsonUtils.fromNonNullJson(jsonString, typeOfT));
+        return getJsonAsync((Type) typeOfT);
     }
 
     public <T> CompletableFuture<T> getJsonAsync(Type type) {
-        return getStringAsync().thenApplyAsync(jsonString -> JsonUtils.fromNonNullJson(jsonString, type));
+        return CompletableFuture.supplyAsync(wrap(() -> getJson(type)), Schedulers.io());
     }
 
     public HttpRequest filter(ExceptionalBiConsumer<URL, Integer, IOException> responseCodeTester) {
@@ -124,10 +126,24 @@ public abstract class HttpRequest {
         }
 
         public String getString() throws IOException {
-            return getStringWithRetry(() -> {
+            return read(stream -> IOUtils.readFullyAsString(stream, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Decode the response while it is being received, instead of reading it into a string first.
+         */
+        @Override
+        public <T> T getJson(Type type) throws IOException, JsonParseException {
+            return read(stream -> JsonUtils.fromNonNullJsonFully(stream, type));
+        }
+
+        private <T> T read(ExceptionalFunction<InputStream, T, IOException> reader) throws IOException {
+            return getWithRetry(() -> {
                 HttpURLConnection con = createConnection();
                 con = resolveConnection(con);
-                return IOUtils.readFullyAsString(con.getInputStream(), StandardCharsets.UTF_8);
+                try (InputStream stream = con.getInputStream()) {
+                    return reader.apply(stream);
+                }
             }, retryTimes);
         }
     }
@@ -165,7 +181,7 @@ public abstract class HttpRequest {
         }
 
         public String getString() throws IOException {
-            return getStringWithRetry(() -> {
+            return getWithRetry(() -> {
                 HttpURLConnection con = createConnection();
                 con.setDoOutput(true);
 
@@ -202,7 +218,7 @@ public abstract class HttpRequest {
         return new HttpPostRequest(url);
     }
 
-    private static String getStringWithRetry(ExceptionalSupplier<String, IOException> supplier, int retryTimes) throws IOException {
+    private static <T> T getWithRetry(ExceptionalSupplier<T, IOException> supplier, int retryTimes) throws IOException {
         SocketTimeoutException exception = null;
         for (int i = 0; i < retryTimes; i++) {
             try {
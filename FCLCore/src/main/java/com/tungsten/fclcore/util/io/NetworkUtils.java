@@ -14,11 +14,16 @@ import java.util.Map.Entry;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.tungsten.fclcore.util.Pair;
+import com.tungsten.fclcore.util.function.ExceptionalFunction;
 
 public final class NetworkUtils {
     public static final String PARAMETER_SEPARATOR = "&";
     public static final String NAME_VALUE_SEPARATOR = "=";
 
+    static {
+        HttpConnectionManager.init();
+    }
+
     private NetworkUtils() {
     }
 
@@ -68,8 +73,25 @@ public final class NetworkUtils {
         return result;
     }
 
+    private static volatile ExceptionalFunction<URL, URLConnection, IOException> connectionFactory = URL::openConnection;
+
+    /**
+     * Replace how connections are opened by the launcher, for example with a client that multiplexes
+     * requests over HTTP/2 connections and falls back to HTTP/1.1.
+     * The factory must return {@link HttpURLConnection} for HTTP URLs, connections are configured by the callers.
+     *
+     * @param factory the factory of connections, or null to use {@link URL#openConnection()}
+     */
+    public static void setConnectionFactory(ExceptionalFunction<URL, URLConnection, IOException> factory) {
+        connectionFactory = factory == null ? URL::openConnection : factory;
+    }
+
+    public static URLConnection openConnection(URL url) throws IOException {
+        return connectionFactory.apply(url);
+    }
+
     public static URLConnection createConnection(URL url) throws IOException {
-        URLConnection connection = url.openConnection();
+        URLConnection connection = openConnection(url);
         connection.setUseCaches(false);
         connection.setConnectTimeout(5000);
         connection.setReadTimeout(5000);
@@ -116,6 +138,7 @@ public final class NetworkUtils {
     /**
      * This method is a work-around that aims to solve problem when "Location" in
      * stupid server's response is not encoded.
+     * Redirects of GET requests are remembered by {@link HttpConnectionManager} for a while.
      * 
      * @see <a href="https://github.com/curl/curl/issues/473">Issue with libcurl</a>
      * @param conn the stupid http connection.
@@ -123,42 +146,79 @@ public final class NetworkUtils {
      * @throws IOException if an I/O error occurs.
      */
     public static HttpURLConnection resolveConnection(HttpURLConnection conn) throws IOException {
+        URL original = conn.getURL();
+        String method = conn.getRequestMethod();
+        Map<String, List<String>> properties = conn.getRequestProperties();
+        boolean cacheable = ("GET".equals(method) || "HEAD".equals(method)) && !conn.getDoOutput();
+
+        if (cacheable) {
+            URL cached = HttpConnectionManager.getRedirect(original);
+            if (cached != null) {
+                HttpURLConnection redirected = copyConnection(cached, method, properties);
+                try {
+                    // The connection is connected already, it is returned as is. Any answer other than
+                    // another redirect or an error, such as 304 Not Modified, means the target is still valid.
+                    int responseCode = redirected.getResponseCode();
+                    if (responseCode > 0 && responseCode < 300 || responseCode == HttpURLConnection.HTTP_NOT_MODIFIED)
+                        return redirected;
+                    HttpConnectionManager.release(redirected);
+                } catch (IOException e) {
+                    redirected.disconnect();
+                }
+
+                // The mirror may be unavailable now, ask the original server again.
+                HttpConnectionManager.removeRedirect(original);
+            }
+        }
+
         int redirect = 0;
+        boolean permanent = true;
         while (true) {
 
             conn.setUseCaches(false);
             conn.setConnectTimeout(5000);
             conn.setReadTimeout(5000);
             conn.setInstanceFollowRedirects(false);
-            Map<String, List<String>> properties = conn.getRequestProperties();
-            String method = conn.getRequestMethod();
             int code = conn.getResponseCode();
-            if (code >= 300 && code <= 307 && code != 306 && code != 304) {
+            if (code >= 300 && code <= 308 && code != 306 && code != 304) {
                 String newURL = conn.getHeaderField("Location");
-                conn.disconnect();
+                // Read the rest of the redirect response, so that the connection can be reused for the next hop.
+                HttpConnectionManager.release(conn);
 
                 if (redirect > 20) {
                     throw new IOException("Too much redirects");
                 }
 
-                HttpURLConnection redirected = (HttpURLConnection) new URL(conn.getURL(), encodeLocation(newURL))
-                        .openConnection();
-                properties
-                        .forEach((key, value) -> value.forEach(element -> redirected.addRequestProperty(key, element)));
-                redirected.setRequestMethod(method);
-                conn = redirected;
+                conn = copyConnection(new URL(conn.getURL(), encodeLocation(newURL)), method, properties);
+                permanent &= code == HttpURLConnection.HTTP_MOVED_PERM || code == 308;
                 ++redirect;
             } else {
                 break;
             }
         }
+
+        if (cacheable && redirect > 0 && conn.getResponseCode() / 100 == 2)
+            HttpConnectionManager.putRedirect(original, conn.getURL(), permanent ? HttpURLConnection.HTTP_MOVED_PERM : HttpURLConnection.HTTP_MOVED_TEMP);
         return conn;
     }
 
+    private static HttpURLConnection copyConnection(URL url, String method, Map<String, List<String>> properties) throws IOException {
+        HttpURLConnection copy = (HttpURLConnection) openConnection(url);
+        copy.setUseCaches(false);
+        copy.setConnectTimeout(5000);
+        copy.setReadTimeout(5000);
+        copy.setInstanceFollowRedirects(false);
+        properties.forEach((key, value) -> value.forEach(element -> copy.addRequestProperty(key, element)));
+        copy.setRequestMethod(method);
+        return copy;
+    }
+
     public static String doGet(URL url) throws IOException {
         HttpURLConnection con = createHttpConnection(url);
         con = resolveConnection(con);
-        return IOUtils.readFullyAsString(con.getInputStream(), StandardCharsets.UTF_8);
+        try (InputStream stream = con.getInputStream()) {
+            return IOUtils.readFullyAsString(stream, StandardCharsets.UTF_8);
+        }
     }
 
     public static String doPost(URL u, Map<String, String> params) throws IOException {
@@ -245,7 +305,7 @@ public final class NetworkUtils {
         HttpURLConnection con = createHttpConnection(url);
         con = resolveConnection(con);
         int responseCode = con.getResponseCode();
-        con.disconnect();
+        HttpConnectionManager.release(con);
         return responseCode / 100 == 2;
     }
 
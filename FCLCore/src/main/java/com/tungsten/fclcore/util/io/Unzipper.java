@@ -1,19 +1,34 @@
 package com.tungsten.fclcore.util.io;
 
+import com.tungsten.fclcore.util.Lang;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Unzipper {
+    private static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int MIN_ENTRIES_PER_THREAD = 16;
+    private static final ThreadPoolExecutor POOL = Lang.threadPool("Unzipper", true, DEFAULT_THREADS, 10, TimeUnit.SECONDS);
+
     private final Path zipFile, dest;
     private boolean replaceExistentFile = false;
     private boolean terminateIfSubDirectoryNotExists = false;
     private String subDirectory = "/";
     private FileFilter filter = null;
     private Charset encoding = StandardCharsets.UTF_8;
+    private int threads = DEFAULT_THREADS;
 
     /**
      * Decompress the given zip file to a directory.
@@ -77,53 +92,166 @@ public class Unzipper {
         return this;
     }
 
+    /**
+     * Number of threads decompressing entries concurrently, 1 to decompress all entries in the calling thread.
+     */
+    public Unzipper setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
     /**
      * Decompress the given zip file to a directory.
      *
      * @throws IOException if zip file is malformed or filesystem error.
      */
     public void unzip() throws IOException {
+        if (!subDirectory.startsWith("/") || (subDirectory.length() > 1 && subDirectory.endsWith("/")))
+            throw new IllegalArgumentException("Subdirectory for unzipper must be absolute");
+
         Files.createDirectories(dest);
-        try (FileSystem fs = CompressingUtils.readonly(zipFile).setEncoding(encoding).setAutoDetectEncoding(true).build()) {
-            Path root = fs.getPath(subDirectory);
-            if (!root.isAbsolute() || (subDirectory.length() > 1 && subDirectory.endsWith("/")))
-                throw new IllegalArgumentException("Subdirectory for unzipper must be absolute");
-
-            if (terminateIfSubDirectoryNotExists && Files.notExists(root))
-                return;
-
-            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file,
-                                                 BasicFileAttributes attrs) throws IOException {
-                    String relativePath = root.relativize(file).toString();
-                    Path destFile = dest.resolve(relativePath);
-                    if (filter != null && !filter.accept(file, false, destFile, relativePath))
-                        return FileVisitResult.CONTINUE;
-                    try {
-                        Files.copy(file, destFile, replaceExistentFile ? new CopyOption[]{StandardCopyOption.REPLACE_EXISTING} : new CopyOption[]{});
-                    } catch (FileAlreadyExistsException e) {
-                        if (replaceExistentFile)
-                            throw e;
-                    }
-                    return FileVisitResult.CONTINUE;
+        Path normalizedDest = dest.toAbsolutePath().normalize();
+        String prefix = subDirectory.equals("/") ? "" : subDirectory.substring(1) + "/";
+
+        try (ZipReader zip = openZip()) {
+            // Directories are sorted so that parents always come before their children.
+            TreeSet<String> directories = new TreeSet<>();
+            List<ZipReader.Entry> files = new ArrayList<>();
+            boolean subDirectoryExists = prefix.isEmpty();
+            for (ZipReader.Entry entry : zip.getEntries()) {
+                String name = entry.getName();
+                if (!name.startsWith(prefix))
+                    continue;
+                subDirectoryExists = true;
+                String relativePath = name.substring(prefix.length());
+                if (entry.isDirectory())
+                    relativePath = relativePath.substring(0, Math.max(0, relativePath.length() - 1));
+                else
+                    files.add(entry);
+
+                for (int i = relativePath.lastIndexOf('/'); i > 0; i = relativePath.lastIndexOf('/', i - 1))
+                    if (!directories.add(relativePath.substring(0, i)))
+                        break;
+                if (entry.isDirectory() && !relativePath.isEmpty())
+                    directories.add(relativePath);
+            }
+
+            if (!subDirectoryExists) {
+                if (terminateIfSubDirectoryNotExists)
+                    return;
+                throw new NoSuchFileException(subDirectory);
+            }
+            directories.add("");
+
+            // FileFilter is not required to be thread-safe, so we only call it here.
+            Set<String> skippedDirectories = new HashSet<>();
+            for (String relativePath : directories) {
+                String parent = getParent(relativePath);
+                if (parent != null && skippedDirectories.contains(parent)) {
+                    skippedDirectories.add(relativePath);
+                    continue;
                 }
 
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir,
-                                                         BasicFileAttributes attrs) throws IOException {
-                    String relativePath = root.relativize(dir).toString();
-                    Path dirToCreate = dest.resolve(relativePath);
-                    if (filter != null && !filter.accept(dir, true, dirToCreate, relativePath))
-                        return FileVisitResult.SKIP_SUBTREE;
-                    Files.createDirectories(dirToCreate);
-                    return FileVisitResult.CONTINUE;
+                Path dirToCreate = resolve(normalizedDest, relativePath);
+                if (filter != null && !filter.accept(relativePath.isEmpty() ? prefix : prefix + relativePath + "/", true, dirToCreate, relativePath)) {
+                    skippedDirectories.add(relativePath);
+                    continue;
+                }
+                Files.createDirectories(dirToCreate);
+            }
+
+            Queue<Map.Entry<ZipReader.Entry, Path>> queue = new ConcurrentLinkedQueue<>();
+            for (ZipReader.Entry entry : files) {
+                String relativePath = entry.getName().substring(prefix.length());
+                String parent = getParent(relativePath);
+                if (skippedDirectories.contains(parent == null ? "" : parent))
+                    continue;
+
+                Path destFile = resolve(normalizedDest, relativePath);
+                if (filter != null && !filter.accept(entry.getName(), false, destFile, relativePath))
+                    continue;
+                queue.add(new AbstractMap.SimpleImmutableEntry<>(entry, destFile));
+            }
+
+            extract(zip, queue);
+        }
+    }
+
+    private ZipReader openZip() throws IOException {
+        ZipReader zip = ZipReader.open(zipFile, encoding);
+        if (!zip.hasMalformedNames())
+            return zip;
+
+        zip.close();
+        return ZipReader.open(zipFile, CompressingUtils.findSuitableEncoding(zipFile));
+    }
+
+    private void extract(ZipReader zip, Queue<Map.Entry<ZipReader.Entry, Path>> queue) throws IOException {
+        int workers = Math.min(threads, queue.size() / MIN_ENTRIES_PER_THREAD);
+        AtomicReference<IOException> exception = new AtomicReference<>();
+        Runnable worker = () -> {
+            Map.Entry<ZipReader.Entry, Path> item;
+            while (exception.get() == null && (item = queue.poll()) != null) {
+                try {
+                    extractEntry(zip, item.getKey(), item.getValue());
+                } catch (IOException e) {
+                    exception.compareAndSet(null, e);
+                } catch (RuntimeException e) {
+                    exception.compareAndSet(null, new IOException(e));
                 }
-            });
+            }
+        };
+
+        // The calling thread works on the queue too, so extraction still makes progress when the pool is busy.
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < workers; i++)
+            futures.add(POOL.submit(worker));
+        worker.run();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exception.compareAndSet(null, new InterruptedIOException());
+                queue.clear();
+            } catch (ExecutionException e) {
+                exception.compareAndSet(null, new IOException(e.getCause()));
+            }
         }
+
+        if (exception.get() != null)
+            throw exception.get();
+    }
+
+    private void extractEntry(ZipReader zip, ZipReader.Entry entry, Path destFile) throws IOException {
+        try (InputStream input = zip.getInputStream(entry)) {
+            Files.copy(input, destFile, replaceExistentFile ? new CopyOption[]{StandardCopyOption.REPLACE_EXISTING} : new CopyOption[]{});
+        } catch (FileAlreadyExistsException e) {
+            if (replaceExistentFile)
+                throw e;
+        }
+    }
+
+    private static String getParent(String relativePath) {
+        if (relativePath.isEmpty()) return null;
+        int i = relativePath.lastIndexOf('/');
+        return i < 0 ? "" : relativePath.substring(0, i);
+    }
+
+    private static Path resolve(Path dest, String relativePath) throws IOException {
+        Path result = dest.resolve(relativePath).normalize();
+        if (!result.startsWith(dest))
+            throw new IOException("Zip entry " + relativePath + " is outside of the destination directory");
+        return result;
     }
 
     public interface FileFilter {
-        boolean accept(Path zipEntry, boolean isDirectory, Path destFile, String entryPath) throws IOException;
+        /**
+         * @param zipEntry the name of the entry in the zip file, directory names end with '/'
+         * @param destFile the file the entry will be uncompressed to
+         * @param entryPath the path of the entry relative to the subdirectory
+         */
+        boolean accept(String zipEntry, boolean isDirectory, Path destFile, String entryPath) throws IOException;
     }
 }
\ No newline at end of file
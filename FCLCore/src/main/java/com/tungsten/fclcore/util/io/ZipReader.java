@@ -0,0 +1,476 @@
+package com.tungsten.fclcore.util.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A lightweight read-only zip reader for probing a few entries of an archive.
+ *
+ * Only the End of Central Directory record and the central directory are read when opening,
+ * entries are looked up by name and only the requested ones are read and inflated.
+ * Unlike zipfs, no directory tree is built, so this is much cheaper for metadata probes
+ * like reading mcmod.info from a mod jar or version.json from a game jar.
+ *
+ * Instances are safe to read from multiple threads since only positional reads are used.
+ */
+public final class ZipReader implements Closeable {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_SIZE = 56;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int LOC_SIZE = 30;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private final FileChannel channel;
+    private final Charset encoding;
+    private final Map<String, Entry> entries;
+    private boolean malformedNames;
+
+    private ZipReader(FileChannel channel, Charset encoding) throws IOException {
+        this.channel = channel;
+        this.encoding = encoding;
+        this.entries = readCentralDirectory(encoding);
+    }
+
+    public static ZipReader open(Path zipFile) throws IOException {
+        return open(zipFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param encoding the encoding of entry names not flagged as UTF-8
+     */
+    public static ZipReader open(Path zipFile, Charset encoding) throws IOException {
+        FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ);
+        try {
+            return new ZipReader(channel, encoding);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Charset getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return true if some entry names cannot be decoded with the given encoding.
+     */
+    public boolean hasMalformedNames() {
+        return malformedNames;
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * @param name the location of the entry, something like A/B/C/D.txt
+     * @return null if the entry does not exist
+     */
+    public Entry getEntry(String name) {
+        if (name.startsWith("/"))
+            name = name.substring(1);
+        return entries.get(name);
+    }
+
+    public boolean contains(String name) {
+        return getEntry(name) != null;
+    }
+
+    public InputStream getInputStream(String name) throws IOException {
+        return getInputStream(requireEntry(name));
+    }
+
+    public InputStream getInputStream(Entry entry) throws IOException {
+        if ((entry.flags & FLAG_ENCRYPTED) != 0)
+            throw new ZipException("Encrypted entry " + entry.name + " is not supported");
+
+        ByteBuffer header = ByteBuffer.allocate(LOC_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, entry.localHeaderOffset);
+        if (header.getInt(0) != LOC_SIGNATURE)
+            throw new ZipException("Invalid local file header of entry " + entry.name);
+        long dataOffset = entry.localHeaderOffset + LOC_SIZE
+                + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+
+        InputStream raw = new EntryInputStream(dataOffset, entry.compressedSize);
+        switch (entry.method) {
+            case STORED:
+                return raw;
+            case DEFLATED:
+                Inflater inflater = new Inflater(true);
+                int bufferSize = (int) Math.max(512, Math.min(entry.compressedSize, 64 * 1024));
+                return new InflaterInputStream(raw, inflater, bufferSize) {
+                    private boolean closed = false;
+                    private boolean eof = false;
+
+                    @Override
+                    protected void fill() throws IOException {
+                        if (eof)
+                            throw new EOFException("Unexpected end of entry " + entry.name);
+                        len = in.read(buf, 0, buf.length);
+                        if (len == -1) {
+                            // Inflater with nowrap may need an extra dummy byte to finish.
+                            buf[0] = 0;
+                            len = 1;
+                            eof = true;
+                        }
+                        inf.setInput(buf, 0, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            inflater.end();
+                            super.close();
+                        }
+                    }
+                };
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + " of entry " + entry.name);
+        }
+    }
+
+    public byte[] readBytes(String name) throws IOException {
+        return readBytes(requireEntry(name));
+    }
+
+    public byte[] readBytes(Entry entry) throws IOException {
+        if (entry.size > Integer.MAX_VALUE - 8)
+            throw new ZipException("Entry " + entry.name + " is too large");
+        try (InputStream input = getInputStream(entry)) {
+            byte[] result = new byte[(int) entry.size];
+            int offset = 0;
+            while (offset < result.length) {
+                int n = input.read(result, offset, result.length - offset);
+                if (n < 0)
+                    throw new ZipException("Unexpected end of entry " + entry.name);
+                offset += n;
+            }
+            return result;
+        }
+    }
+
+    public String readText(String name) throws IOException {
+        return new String(readBytes(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Extract the entry to the given file, parent directories will be created and the file will be replaced.
+     */
+    public void extract(String name, Path dest) throws IOException {
+        Entry entry = requireEntry(name);
+        Path parent = dest.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        try (InputStream input = getInputStream(entry)) {
+            Files.copy(input, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Entry requireEntry(String name) throws IOException {
+        Entry entry = getEntry(name);
+        if (entry == null)
+            throw new ZipException("Entry " + name + " does not exist");
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Map<String, Entry> readCentralDirectory(Charset encoding) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE)
+            throw new ZipException("Not a zip file");
+
+        // The EOCD record is at the end of the file, followed by an optional comment.
+        int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+        long tailOffset = fileSize - tailSize;
+        ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(tail, tailOffset);
+
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0)
+            throw new ZipException("Not a zip file");
+
+        long count = tail.getShort(eocd + 10) & 0xFFFF;
+        long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        long eocdOffset = tailOffset + eocd;
+
+        if (count == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+            long locatorOffset = eocdOffset - ZIP64_EOCD_LOCATOR_SIZE;
+            if (locatorOffset >= 0) {
+                ByteBuffer locator = ByteBuffer.allocate(ZIP64_EOCD_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(locator, locatorOffset);
+                if (locator.getInt(0) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+                    ByteBuffer zip64 = ByteBuffer.allocate(ZIP64_EOCD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(zip64, locator.getLong(8));
+                    if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE)
+                        throw new ZipException("Invalid zip64 end of central directory record");
+                    count = zip64.getLong(32);
+                    cenSize = zip64.getLong(40);
+                    cenOffset = zip64.getLong(48);
+                    eocdOffset = locator.getLong(8);
+                }
+            }
+        }
+
+        if (cenSize > Integer.MAX_VALUE || cenOffset + cenSize > eocdOffset)
+            throw new ZipException("Invalid central directory");
+
+        // Data may be prepended to the archive (e.g. self-extracting archives), all offsets are shifted then.
+        long base = eocdOffset - cenSize - cenOffset;
+
+        ByteBuffer cen = ByteBuffer.allocate((int) cenSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(cen, base + cenOffset);
+
+        Map<String, Entry> entries = new HashMap<>((int) Math.min(count, 1 << 20) * 4 / 3 + 1);
+        NameDecoder decoders = new NameDecoder(encoding);
+        int pos = 0;
+        while (pos + CEN_SIZE <= cenSize) {
+            if (cen.getInt(pos) != CEN_SIGNATURE)
+                throw new ZipException("Invalid central directory header");
+
+            int flags = cen.getShort(pos + 8) & 0xFFFF;
+            int method = cen.getShort(pos + 10) & 0xFFFF;
+            long crc = cen.getInt(pos + 16) & 0xFFFFFFFFL;
+            long compressedSize = cen.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = cen.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+            long localHeaderOffset = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            int nameOffset = pos + CEN_SIZE;
+            int extraOffset = nameOffset + nameLength;
+            int next = extraOffset + extraLength + commentLength;
+            if (next > cenSize)
+                throw new ZipException("Invalid central directory header");
+
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                // Look for zip64 extended information, fields appear only if the corresponding header field is saturated.
+                int extra = extraOffset;
+                while (extra + 4 <= extraOffset + extraLength) {
+                    int id = cen.getShort(extra) & 0xFFFF;
+                    int length = cen.getShort(extra + 2) & 0xFFFF;
+                    int field = extra + 4;
+                    if (id == ZIP64_EXTRA_ID) {
+                        if (size == 0xFFFFFFFFL && field + 8 <= extra + 4 + length) {
+                            size = cen.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL && field + 8 <= extra + 4 + length) {
+                            compressedSize = cen.getLong(field);
+                            field += 8;
+                        }
+                        if (localHeaderOffset == 0xFFFFFFFFL && field + 8 <= extra + 4 + length) {
+                            localHeaderOffset = cen.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+            }
+
+            String name = decoders.decode(cen, nameOffset, nameLength, (flags & FLAG_UTF8) != 0);
+            if (name.startsWith("/"))
+                name = name.substring(1);
+            entries.putIfAbsent(name, new Entry(name, flags, method, crc, compressedSize, size, base + localHeaderOffset));
+
+            pos = next;
+        }
+
+        malformedNames = decoders.malformed;
+        return entries;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new ZipException("Unexpected end of zip file");
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    private static final class NameDecoder {
+        private final Charset encoding;
+        private boolean malformed = false;
+
+        NameDecoder(Charset encoding) {
+            this.encoding = encoding;
+        }
+
+        String decode(ByteBuffer buffer, int offset, int length, boolean utf8) {
+            Charset charset = utf8 ? StandardCharsets.UTF_8 : encoding;
+
+            // Most entry names are plain ASCII, which every supported encoding decodes identically.
+            boolean ascii = true;
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(offset + i);
+                if (b < 0) {
+                    ascii = false;
+                    break;
+                }
+                chars[i] = (char) b;
+            }
+            if (ascii)
+                return new String(chars);
+
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(offset).limit(offset + length);
+            try {
+                CharBuffer result = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(slice.slice());
+                return result.toString();
+            } catch (CharacterCodingException e) {
+                malformed = true;
+                slice.position(offset);
+                return charset.decode(slice.slice()).toString();
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(String name, int flags, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Reads raw entry data by positional reads, so that concurrent streams do not interfere with each other.
+     */
+    private final class EntryInputStream extends InputStream {
+        private long position;
+        private long remaining;
+
+        EntryInputStream(long position, long length) {
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (remaining <= 0) return -1;
+
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new ZipException("Unexpected end of zip file");
+            position += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -1,21 +1,69 @@
 package com.tungsten.fclcore.util.io;
 
+import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.Lang;
+import com.tungsten.fclcore.util.StringUtils;
+import com.tungsten.fclcore.util.function.ExceptionalBiConsumer;
+import com.tungsten.fclcore.util.function.ExceptionalConsumer;
 import com.tungsten.fclcore.util.function.ExceptionalPredicate;
 
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
 /**
  * Non thread-safe
  */
 public final class Zipper implements Closeable {
 
-    private final FileSystem fs;
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor POOL = Lang.threadPool("Zipper", true, THREADS, 10, TimeUnit.SECONDS);
+
+    /**
+     * Total size of files being compressed in memory and waiting to be written.
+     * Both the content and the compressed data of each file are held, so it is kept small compared to the heap.
+     */
+    private static final long MAX_PENDING_BYTES = Math.max(2 * 1024 * 1024, Math.min(16 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 32));
+
+    /**
+     * Files not larger than this are read and compressed into memory by worker threads,
+     * larger files are streamed into the zip file by the calling thread.
+     */
+    private static final long MAX_BUFFERED_FILE_SIZE = Math.min(8 * 1024 * 1024, MAX_PENDING_BYTES / 4);
+
+    /**
+     * Files with these extensions are already compressed, deflating them again wastes time for nothing.
+     */
+    private static final Set<String> STORED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jar", "zip", "gz", "xz", "7z", "rar", "png", "jpg", "jpeg", "gif", "webp", "ogg", "mp3", "mp4"
+    ));
+
+    private final ZipArchiveOutputStream zos;
+    private final Set<String> entries = new HashSet<>();
 
     public Zipper(Path zipFile) throws IOException {
         this(zipFile, null);
@@ -23,12 +71,14 @@ public final class Zipper implements Closeable {
 
     public Zipper(Path zipFile, Charset encoding) throws IOException {
         Files.deleteIfExists(zipFile);
-        fs = CompressingUtils.createWritableZipFileSystem(zipFile, encoding);
+        zos = new ZipArchiveOutputStream(Files.newByteChannel(zipFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        zos.setEncoding((encoding == null ? StandardCharsets.UTF_8 : encoding).name());
+        zos.setUseZip64(Zip64Mode.AsNeeded);
     }
 
     @Override
     public void close() throws IOException {
-        fs.close();
+        zos.close();
     }
 
     /**
@@ -49,35 +99,98 @@ public final class Zipper implements Closeable {
      * @param filter  returns false if you do not want that file or directory
      */
     public void putDirectory(Path source, String targetDir, ExceptionalPredicate<String, IOException> filter) throws IOException {
-        Path root = fs.getPath(targetDir);
-        Files.createDirectories(root);
+        putDirectory(source, targetDir, filter, null, null);
+    }
+
+    /**
+     * Compress all the files in sourceDir.
+     *
+     * Files are read only once, compressed by multiple threads and written in the order they are visited.
+     *
+     * @param source  the file in basePath to be compressed
+     * @param targetDir the path of the directory in this zip file.
+     * @param filter  returns false if you do not want that file or directory
+     * @param algorithm the digest algorithm of files, null if digests are not needed
+     * @param digestCallback called with the relative path and the digest of every compressed file in visiting order
+     */
+    public void putDirectory(Path source, String targetDir, ExceptionalPredicate<String, IOException> filter,
+                             String algorithm, ExceptionalBiConsumer<String, byte[], IOException> digestCallback) throws IOException {
+        String root = StringUtils.removePrefix(FileUtils.normalizePath(targetDir), "/");
+        if (!root.isEmpty()) {
+            for (int i = root.indexOf('/'); i >= 0; i = root.indexOf('/', i + 1))
+                putDirectoryEntry(root.substring(0, i), -1);
+            putDirectoryEntry(root, -1);
+        }
+
+        List<Item> items = new ArrayList<>();
         Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                 if (".DS_Store".equals(file.getFileName().toString())) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
-                String relativePath = source.relativize(file).normalize().toString();
-                if (filter != null && !filter.test(relativePath.replace('\\', '/'))) {
+                String relativePath = source.relativize(file).normalize().toString().replace('\\', '/');
+                if (filter != null && !filter.test(relativePath)) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
-                Files.copy(file, root.resolve(relativePath), StandardCopyOption.COPY_ATTRIBUTES);
+                // Symbolic links are followed, a link to a directory becomes an empty directory like Files.copy does.
+                BasicFileAttributes target = attrs.isSymbolicLink() ? Files.readAttributes(file, BasicFileAttributes.class) : attrs;
+                items.add(new Item(file, relativePath, target.isDirectory(), target));
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                String relativePath = source.relativize(dir).normalize().toString();
-                if (filter != null && !filter.test(relativePath.replace('\\', '/'))) {
+                String relativePath = source.relativize(dir).normalize().toString().replace('\\', '/');
+                if (filter != null && !filter.test(relativePath)) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
-                Path path = root.resolve(relativePath);
-                if (Files.notExists(path)) {
-                    Files.createDirectory(path);
-                }
+                if (!relativePath.isEmpty())
+                    items.add(new Item(dir, relativePath, true, attrs));
                 return FileVisitResult.CONTINUE;
             }
         });
+
+        String prefix = root.isEmpty() ? "" : root + "/";
+        Deque<Future<Compressed>> pending = new ArrayDeque<>();
+        long pendingBytes = 0;
+        int next = 0;
+        try {
+            for (Item item : items) {
+                // Keep workers busy with the files after the current one.
+                for (; next < items.size(); next++) {
+                    Item ahead = items.get(next);
+                    if (ahead.isDirectory || ahead.size > MAX_BUFFERED_FILE_SIZE)
+                        continue;
+                    if (!pending.isEmpty() && pendingBytes + ahead.size > MAX_PENDING_BYTES)
+                        break;
+                    pending.add(POOL.submit(() -> compress(ahead, algorithm)));
+                    pendingBytes += ahead.size;
+                }
+
+                String name = prefix + item.relativePath;
+                if (item.isDirectory) {
+                    putDirectoryEntry(name, item.lastModified);
+                    continue;
+                }
+
+                byte[] digest;
+                if (item.size > MAX_BUFFERED_FILE_SIZE) {
+                    digest = putLargeFile(item, name, algorithm);
+                } else {
+                    Compressed compressed = take(pending);
+                    pendingBytes -= item.size;
+                    putCompressed(name, item.lastModified, compressed);
+                    digest = compressed.digest;
+                }
+
+                if (digestCallback != null && digest != null)
+                    digestCallback.accept(item.relativePath, digest);
+            }
+        } finally {
+            for (Future<?> future : pending)
+                future.cancel(true);
+        }
     }
 
     public void putFile(File file, String path) throws IOException {
@@ -85,11 +198,40 @@ public final class Zipper implements Closeable {
     }
 
     public void putFile(Path file, String path) throws IOException {
-        Files.copy(file, fs.getPath(path), StandardCopyOption.COPY_ATTRIBUTES);
+        ZipArchiveEntry entry = newEntry(path);
+        entry.setTime(Files.getLastModifiedTime(file).toMillis());
+        entry.setMethod(isCompressed(path) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+        try (InputStream in = Files.newInputStream(file)) {
+            putEntry(entry, in);
+        }
     }
 
     public void putStream(InputStream in, String path) throws IOException {
-        Files.copy(in, fs.getPath(path), StandardCopyOption.COPY_ATTRIBUTES);
+        ZipArchiveEntry entry = newEntry(path);
+        entry.setMethod(ZipEntry.DEFLATED);
+        putEntry(entry, in);
+    }
+
+    /**
+     * Put an entry whose content is written by the given writer directly into the zip file,
+     * so that the content does not need to be buffered in memory.
+     */
+    public void putStream(ExceptionalConsumer<OutputStream, IOException> writer, String path) throws IOException {
+        ZipArchiveEntry entry = newEntry(path);
+        entry.setMethod(ZipEntry.DEFLATED);
+        zos.putArchiveEntry(entry);
+        writer.accept(new FilterOutputStream(zos) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                // The entry is closed by the zipper.
+            }
+        });
+        zos.closeArchiveEntry();
     }
 
     public void putTextFile(String text, String path) throws IOException {
@@ -97,7 +239,135 @@ public final class Zipper implements Closeable {
     }
 
     public void putTextFile(String text, String encoding, String pathName) throws IOException {
-        Files.write(fs.getPath(pathName), text.getBytes(encoding));
+        putStream(new ByteArrayInputStream(text.getBytes(encoding)), pathName);
+    }
+
+    private ZipArchiveEntry newEntry(String path) throws IOException {
+        String name = StringUtils.removePrefix(path, "/");
+        if (!entries.add(name))
+            throw new FileAlreadyExistsException(name);
+        return new ZipArchiveEntry(name);
     }
 
-}
\ No newline at end of file
+    private void putEntry(ZipArchiveEntry entry, InputStream in) throws IOException {
+        zos.putArchiveEntry(entry);
+        IOUtils.copyTo(in, zos);
+        zos.closeArchiveEntry();
+    }
+
+    private void putDirectoryEntry(String path, long lastModified) throws IOException {
+        String name = path + "/";
+        if (!entries.add(name))
+            return;
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        if (lastModified >= 0)
+            entry.setTime(lastModified);
+        zos.putArchiveEntry(entry);
+        zos.closeArchiveEntry();
+    }
+
+    private byte[] putLargeFile(Item item, String name, String algorithm) throws IOException {
+        ZipArchiveEntry entry = newEntry(name);
+        entry.setTime(item.lastModified);
+        entry.setMethod(isCompressed(name) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+        MessageDigest digest = algorithm == null ? null : DigestUtils.getDigest(algorithm);
+        try (InputStream in = Files.newInputStream(item.file)) {
+            putEntry(entry, digest == null ? in : new DigestInputStream(in, digest));
+        }
+        return digest == null ? null : digest.digest();
+    }
+
+    private void putCompressed(String name, long lastModified, Compressed compressed) throws IOException {
+        ZipArchiveEntry entry = newEntry(name);
+        entry.setTime(lastModified);
+        entry.setMethod(compressed.method);
+        entry.setCrc(compressed.crc);
+        entry.setSize(compressed.size);
+        entry.setCompressedSize(compressed.length);
+        zos.addRawArchiveEntry(entry, new ByteArrayInputStream(compressed.data, 0, compressed.length));
+    }
+
+    private static Compressed take(Deque<Future<Compressed>> pending) throws IOException {
+        try {
+            return pending.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Reads the file once, the digest, the checksum and the compressed data are all computed from the same bytes.
+     */
+    private static Compressed compress(Item item, String algorithm) throws IOException {
+        byte[] data = Files.readAllBytes(item.file);
+
+        byte[] digest = algorithm == null ? null : DigestUtils.digest(algorithm, data);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        if (isCompressed(item.relativePath))
+            return new Compressed(ZipEntry.STORED, crc.getValue(), data.length, data, data.length, digest);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                output.write(buffer, 0, n);
+            }
+            // Deflating incompressible data makes it larger, store it instead.
+            if (output.size() >= data.length)
+                return new Compressed(ZipEntry.STORED, crc.getValue(), data.length, data, data.length, digest);
+            return new Compressed(ZipEntry.DEFLATED, crc.getValue(), data.length, output.toByteArray(), output.size(), digest);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean isCompressed(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && STORED_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static final class Item {
+        final Path file;
+        final String relativePath;
+        final boolean isDirectory;
+        final long size;
+        final long lastModified;
+
+        Item(Path file, String relativePath, boolean isDirectory, BasicFileAttributes attrs) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.isDirectory = isDirectory;
+            this.size = attrs.size();
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    private static final class Compressed {
+        final int method;
+        final long crc;
+        final long size;
+        final byte[] data;
+        final int length;
+        final byte[] digest;
+
+        Compressed(int method, long crc, long size, byte[] data, int length, byte[] digest) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.length = length;
+            this.digest = digest;
+        }
+    }
+}
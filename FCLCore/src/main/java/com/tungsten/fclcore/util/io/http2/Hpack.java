@@ -0,0 +1,410 @@
+package com.tungsten.fclcore.util.io.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HPACK header compression of HTTP/2, see RFC 7541.
+ *
+ * The encoder never adds headers to the dynamic table of the peer, so it does not need to track its size.
+ * Headers are kept as pairs of name and value, strings are decoded as ISO-8859-1 like {@link java.net.HttpURLConnection} does.
+ */
+final class Hpack {
+    private Hpack() {
+    }
+
+    static final String[][] STATIC_TABLE = {
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    private static final int[] HUFFMAN_CODES = {
+            0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+            0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+            0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+            0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+            0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+            0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+            0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+            0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+            0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+            0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+            0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+            0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+            0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+            0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+            0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+            0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+            0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+            0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+            0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+            0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+            0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+            0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+            0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+            0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+            0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+            0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+            0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+            0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+            0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+            0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+            0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+            0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee,
+            0x3fffffff
+    };
+
+    private static final byte[] HUFFMAN_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+            30
+    };
+
+    private static final int EOS = 256;
+
+    /**
+     * Binary tree of Huffman codes, children of node n are at 2n and 2n + 1.
+     * Positive values are indexes of inner nodes, leaves are stored as -(symbol + 1).
+     */
+    private static final int[] HUFFMAN_TREE;
+
+    /**
+     * Index of the static entry with both the name and the value, or with the name only if the value is not present.
+     */
+    private static final Map<String, Integer> STATIC_INDEXES = new HashMap<>();
+
+    static {
+        int[] tree = new int[2 * 512];
+        int nodes = 1;
+        for (int symbol = 0; symbol <= EOS; symbol++) {
+            int node = 0;
+            for (int bit = HUFFMAN_LENGTHS[symbol] - 1; bit > 0; bit--) {
+                int slot = 2 * node + ((HUFFMAN_CODES[symbol] >>> bit) & 1);
+                if (tree[slot] == 0)
+                    tree[slot] = nodes++;
+                node = tree[slot];
+            }
+            tree[2 * node + (HUFFMAN_CODES[symbol] & 1)] = -(symbol + 1);
+        }
+        HUFFMAN_TREE = tree;
+
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_INDEXES.put(STATIC_TABLE[i][0], i + 1);
+            STATIC_INDEXES.put(STATIC_TABLE[i][0] + '\0' + STATIC_TABLE[i][1], i + 1);
+        }
+    }
+
+    static final class Encoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        /**
+         * @param name lower case name of the header
+         */
+        void encode(String name, String value) {
+            Integer index = STATIC_INDEXES.get(name + '\0' + value);
+            if (index != null) {
+                // Indexed header field
+                writeInteger(0x80, 7, index);
+                return;
+            }
+
+            // Literal header field without indexing
+            index = STATIC_INDEXES.get(name);
+            if (index != null) {
+                writeInteger(0x00, 4, index);
+            } else {
+                out.write(0x00);
+                writeString(name);
+            }
+            writeString(value);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void writeInteger(int prefix, int prefixBits, int value) {
+            int max = (1 << prefixBits) - 1;
+            if (value < max) {
+                out.write(prefix | value);
+                return;
+            }
+            out.write(prefix | max);
+            value -= max;
+            while (value >= 0x80) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private void writeString(String value) {
+            long bits = 0;
+            for (int i = 0; i < value.length(); i++)
+                bits += HUFFMAN_LENGTHS[value.charAt(i) & 0xFF];
+            int huffmanLength = (int) ((bits + 7) / 8);
+
+            if (huffmanLength >= value.length()) {
+                writeInteger(0x00, 7, value.length());
+                for (int i = 0; i < value.length(); i++)
+                    out.write(value.charAt(i));
+                return;
+            }
+
+            writeInteger(0x80, 7, huffmanLength);
+            long buffer = 0;
+            int buffered = 0;
+            for (int i = 0; i < value.length(); i++) {
+                int symbol = value.charAt(i) & 0xFF;
+                buffer = (buffer << HUFFMAN_LENGTHS[symbol]) | HUFFMAN_CODES[symbol];
+                buffered += HUFFMAN_LENGTHS[symbol];
+                while (buffered >= 8) {
+                    buffered -= 8;
+                    out.write((int) (buffer >>> buffered));
+                }
+            }
+            if (buffered > 0) {
+                // Padded with the most significant bits of EOS
+                out.write((int) ((buffer << (8 - buffered)) | (0xFF >>> buffered)));
+            }
+        }
+    }
+
+    static final class Decoder {
+        /**
+         * Entries of the dynamic table, from the newest to the oldest.
+         */
+        private final List<String[]> dynamicTable = new ArrayList<>();
+        private final int maxTableSizeLimit;
+        private int maxTableSize;
+        private int tableSize;
+
+        private byte[] block;
+        private int position;
+        private int end;
+
+        /**
+         * @param maxTableSize the header table size announced to the peer in settings
+         */
+        Decoder(int maxTableSize) {
+            this.maxTableSizeLimit = maxTableSize;
+            this.maxTableSize = maxTableSize;
+        }
+
+        List<String[]> decode(byte[] block, int offset, int length) throws Http2Exception {
+            this.block = block;
+            this.position = offset;
+            this.end = offset + length;
+
+            List<String[]> headers = new ArrayList<>();
+            boolean headerSeen = false;
+            while (position < end) {
+                int b = block[position] & 0xFF;
+                if ((b & 0x80) != 0) {
+                    // Indexed header field
+                    headers.add(getEntry(readInteger(7)));
+                    headerSeen = true;
+                } else if ((b & 0x40) != 0) {
+                    // Literal header field with incremental indexing
+                    String[] header = readLiteral(6);
+                    headers.add(header);
+                    addEntry(header);
+                    headerSeen = true;
+                } else if ((b & 0x20) != 0) {
+                    // Dynamic table size update, only allowed at the beginning of a header block
+                    if (headerSeen)
+                        throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Dynamic table size update after header fields");
+                    int size = readInteger(5);
+                    if (size > maxTableSizeLimit)
+                        throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Dynamic table size " + size + " exceeds the limit " + maxTableSizeLimit);
+                    maxTableSize = size;
+                    evict(0);
+                } else {
+                    // Literal header field without indexing or never indexed
+                    headers.add(readLiteral(4));
+                    headerSeen = true;
+                }
+            }
+
+            this.block = null;
+            return headers;
+        }
+
+        private String[] getEntry(int index) throws Http2Exception {
+            if (index <= 0)
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid header index " + index);
+            if (index <= STATIC_TABLE.length)
+                return STATIC_TABLE[index - 1];
+            if (index - STATIC_TABLE.length <= dynamicTable.size())
+                return dynamicTable.get(index - STATIC_TABLE.length - 1);
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid header index " + index);
+        }
+
+        private String[] readLiteral(int prefixBits) throws Http2Exception {
+            int index = readInteger(prefixBits);
+            String name = index == 0 ? readString() : getEntry(index)[0];
+            return new String[]{name, readString()};
+        }
+
+        private void addEntry(String[] header) {
+            int size = entrySize(header);
+            evict(size);
+            if (size <= maxTableSize) {
+                dynamicTable.add(0, header);
+                tableSize += size;
+            }
+        }
+
+        private void evict(int required) {
+            while (!dynamicTable.isEmpty() && tableSize + required > maxTableSize)
+                tableSize -= entrySize(dynamicTable.remove(dynamicTable.size() - 1));
+        }
+
+        private static int entrySize(String[] header) {
+            return header[0].length() + header[1].length() + 32;
+        }
+
+        private int readByte() throws Http2Exception {
+            if (position >= end)
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated header block");
+            return block[position++] & 0xFF;
+        }
+
+        private int readInteger(int prefixBits) throws Http2Exception {
+            int max = (1 << prefixBits) - 1;
+            int value = readByte() & max;
+            if (value < max)
+                return value;
+
+            long result = value;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                result += (long) (b & 0x7F) << shift;
+                if (result > Integer.MAX_VALUE)
+                    throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Integer overflow");
+                if ((b & 0x80) == 0)
+                    return (int) result;
+            }
+        }
+
+        private String readString() throws Http2Exception {
+            if (position >= end)
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated header block");
+            boolean huffman = (block[position] & 0x80) != 0;
+            int length = readInteger(7);
+            if (length > end - position)
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated header block");
+
+            StringBuilder builder = new StringBuilder(huffman ? length * 8 / 5 : length);
+            if (!huffman) {
+                for (int i = 0; i < length; i++)
+                    builder.append((char) (block[position++] & 0xFF));
+                return builder.toString();
+            }
+
+            int node = 0;
+            int bitsSinceSymbol = 0;
+            boolean allOnes = true;
+            for (int i = 0; i < length; i++) {
+                int b = block[position++] & 0xFF;
+                for (int bit = 7; bit >= 0; bit--) {
+                    int value = (b >>> bit) & 1;
+                    int next = HUFFMAN_TREE[2 * node + value];
+                    bitsSinceSymbol++;
+                    allOnes &= value == 1;
+                    if (next < 0) {
+                        if (next == -(EOS + 1))
+                            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "EOS in Huffman encoded string");
+                        builder.append((char) (-next - 1));
+                        node = 0;
+                        bitsSinceSymbol = 0;
+                        allOnes = true;
+                    } else if (next == 0) {
+                        throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid Huffman code");
+                    } else {
+                        node = next;
+                    }
+                }
+            }
+            if (bitsSinceSymbol > 7 || !allOnes)
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid Huffman padding");
+            return builder.toString();
+        }
+    }
+}
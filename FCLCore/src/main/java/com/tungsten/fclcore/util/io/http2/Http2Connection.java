@@ -0,0 +1,704 @@
+package com.tungsten.fclcore.util.io.http2;
+
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * A client HTTP/2 connection, see RFC 9113.
+ *
+ * Requests of many threads are multiplexed as streams of one connection. Frames are written by the threads making requests,
+ * and read by a daemon thread of the connection which dispatches them to the streams.
+ * Server push is disabled, and priority frames are ignored since the prioritization scheme is deprecated.
+ */
+final class Http2Connection implements Closeable {
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    private static final int HEADER_TABLE_SIZE = 4096;
+    private static final int MAX_HEADER_BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * Bytes each stream may receive before they are read.
+     */
+    static final int STREAM_WINDOW_SIZE = 1024 * 1024;
+
+    /**
+     * Bytes all streams may receive before they are read, this bounds the memory used by buffers of streams.
+     */
+    private static final int CONNECTION_WINDOW_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Connections without streams for this long are closed.
+     */
+    private static final int IDLE_TIMEOUT = 60 * 1000;
+
+    private final String name;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final Object writeLock = new Object();
+
+    // Used by the reader thread only
+    private final Hpack.Decoder decoder = new Hpack.Decoder(HEADER_TABLE_SIZE);
+    private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+    private int headerStreamId;
+    private boolean headerEndStream;
+
+    // Guarded by this
+    private final Map<Integer, Http2Stream> streams = new HashMap<>();
+    private int nextStreamId = 1;
+    private int reservedStreams;
+    // Servers usually allow at least 100 concurrent streams, this is used until the settings of the server are received.
+    private int maxConcurrentStreams = 100;
+    private int peerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+    private int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private long sendWindow = DEFAULT_WINDOW_SIZE;
+    private int receiveWindow = CONNECTION_WINDOW_SIZE;
+    private int unacknowledged;
+    private boolean shutdown;
+
+    /**
+     * Start HTTP/2 on the socket, which is connected and negotiated HTTP/2 already if it uses TLS.
+     *
+     * @param name the authority of the server, used in messages
+     */
+    Http2Connection(Socket socket, String name) throws IOException {
+        this.name = name;
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), DEFAULT_MAX_FRAME_SIZE + 9);
+
+        socket.setSoTimeout(IDLE_TIMEOUT);
+        synchronized (writeLock) {
+            out.write(PREFACE);
+            byte[] settings = new byte[12];
+            putSetting(settings, 0, SETTINGS_ENABLE_PUSH, 0);
+            putSetting(settings, 6, SETTINGS_INITIAL_WINDOW_SIZE, STREAM_WINDOW_SIZE);
+            writeFrame(SETTINGS, 0, 0, settings, 0, settings.length);
+            writeWindowUpdate(0, CONNECTION_WINDOW_SIZE - DEFAULT_WINDOW_SIZE);
+        }
+
+        Thread reader = new Thread(this::readLoop, "HTTP/2 " + name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @return false if the connection does not take new streams anymore
+     */
+    synchronized boolean isUsable() {
+        return !shutdown;
+    }
+
+    /**
+     * Send the headers of a request in a new stream.
+     *
+     * @param timeout milliseconds to wait for the server to allow another stream, 0 to wait forever
+     * @return the stream, or null if the connection does not take new streams anymore
+     */
+    Http2Stream newStream(List<String[]> headers, boolean endStream, int timeout) throws IOException {
+        synchronized (this) {
+            long deadline = timeout > 0 ? System.nanoTime() + timeout * 1_000_000L : Long.MAX_VALUE;
+            while (!shutdown && streams.size() + reservedStreams >= maxConcurrentStreams) {
+                await(deadline, "Timed out waiting for a stream of " + name);
+            }
+            if (shutdown)
+                return null;
+            reservedStreams++;
+        }
+
+        Hpack.Encoder encoder = new Hpack.Encoder();
+        for (String[] header : headers)
+            encoder.encode(header[0], header[1]);
+        byte[] block = encoder.toByteArray();
+
+        Http2Stream stream;
+        synchronized (writeLock) {
+            // Streams must be opened in the order of their identifiers.
+            synchronized (this) {
+                reservedStreams--;
+                if (shutdown || nextStreamId < 0) {
+                    shutdown = true;
+                    notifyAll();
+                    return null;
+                }
+                stream = new Http2Stream(this, nextStreamId, peerInitialWindowSize);
+                stream.localClosed = endStream;
+                nextStreamId += 2;
+                streams.put(stream.id, stream);
+            }
+
+            try {
+                int maxFrameSize = getPeerMaxFrameSize();
+                int offset = 0;
+                do {
+                    int length = Math.min(block.length - offset, maxFrameSize);
+                    boolean last = offset + length == block.length;
+                    int flags = (last ? FLAG_END_HEADERS : 0) | (offset == 0 && endStream ? FLAG_END_STREAM : 0);
+                    writeFrame(offset == 0 ? HEADERS : CONTINUATION, flags, stream.id, block, offset, length);
+                    offset += length;
+                } while (offset < block.length);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Send the body of a request, waiting for the server to extend windows if needed.
+     *
+     * @param timeout milliseconds to wait for the windows, 0 to wait forever
+     */
+    void writeData(Http2Stream stream, byte[] data, int offset, int length, boolean endStream, int timeout) throws IOException {
+        do {
+            int n;
+            synchronized (this) {
+                long deadline = timeout > 0 ? System.nanoTime() + timeout * 1_000_000L : Long.MAX_VALUE;
+                while (true) {
+                    if (streams.get(stream.id) != stream)
+                        throw new IOException("Stream " + stream.id + " of " + name + " is closed");
+                    n = (int) Math.min(Math.min(sendWindow, stream.sendWindow), Math.min(length, peerMaxFrameSize));
+                    if (n > 0 || length == 0)
+                        break;
+                    await(deadline, "Timed out waiting for " + name + " to receive data");
+                }
+                sendWindow -= n;
+                stream.sendWindow -= n;
+            }
+
+            boolean last = n == length && endStream;
+            try {
+                writeFrame(DATA, last ? FLAG_END_STREAM : 0, stream.id, data, offset, n);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            offset += n;
+            length -= n;
+
+            if (last) {
+                synchronized (this) {
+                    stream.localClosed = true;
+                    if (stream.remoteClosed)
+                        removeStream(stream);
+                }
+            }
+        } while (length > 0);
+    }
+
+    /**
+     * Reset the stream if it is still open, and drop the data received.
+     */
+    void cancel(Http2Stream stream) {
+        boolean open;
+        synchronized (this) {
+            open = removeStream(stream);
+        }
+        int dropped = stream.cancel();
+        try {
+            if (open)
+                writeRstStream(stream.id, Http2Exception.CANCEL);
+            dataConsumed(dropped);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void writeWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = new byte[4];
+        putInt(payload, 0, increment);
+        writeFrame(WINDOW_UPDATE, 0, streamId, payload, 0, payload.length);
+    }
+
+    /**
+     * Give back flow control credit of the connection for bytes read or dropped by streams.
+     */
+    void dataConsumed(int n) throws IOException {
+        int update = 0;
+        synchronized (this) {
+            unacknowledged += n;
+            if (unacknowledged >= CONNECTION_WINDOW_SIZE / 2) {
+                update = unacknowledged;
+                receiveWindow += update;
+                unacknowledged = 0;
+            }
+        }
+        if (update > 0)
+            writeWindowUpdate(0, update);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private synchronized int getPeerMaxFrameSize() {
+        return peerMaxFrameSize;
+    }
+
+    private synchronized Http2Stream getStream(int id) {
+        return streams.get(id);
+    }
+
+    /**
+     * @return true if the stream was open
+     */
+    private boolean removeStream(Http2Stream stream) {
+        if (!streams.remove(stream.id, stream))
+            return false;
+        notifyAll();
+        return true;
+    }
+
+    private void await(long deadline, String timeoutMessage) throws IOException {
+        long remaining = 0;
+        if (deadline != Long.MAX_VALUE) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                throw new SocketTimeoutException(timeoutMessage);
+            remaining = Math.max(1, nanos / 1_000_000L);
+        }
+        try {
+            wait(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void fail(IOException e) {
+        List<Http2Stream> failed;
+        synchronized (this) {
+            shutdown = true;
+            failed = new ArrayList<>(streams.values());
+            streams.clear();
+            notifyAll();
+        }
+        for (Http2Stream stream : failed)
+            stream.fail(e);
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void readLoop() {
+        try {
+            byte[] header = new byte[9];
+            while (readFrameHeader(header)) {
+                int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+                int type = header[3] & 0xFF;
+                int flags = header[4] & 0xFF;
+                int streamId = getInt(header, 5) & 0x7FFFFFFF;
+                if (length > DEFAULT_MAX_FRAME_SIZE)
+                    throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Frame of " + length + " bytes is larger than the max frame size");
+                byte[] payload = new byte[length];
+                readFully(payload, 0, length);
+
+                if (headerStreamId != 0 && (type != CONTINUATION || streamId != headerStreamId))
+                    throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Expected CONTINUATION of stream " + headerStreamId);
+
+                switch (type) {
+                    case DATA:
+                        readData(streamId, flags, payload);
+                        break;
+                    case HEADERS:
+                        readHeaders(streamId, flags, payload);
+                        break;
+                    case CONTINUATION:
+                        if (headerStreamId == 0)
+                            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Unexpected CONTINUATION");
+                        appendHeaderBlock(payload, 0, payload.length);
+                        if ((flags & FLAG_END_HEADERS) != 0)
+                            endHeaders();
+                        break;
+                    case RST_STREAM:
+                        readRstStream(streamId, payload);
+                        break;
+                    case SETTINGS:
+                        readSettings(streamId, flags, payload);
+                        break;
+                    case PUSH_PROMISE:
+                        throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Server push is disabled");
+                    case PING:
+                        if (streamId != 0 || payload.length != 8)
+                            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid PING");
+                        if ((flags & FLAG_ACK) == 0)
+                            writeFrame(PING, FLAG_ACK, 0, payload, 0, payload.length);
+                        break;
+                    case GOAWAY:
+                        readGoAway(payload);
+                        break;
+                    case WINDOW_UPDATE:
+                        readWindowUpdate(streamId, payload);
+                        break;
+                    case PRIORITY:
+                    default:
+                        // Ignored
+                        break;
+                }
+
+                synchronized (this) {
+                    if (shutdown && streams.isEmpty())
+                        break;
+                }
+            }
+            close();
+        } catch (Http2Exception e) {
+            LOG.log(Level.WARNING, "HTTP/2 connection to " + name + " failed", e);
+            try {
+                writeGoAway(e.getErrorCode());
+            } catch (IOException ignored) {
+            }
+            fail(e);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return false if the connection is idle and closed
+     */
+    private boolean readFrameHeader(byte[] header) throws IOException {
+        while (true) {
+            try {
+                int b = in.read();
+                if (b < 0)
+                    throw new EOFException("Connection closed by " + name);
+                header[0] = (byte) b;
+                break;
+            } catch (SocketTimeoutException e) {
+                synchronized (this) {
+                    if (!streams.isEmpty() || reservedStreams > 0)
+                        continue;
+                    shutdown = true;
+                }
+                writeGoAway(Http2Exception.NO_ERROR);
+                return false;
+            }
+        }
+        readFully(header, 1, header.length - 1);
+        return true;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = in.read(buffer, offset, length);
+            if (n < 0)
+                throw new EOFException("Connection closed by " + name);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void readData(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId == 0)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "DATA on stream 0");
+        int offset = 0;
+        int padding = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (payload.length == 0)
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid padding");
+            padding = payload[0] & 0xFF;
+            offset = 1;
+        }
+        int length = payload.length - offset - padding;
+        if (length < 0)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid padding");
+
+        synchronized (this) {
+            receiveWindow -= payload.length;
+            if (receiveWindow < 0)
+                throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Received more data than the connection window");
+        }
+
+        boolean endStream = (flags & FLAG_END_STREAM) != 0;
+        Http2Stream stream = getStream(streamId);
+        boolean accepted;
+        try {
+            accepted = stream != null && stream.receiveData(payload, offset, length, payload.length, endStream);
+        } catch (Http2Exception e) {
+            resetStream(stream, e);
+            accepted = false;
+        }
+
+        if (!accepted) {
+            // Data of streams cancelled or closed, the server may send it before receiving RST_STREAM.
+            dataConsumed(payload.length);
+            return;
+        }
+        if (payload.length > length)
+            stream.consumed(payload.length - length);
+        if (endStream)
+            remoteClosed(stream);
+    }
+
+    private void readHeaders(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId == 0)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "HEADERS on stream 0");
+        int offset = 0;
+        int padding = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (payload.length == 0)
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid padding");
+            padding = payload[0] & 0xFF;
+            offset = 1;
+        }
+        if ((flags & FLAG_PRIORITY) != 0)
+            offset += 5;
+        int length = payload.length - offset - padding;
+        if (length < 0)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid padding");
+
+        headerBlock.reset();
+        headerStreamId = streamId;
+        headerEndStream = (flags & FLAG_END_STREAM) != 0;
+        appendHeaderBlock(payload, offset, length);
+        if ((flags & FLAG_END_HEADERS) != 0)
+            endHeaders();
+    }
+
+    private void appendHeaderBlock(byte[] payload, int offset, int length) throws Http2Exception {
+        if (headerBlock.size() + length > MAX_HEADER_BLOCK_SIZE)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Header block is too large");
+        headerBlock.write(payload, offset, length);
+    }
+
+    private void endHeaders() throws IOException {
+        int streamId = headerStreamId;
+        headerStreamId = 0;
+        // The header block must be decoded even if the stream is gone, to keep the dynamic table in sync.
+        byte[] block = headerBlock.toByteArray();
+        List<String[]> headers = decoder.decode(block, 0, block.length);
+
+        Http2Stream stream = getStream(streamId);
+        if (stream == null)
+            return;
+        stream.receiveHeaders(headers, headerEndStream);
+        if (headerEndStream)
+            remoteClosed(stream);
+    }
+
+    private void remoteClosed(Http2Stream stream) {
+        synchronized (this) {
+            stream.remoteClosed = true;
+            if (stream.localClosed)
+                removeStream(stream);
+        }
+    }
+
+    private void readRstStream(int streamId, byte[] payload) throws IOException {
+        if (streamId == 0 || payload.length != 4)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid RST_STREAM");
+        int errorCode = getInt(payload, 0);
+        Http2Stream stream;
+        synchronized (this) {
+            stream = streams.get(streamId);
+            if (stream == null)
+                return;
+            removeStream(stream);
+        }
+        dataConsumed(stream.fail(new Http2Exception(errorCode, "Stream " + streamId + " was reset by " + name + " with error code " + errorCode)));
+    }
+
+    private void resetStream(Http2Stream stream, Http2Exception e) throws IOException {
+        synchronized (this) {
+            removeStream(stream);
+        }
+        dataConsumed(stream.fail(e));
+        writeRstStream(stream.id, e.getErrorCode());
+    }
+
+    private void readSettings(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId != 0)
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "SETTINGS on stream " + streamId);
+        if ((flags & FLAG_ACK) != 0)
+            return;
+        if (payload.length % 6 != 0)
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid SETTINGS");
+
+        synchronized (this) {
+            for (int i = 0; i < payload.length; i += 6) {
+                int id = ((payload[i] & 0xFF) << 8) | (payload[i + 1] & 0xFF);
+                int value = getInt(payload, i + 2);
+                switch (id) {
+                    case SETTINGS_MAX_CONCURRENT_STREAMS:
+                        maxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+                        break;
+                    case SETTINGS_INITIAL_WINDOW_SIZE:
+                        if (value < 0)
+                            throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Invalid initial window size");
+                        int delta = value - peerInitialWindowSize;
+                        peerInitialWindowSize = value;
+                        for (Http2Stream stream : streams.values())
+                            stream.sendWindow += delta;
+                        break;
+                    case SETTINGS_MAX_FRAME_SIZE:
+                        if (value < DEFAULT_MAX_FRAME_SIZE || value > 0xFFFFFF)
+                            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid max frame size");
+                        peerMaxFrameSize = value;
+                        break;
+                    case SETTINGS_HEADER_TABLE_SIZE:
+                        // The encoder does not use the dynamic table.
+                    default:
+                        break;
+                }
+            }
+            notifyAll();
+        }
+        writeFrame(SETTINGS, FLAG_ACK, 0, payload, 0, 0);
+    }
+
+    private void readGoAway(byte[] payload) throws IOException {
+        if (payload.length < 8)
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid GOAWAY");
+        int lastStreamId = getInt(payload, 0) & 0x7FFFFFFF;
+        int errorCode = getInt(payload, 4);
+        if (errorCode != Http2Exception.NO_ERROR)
+            LOG.log(Level.FINE, "HTTP/2 connection to " + name + " goes away with error code " + errorCode);
+
+        List<Http2Stream> refused = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (Http2Stream stream : streams.values())
+                if (stream.id > lastStreamId)
+                    refused.add(stream);
+            for (Http2Stream stream : refused)
+                removeStream(stream);
+            notifyAll();
+        }
+        // Streams not processed by the server can be retried on another connection.
+        for (Http2Stream stream : refused)
+            dataConsumed(stream.fail(new Http2Exception(Http2Exception.REFUSED_STREAM, "Stream " + stream.id + " was not processed by " + name)));
+    }
+
+    private void readWindowUpdate(int streamId, byte[] payload) throws IOException {
+        if (payload.length != 4)
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE");
+        int increment = getInt(payload, 0) & 0x7FFFFFFF;
+
+        Http2Stream stream = null;
+        synchronized (this) {
+            if (streamId == 0) {
+                if (increment == 0 || sendWindow + increment > Integer.MAX_VALUE)
+                    throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Invalid window update of the connection");
+                sendWindow += increment;
+            } else {
+                stream = streams.get(streamId);
+                if (stream == null)
+                    return;
+                if (increment != 0 && stream.sendWindow + increment <= Integer.MAX_VALUE) {
+                    stream.sendWindow += increment;
+                    stream = null;
+                }
+            }
+            notifyAll();
+        }
+        if (stream != null)
+            resetStream(stream, new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Invalid window update of stream " + streamId));
+    }
+
+    private void writeRstStream(int streamId, int errorCode) throws IOException {
+        byte[] payload = new byte[4];
+        putInt(payload, 0, errorCode);
+        writeFrame(RST_STREAM, 0, streamId, payload, 0, payload.length);
+    }
+
+    private void writeGoAway(int errorCode) throws IOException {
+        int lastStreamId = 0; // Server push is disabled, no streams are initiated by the server.
+        byte[] payload = new byte[8];
+        putInt(payload, 0, lastStreamId);
+        putInt(payload, 4, errorCode);
+        writeFrame(GOAWAY, 0, 0, payload, 0, payload.length);
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length) throws IOException {
+        synchronized (writeLock) {
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(type);
+            out.write(flags);
+            out.write(streamId >>> 24);
+            out.write(streamId >>> 16);
+            out.write(streamId >>> 8);
+            out.write(streamId);
+            out.write(payload, offset, length);
+            out.flush();
+        }
+    }
+
+    private static void putSetting(byte[] buffer, int offset, int id, int value) {
+        buffer[offset] = (byte) (id >>> 8);
+        buffer[offset + 1] = (byte) id;
+        putInt(buffer, offset + 2, value);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    static String getHeader(List<String[]> headers, String name) {
+        for (String[] header : headers)
+            if (header[0].equalsIgnoreCase(name))
+                return header[1];
+        return null;
+    }
+}
@@ -0,0 +1,237 @@
+package com.tungsten.fclcore.util.io.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A request sent on a {@link Http2Connection} and its response.
+ *
+ * Received data is buffered until it is read, and the receive window of the stream is only extended when data is read,
+ * so that the server does not send more than {@link Http2Connection#STREAM_WINDOW_SIZE} bytes ahead of the reader.
+ */
+final class Http2Stream {
+    final int id;
+    private final Http2Connection connection;
+
+    // Guarded by the connection
+    long sendWindow;
+    boolean localClosed;
+    boolean remoteClosed;
+
+    // Guarded by this
+    private List<String[]> headers;
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    private int chunkOffset;
+    private int buffered;
+    private int receiveWindow = Http2Connection.STREAM_WINDOW_SIZE;
+    private int unacknowledged;
+    private boolean finished;
+    private IOException error;
+
+    Http2Stream(Http2Connection connection, int id, long sendWindow) {
+        this.connection = connection;
+        this.id = id;
+        this.sendWindow = sendWindow;
+    }
+
+    /**
+     * @return false if the stream does not take data anymore, the data is dropped
+     * @throws Http2Exception if the server sent more data than the receive window allowed
+     */
+    synchronized boolean receiveData(byte[] data, int offset, int length, int frameLength, boolean endStream) throws Http2Exception {
+        if (error != null || finished)
+            return false;
+
+        receiveWindow -= frameLength;
+        if (receiveWindow < 0)
+            throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Stream " + id + " received more data than its window");
+
+        if (length > 0) {
+            chunks.add(offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length));
+            buffered += length;
+        }
+        if (endStream)
+            finished = true;
+        notifyAll();
+        return true;
+    }
+
+    synchronized void receiveHeaders(List<String[]> headers, boolean endStream) {
+        if (this.headers == null) {
+            String status = Http2Connection.getHeader(headers, ":status");
+            // Interim responses like 100 Continue are followed by the final response.
+            if (endStream || status == null || !status.startsWith("1"))
+                this.headers = headers;
+        }
+        // Otherwise trailers, which are not used.
+
+        if (endStream)
+            finished = true;
+        notifyAll();
+    }
+
+    /**
+     * Stop receiving data because of an error, data already received completely can still be read.
+     *
+     * @return number of bytes dropped from the buffer
+     */
+    synchronized int fail(IOException e) {
+        if (error != null || finished)
+            return 0;
+        error = e;
+        return discard();
+    }
+
+    /**
+     * Stop receiving data because the reader is not interested anymore.
+     *
+     * @return number of bytes dropped from the buffer
+     */
+    synchronized int cancel() {
+        if (error == null)
+            error = new IOException("Stream closed");
+        return discard();
+    }
+
+    private int discard() {
+        int dropped = buffered;
+        chunks.clear();
+        chunkOffset = 0;
+        buffered = 0;
+        notifyAll();
+        return dropped;
+    }
+
+    synchronized List<String[]> awaitHeaders(int timeout) throws IOException {
+        long deadline = deadline(timeout);
+        while (headers == null) {
+            if (error != null)
+                throw error;
+            if (finished)
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Stream " + id + " ended without response headers");
+            await(deadline);
+        }
+        return headers;
+    }
+
+    int read(byte[] buffer, int offset, int length, int timeout) throws IOException {
+        if (length == 0)
+            return 0;
+
+        int n = 0;
+        synchronized (this) {
+            long deadline = deadline(timeout);
+            while (buffered == 0) {
+                if (error != null)
+                    throw error;
+                if (finished)
+                    return -1;
+                await(deadline);
+            }
+
+            while (n < length && !chunks.isEmpty()) {
+                byte[] chunk = chunks.peek();
+                int count = Math.min(length - n, chunk.length - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, buffer, offset + n, count);
+                n += count;
+                chunkOffset += count;
+                if (chunkOffset == chunk.length) {
+                    chunks.remove();
+                    chunkOffset = 0;
+                }
+            }
+            buffered -= n;
+        }
+
+        consumed(n);
+        return n;
+    }
+
+    synchronized int available() {
+        return buffered;
+    }
+
+    synchronized boolean isFullyRead() {
+        return finished && buffered == 0;
+    }
+
+    /**
+     * Give back flow control credit of bytes read or dropped.
+     */
+    void consumed(int n) throws IOException {
+        int update = 0;
+        synchronized (this) {
+            unacknowledged += n;
+            if (!finished && unacknowledged >= Http2Connection.STREAM_WINDOW_SIZE / 2) {
+                update = unacknowledged;
+                receiveWindow += update;
+                unacknowledged = 0;
+            }
+        }
+        if (update > 0)
+            connection.writeWindowUpdate(id, update);
+        connection.dataConsumed(n);
+    }
+
+    private static long deadline(int timeout) {
+        return timeout > 0 ? System.nanoTime() + timeout * 1_000_000L : Long.MAX_VALUE;
+    }
+
+    private void await(long deadline) throws IOException {
+        long remaining = 0;
+        if (deadline != Long.MAX_VALUE) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0)
+                throw new SocketTimeoutException("Read timed out");
+            remaining = Math.max(1, nanos / 1_000_000L);
+        }
+        try {
+            wait(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    InputStream newInputStream(int readTimeout) {
+        return new InputStream() {
+            private boolean closed;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                int n = read(b, 0, 1);
+                return n < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (closed)
+                    throw new IOException("Stream closed");
+                if (off < 0 || len < 0 || len > b.length - off)
+                    throw new IndexOutOfBoundsException();
+                return Http2Stream.this.read(b, off, len, readTimeout);
+            }
+
+            @Override
+            public int available() {
+                return closed ? 0 : Http2Stream.this.available();
+            }
+
+            @Override
+            public void close() {
+                if (closed)
+                    return;
+                closed = true;
+                if (!isFullyRead())
+                    connection.cancel(Http2Stream.this);
+            }
+        };
+    }
+}
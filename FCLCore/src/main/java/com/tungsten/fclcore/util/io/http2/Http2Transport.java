@@ -0,0 +1,245 @@
+package com.tungsten.fclcore.util.io.http2;
+
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Opens connections which multiplex requests to the same server over one HTTP/2 connection,
+ * and fall back to {@link URL#openConnection()} for servers that do not speak HTTP/2.
+ *
+ * HTTPS servers are asked for HTTP/2 with ALPN, which needs Android 10 or Java 9. Plain HTTP servers are only spoken
+ * HTTP/2 to if they are registered with {@link #usePriorKnowledge(String, int)}, since the upgrade from HTTP/1.1 is deprecated.
+ * Connections through proxies and ranged requests always use HTTP/1.1.
+ *
+ * Use it with {@code NetworkUtils.setConnectionFactory(transport::openConnection)}.
+ */
+public final class Http2Transport {
+    private static final Method SET_APPLICATION_PROTOCOLS;
+    private static final Method GET_APPLICATION_PROTOCOL;
+
+    static {
+        Method setApplicationProtocols = null, getApplicationProtocol = null;
+        try {
+            setApplicationProtocols = SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+            getApplicationProtocol = SSLSocket.class.getMethod("getApplicationProtocol");
+        } catch (NoSuchMethodException ignored) {
+        }
+        SET_APPLICATION_PROTOCOLS = setApplicationProtocols;
+        GET_APPLICATION_PROTOCOL = getApplicationProtocol;
+    }
+
+    private final Map<String, Origin> origins = new ConcurrentHashMap<>();
+    private final Set<String> priorKnowledge = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Speak HTTP/2 to the plain HTTP server without negotiation (h2c with prior knowledge).
+     */
+    public void usePriorKnowledge(String host, int port) {
+        priorKnowledge.add(host.toLowerCase(Locale.ROOT) + ":" + port);
+    }
+
+    public URLConnection openConnection(URL url) throws IOException {
+        return openConnection(url, 0);
+    }
+
+    HttpURLConnection openConnection(URL url, int redirects) throws IOException {
+        if (!mayUseHttp2(url))
+            return (HttpURLConnection) url.openConnection();
+        return new Http2URLConnection(this, url, redirects);
+    }
+
+    /**
+     * @return true if the request of the connection is sent over a shared HTTP/2 connection
+     */
+    public static boolean isMultiplexed(URLConnection connection) {
+        return connection instanceof Http2URLConnection && ((Http2URLConnection) connection).isMultiplexed();
+    }
+
+    /**
+     * Close connections to all servers, requests in progress fail.
+     */
+    public void close() {
+        for (Origin origin : origins.values()) {
+            CompletableFuture<Http2Connection> future;
+            synchronized (origin) {
+                future = origin.connection;
+                origin.connection = null;
+            }
+            // Connections still being established are closed once they are.
+            if (future != null)
+                future.thenAccept(connection -> {
+                    if (connection != null)
+                        connection.close();
+                });
+        }
+    }
+
+    private boolean mayUseHttp2(URL url) {
+        String protocol = url.getProtocol();
+        if ("https".equals(protocol)) {
+            if (SET_APPLICATION_PROTOCOLS == null)
+                return false;
+        } else if (!"http".equals(protocol) || !priorKnowledge.contains(getHost(url).toLowerCase(Locale.ROOT) + ":" + getPort(url))) {
+            return false;
+        }
+
+        Origin origin = origins.get(getOrigin(url));
+        if (origin != null && origin.http1)
+            return false;
+
+        try {
+            ProxySelector selector = ProxySelector.getDefault();
+            if (selector != null)
+                for (Proxy proxy : selector.select(url.toURI()))
+                    if (proxy.type() != Proxy.Type.DIRECT)
+                        return false;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the HTTP/2 connection to the server of the URL, or null if the server does not speak HTTP/2
+     */
+    Http2Connection getConnection(URL url, int connectTimeout) throws IOException {
+        Origin origin = origins.computeIfAbsent(getOrigin(url), key -> new Origin());
+        CompletableFuture<Http2Connection> future;
+        boolean connecting = false;
+        synchronized (origin) {
+            if (origin.http1)
+                return null;
+            future = origin.connection;
+            // Futures of failed attempts are removed before they complete, so a completed one holds a connection.
+            if (future == null || future.isDone() && !future.join().isUsable()) {
+                future = origin.connection = new CompletableFuture<>();
+                connecting = true;
+            }
+        }
+
+        // Requests made while connecting wait for the connection instead of opening their own.
+        if (!connecting)
+            return await(future, connectTimeout);
+
+        Http2Connection connection;
+        try {
+            connection = connect(url, connectTimeout);
+        } catch (Throwable e) {
+            synchronized (origin) {
+                if (origin.connection == future)
+                    origin.connection = null;
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+        if (connection == null) {
+            LOG.log(Level.FINE, getOrigin(url) + " does not support HTTP/2");
+            synchronized (origin) {
+                origin.http1 = true;
+                if (origin.connection == future)
+                    origin.connection = null;
+            }
+        }
+        future.complete(connection);
+        return connection;
+    }
+
+    private static Http2Connection await(CompletableFuture<Http2Connection> future, int timeout) throws IOException {
+        try {
+            return timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } catch (TimeoutException e) {
+            throw new SocketTimeoutException("Timed out waiting for the connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static Http2Connection connect(URL url, int connectTimeout) throws IOException {
+        String host = getHost(url);
+        int port = getPort(url);
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+            socket.setTcpNoDelay(true);
+
+            if ("https".equals(url.getProtocol())) {
+                socket.setSoTimeout(connectTimeout);
+                SSLSocket sslSocket = (SSLSocket) HttpsURLConnection.getDefaultSSLSocketFactory().createSocket(socket, host, port, true);
+                socket = sslSocket;
+
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                // The handshake fails if the certificate does not match the host name.
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object) new String[]{"h2", "http/1.1"});
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+
+                if (!"h2".equals(GET_APPLICATION_PROTOCOL.invoke(sslSocket))) {
+                    socket.close();
+                    return null;
+                }
+            }
+
+            return new Http2Connection(socket, host + ":" + port);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        } catch (ReflectiveOperationException e) {
+            socket.close();
+            throw new IOException("Unable to negotiate HTTP/2 with " + host, e);
+        }
+    }
+
+    private static String getHost(URL url) {
+        String host = url.getHost();
+        // IPv6 addresses in URLs are in brackets.
+        return host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+    }
+
+    private static int getPort(URL url) {
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+
+    private static String getOrigin(URL url) {
+        return url.getProtocol() + "://" + getHost(url).toLowerCase(Locale.ROOT) + ":" + getPort(url);
+    }
+
+    private static final class Origin {
+        // Guarded by the origin
+        CompletableFuture<Http2Connection> connection;
+        volatile boolean http1;
+    }
+}
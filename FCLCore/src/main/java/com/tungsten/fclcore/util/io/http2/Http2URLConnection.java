@@ -0,0 +1,378 @@
+package com.tungsten.fclcore.util.io.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * {@link HttpURLConnection} sending the request in a stream of a shared {@link Http2Connection}.
+ *
+ * If the server does not speak HTTP/2, or a redirect is followed, calls are forwarded to the connection opened instead.
+ * Request bodies are buffered and sent when the response is requested.
+ */
+final class Http2URLConnection extends HttpURLConnection {
+    private static final int MAX_REDIRECTS = 20;
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Headers specific to HTTP/1.1 connections, which must not be sent in HTTP/2.
+     */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "host", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade"
+    ));
+
+    private final Http2Transport transport;
+    private final int redirects;
+
+    private Map<String, List<String>> requestProperties;
+    private Http2Connection connection;
+    private HttpURLConnection delegate;
+    private ByteArrayOutputStream requestBody;
+    private Http2Stream stream;
+    private List<String[]> responseHeaders;
+    private InputStream responseBody;
+
+    Http2URLConnection(Http2Transport transport, URL url, int redirects) {
+        super(url);
+        this.transport = transport;
+        this.redirects = redirects;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (connected)
+            return;
+        openTransport();
+        setConnected();
+        if (delegate != null)
+            delegate.connect();
+        else if (!doOutput)
+            sendRequest();
+    }
+
+    @Override
+    public void disconnect() {
+        if (delegate != null)
+            delegate.disconnect();
+        else if (stream != null)
+            connection.cancel(stream);
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return delegate != null && delegate.usingProxy();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (!doOutput)
+            throw new ProtocolException("cannot write to a URLConnection if doOutput=false - call setDoOutput(true)");
+        if ("GET".equals(method))
+            method = "POST";
+        if (stream != null || responseHeaders != null)
+            throw new ProtocolException("Cannot write output after reading input.");
+
+        openTransport();
+        setConnected();
+        if (delegate != null)
+            return delegate.getOutputStream();
+        if (requestBody == null)
+            requestBody = new ByteArrayOutputStream();
+        return requestBody;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!doInput)
+            throw new ProtocolException("Cannot read from URLConnection if doInput=false (call setDoInput(true))");
+        getResponse();
+        if (delegate != null)
+            return delegate.getInputStream();
+        if (responseCode == HTTP_NOT_FOUND || responseCode == HTTP_GONE)
+            throw new FileNotFoundException(url.toString());
+        if (responseCode >= 400)
+            throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+        return responseBody;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (delegate != null)
+            return delegate.getErrorStream();
+        return responseHeaders != null && responseCode >= 400 ? responseBody : null;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        getResponse();
+        return delegate != null ? delegate.getResponseCode() : responseCode;
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        getResponse();
+        // HTTP/2 has no reason phrases.
+        return delegate != null ? delegate.getResponseMessage() : null;
+    }
+
+    @Override
+    public URL getURL() {
+        return delegate != null ? delegate.getURL() : url;
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        if (!tryGetResponse())
+            return null;
+        if (delegate != null)
+            return delegate.getHeaderField(name);
+        if (name == null)
+            return getHeaderField(0);
+        String value = null;
+        for (String[] header : responseHeaders)
+            if (header[0].equalsIgnoreCase(name))
+                value = header[1];
+        return value;
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        if (!tryGetResponse())
+            return null;
+        if (delegate != null)
+            return delegate.getHeaderFieldKey(n);
+        return n > 0 && n <= responseHeaders.size() ? responseHeaders.get(n - 1)[0] : null;
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        if (!tryGetResponse())
+            return null;
+        if (delegate != null)
+            return delegate.getHeaderField(n);
+        if (n == 0)
+            return "HTTP/2 " + responseCode;
+        return n <= responseHeaders.size() ? responseHeaders.get(n - 1)[1] : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        if (!tryGetResponse())
+            return Collections.emptyMap();
+        if (delegate != null)
+            return delegate.getHeaderFields();
+
+        Map<String, List<String>> fields = new TreeMap<>(Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+        fields.put(null, Collections.singletonList(getHeaderField(0)));
+        for (String[] header : responseHeaders)
+            fields.computeIfAbsent(header[0], key -> new ArrayList<>()).add(header[1]);
+        fields.replaceAll((key, value) -> Collections.unmodifiableList(value));
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Request properties cannot be read or changed after connected, they are kept to build requests later.
+     */
+    private void setConnected() {
+        if (connected)
+            return;
+        requestProperties = getRequestProperties();
+        connected = true;
+    }
+
+    private Map<String, List<String>> requestProperties() {
+        return connected ? requestProperties : getRequestProperties();
+    }
+
+    private boolean tryGetResponse() {
+        try {
+            getResponse();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Find the HTTP/2 connection to the server, or open the fallback connection if there is none.
+     */
+    private void openTransport() throws IOException {
+        if (connection != null || delegate != null)
+            return;
+        // Ranged requests are segments of large downloads, which are faster over connections of their own.
+        if (!isRanged())
+            connection = transport.getConnection(url, getConnectTimeout());
+        if (connection == null)
+            delegate = copyTo((HttpURLConnection) url.openConnection());
+    }
+
+    private boolean isRanged() {
+        for (String key : requestProperties().keySet())
+            if ("Range".equalsIgnoreCase(key))
+                return true;
+        return false;
+    }
+
+    /**
+     * @return true if the request is sent in a stream of a shared HTTP/2 connection
+     */
+    boolean isMultiplexed() {
+        return connection != null && delegate == null;
+    }
+
+    private HttpURLConnection copyTo(HttpURLConnection target) throws ProtocolException {
+        target.setRequestMethod(method);
+        target.setDoInput(doInput);
+        target.setDoOutput(doOutput);
+        target.setUseCaches(useCaches);
+        target.setIfModifiedSince(ifModifiedSince);
+        target.setConnectTimeout(getConnectTimeout());
+        target.setReadTimeout(getReadTimeout());
+        target.setInstanceFollowRedirects(instanceFollowRedirects);
+        if (fixedContentLengthLong >= 0)
+            target.setFixedLengthStreamingMode(fixedContentLengthLong);
+        else if (chunkLength > 0)
+            target.setChunkedStreamingMode(chunkLength);
+        requestProperties().forEach((key, values) -> {
+            if (key != null)
+                values.forEach(value -> target.addRequestProperty(key, value));
+        });
+        return target;
+    }
+
+    private List<String[]> getRequestHeaders() {
+        List<String[]> headers = new ArrayList<>();
+        int port = url.getPort();
+        headers.add(new String[]{":method", method});
+        headers.add(new String[]{":scheme", url.getProtocol()});
+        headers.add(new String[]{":authority", url.getHost() + (port == -1 || port == url.getDefaultPort() ? "" : ":" + port)});
+        headers.add(new String[]{":path", url.getFile().isEmpty() ? "/" : url.getFile()});
+
+        boolean hasUserAgent = false, hasContentLength = false;
+        for (Map.Entry<String, List<String>> property : requestProperties().entrySet()) {
+            if (property.getKey() == null)
+                continue;
+            String name = property.getKey().toLowerCase(Locale.ROOT);
+            if (CONNECTION_HEADERS.contains(name))
+                continue;
+            hasUserAgent |= name.equals("user-agent");
+            hasContentLength |= name.equals("content-length");
+            for (String value : property.getValue()) {
+                if (name.equals("te") && !value.equalsIgnoreCase("trailers"))
+                    continue;
+                headers.add(new String[]{name, value});
+            }
+        }
+
+        if (!hasUserAgent)
+            headers.add(new String[]{"user-agent", System.getProperty("http.agent", "Java/" + System.getProperty("java.version"))});
+        if (requestBody != null && !hasContentLength)
+            headers.add(new String[]{"content-length", String.valueOf(requestBody.size())});
+        if (ifModifiedSince > 0)
+            headers.add(new String[]{"if-modified-since", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(ifModifiedSince).atOffset(ZoneOffset.UTC))});
+        return headers;
+    }
+
+    private void sendRequest() throws IOException {
+        if (stream != null)
+            return;
+
+        List<String[]> headers = getRequestHeaders();
+        for (int attempt = 1; ; attempt++) {
+            Http2Stream stream = connection.newStream(headers, requestBody == null, getConnectTimeout());
+            if (stream == null) {
+                // The connection is going away, requests are sent on a new one.
+                if (attempt >= MAX_ATTEMPTS)
+                    throw new IOException("Unable to send the request to " + url);
+                connection = transport.getConnection(url, getConnectTimeout());
+                if (connection == null)
+                    throw new IOException("Server of " + url + " does not support HTTP/2 anymore");
+                continue;
+            }
+
+            this.stream = stream;
+            if (requestBody != null) {
+                byte[] body = requestBody.toByteArray();
+                connection.writeData(stream, body, 0, body.length, true, getReadTimeout());
+            }
+            return;
+        }
+    }
+
+    private void getResponse() throws IOException {
+        if (responseHeaders != null)
+            return;
+        openTransport();
+        setConnected();
+        if (delegate != null)
+            return;
+
+        for (int attempt = 1; ; attempt++) {
+            sendRequest();
+            try {
+                responseHeaders = stream.awaitHeaders(getReadTimeout());
+                break;
+            } catch (Http2Exception e) {
+                // Requests refused by the server were not processed, so they can be sent again.
+                if (e.getErrorCode() != Http2Exception.REFUSED_STREAM || attempt >= MAX_ATTEMPTS)
+                    throw e;
+                stream = null;
+                connection = transport.getConnection(url, getConnectTimeout());
+                if (connection == null) {
+                    delegate = copyTo((HttpURLConnection) url.openConnection());
+                    if (requestBody != null) {
+                        try (OutputStream output = delegate.getOutputStream()) {
+                            requestBody.writeTo(output);
+                        }
+                    }
+                    return;
+                }
+            }
+        }
+
+        String status = Http2Connection.getHeader(responseHeaders, ":status");
+        try {
+            responseCode = Integer.parseInt(status);
+        } catch (NumberFormatException e) {
+            disconnect();
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid status " + status + " of " + url);
+        }
+        List<String[]> headers = new ArrayList<>(responseHeaders.size());
+        for (String[] header : responseHeaders)
+            if (!header[0].startsWith(":"))
+                headers.add(header);
+        responseHeaders = headers;
+        responseBody = stream.newInputStream(getReadTimeout());
+
+        String location = getHeaderField("location");
+        if (location != null && instanceFollowRedirects && getFollowRedirects() && ("GET".equals(method) || "HEAD".equals(method))
+                && (responseCode >= 300 && responseCode <= 308 && responseCode != HTTP_NOT_MODIFIED && responseCode != 306)) {
+            URL target = new URL(url, location);
+            // Like HttpURLConnection, redirects to other protocols are not followed.
+            if (target.getProtocol().equals(url.getProtocol())) {
+                if (redirects >= MAX_REDIRECTS)
+                    throw new ProtocolException("Server redirected too many times (" + MAX_REDIRECTS + ")");
+                responseBody.close();
+                delegate = copyTo(transport.openConnection(target, redirects + 1));
+            }
+        }
+    }
+}
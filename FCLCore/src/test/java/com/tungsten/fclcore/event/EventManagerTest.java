@@ -0,0 +1,71 @@
+package com.tungsten.fclcore.event;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class EventManagerTest {
+
+    @Test
+    public void fireInPriorityOrder() {
+        EventManager<Event> manager = new EventManager<>();
+        List<String> fired = new ArrayList<>();
+
+        manager.register(() -> fired.add("normal 1"));
+        manager.register(() -> fired.add("lowest"), EventPriority.LOWEST);
+        manager.register(() -> fired.add("highest"), EventPriority.HIGHEST);
+        manager.register(() -> fired.add("normal 2"), EventPriority.NORMAL);
+        manager.register(() -> fired.add("high"), EventPriority.HIGH);
+        manager.register(() -> fired.add("low"), EventPriority.LOW);
+
+        assertEquals(Event.Result.DEFAULT, manager.fireEvent(new Event(this)));
+        assertEquals(Arrays.asList("highest", "high", "normal 1", "normal 2", "low", "lowest"), fired);
+    }
+
+    @Test
+    public void registerAndUnregister() {
+        EventManager<Event> manager = new EventManager<>();
+        List<String> fired = new ArrayList<>();
+        Consumer<Event> a = event -> fired.add("a");
+        Consumer<Event> b = event -> fired.add("b");
+
+        manager.register(a);
+        manager.register(a);
+        manager.register(b);
+        manager.fireEvent(new Event(this));
+        assertEquals(Arrays.asList("a", "b"), fired);
+
+        fired.clear();
+        manager.unregister(a);
+        manager.fireEvent(new Event(this));
+        assertEquals(Arrays.asList("b"), fired);
+    }
+
+    @Test
+    public void changeHandlersWhileFiring() {
+        EventManager<Event> manager = new EventManager<>();
+        List<String> fired = new ArrayList<>();
+        Consumer<Event> late = event -> fired.add("late");
+        Consumer<Event> removed = event -> fired.add("removed");
+
+        manager.register(event -> {
+            fired.add("first");
+            manager.unregister(removed);
+            manager.register(late);
+        });
+        manager.register(removed);
+
+        // Handlers registered or unregistered by a handler take effect from the next event.
+        manager.fireEvent(new Event(this));
+        assertEquals(Arrays.asList("first", "removed"), fired);
+
+        fired.clear();
+        manager.fireEvent(new Event(this));
+        assertEquals(Arrays.asList("first", "late"), fired);
+    }
+}
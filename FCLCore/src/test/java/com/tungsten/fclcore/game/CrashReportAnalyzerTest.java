@@ -0,0 +1,77 @@
+package com.tungsten.fclcore.game;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+public class CrashReportAnalyzerTest {
+
+    private static String repeat(String line, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            builder.append(line).append('\n');
+        return builder.toString();
+    }
+
+    private static void assertSameAsFullMatch(String log) {
+        Map<CrashReportAnalyzer.Rule, String> expected = new EnumMap<>(CrashReportAnalyzer.Rule.class);
+        for (CrashReportAnalyzer.Rule rule : CrashReportAnalyzer.Rule.values()) {
+            Matcher matcher = rule.getPattern().matcher(log);
+            if (matcher.find())
+                expected.put(rule, matcher.group());
+        }
+
+        Map<CrashReportAnalyzer.Rule, String> actual = new EnumMap<>(CrashReportAnalyzer.Rule.class);
+        List<CrashReportAnalyzer.Result> results = CrashReportAnalyzer.anaylze(log);
+        for (CrashReportAnalyzer.Result result : results)
+            actual.put(result.getRule(), result.getMatcher().group());
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void modResolutionReason() {
+        String log = "[main/ERROR]: Incompatible mod set!\n"
+                + "net.fabricmc.loader.impl.discovery.ModResolutionException: Mod resolution encountered an incompatible mod set!\n"
+                + repeat(" - Mod 'Example' (example) requires version 1.0 of mod 'library', but only the wrong version is present!", 100)
+                + "\tat net.fabricmc.loader.impl.FabricLoaderImpl.load(FabricLoaderImpl.java:190)\n";
+        assertSameAsFullMatch(log);
+
+        CrashReportAnalyzer.Result result = CrashReportAnalyzer.anaylze(log).stream()
+                .filter(it -> it.getRule() == CrashReportAnalyzer.Rule.MOD_RESOLUTION)
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals(100, result.getMatcher().group("reason").split("\n").length - 1);
+    }
+
+    @Test
+    public void fabricWarningsSpanningManyLines() {
+        String log = "Warnings were found!\n"
+                + repeat(" - Mod 'Example' (example) recommends any version of mod 'other', which is missing!", 200)
+                + "[main/INFO]: Loading 42 mods\n";
+        assertSameAsFullMatch(log);
+    }
+
+    @Test
+    public void entityAfterLongStackTrace() {
+        String log = "-- Entity being ticked --\n"
+                + "Entity Type: minecraft:zombie (net.minecraft.entity.monster.ZombieEntity)\n"
+                + repeat("\tat net.minecraft.world.World.tickEntity(World.java:100)", 500)
+                + "Entity's Exact location: 1.50, 64.00, -3.50\n";
+        assertSameAsFullMatch(log);
+    }
+
+    @Test
+    public void anchorWithoutMatch() {
+        String log = "java.lang.NoClassDefFoundError\n"
+                + "Block: minecraft:stone\n"
+                + "Caused by: java.lang.NoClassDefFoundError: net/minecraft/client/Minecraft\n"
+                + "Found a duplicate mod example at mods/example.jar\n";
+        assertSameAsFullMatch(log);
+        assertSameAsFullMatch("");
+    }
+}
@@ -0,0 +1,97 @@
+package com.tungsten.fclcore.task;
+
+import static org.junit.Assert.*;
+
+import com.tungsten.fclcore.util.CacheRepository;
+
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class MirrorStatisticsTest {
+
+    // Statistics are global, every test uses its own mirrors.
+    private static URL url(String host) throws MalformedURLException {
+        return new URL("https://" + host + ".test/file.jar");
+    }
+
+    private static void recordResponses(URL url, long latency, int... responseCodes) {
+        for (int responseCode : responseCodes)
+            MirrorStatistics.recordResponse(url, latency, responseCode);
+    }
+
+    @Test
+    public void keepOrderOfUnknownMirrors() throws MalformedURLException {
+        List<URL> candidates = Arrays.asList(url("unknown-a"), url("unknown-b"), url("unknown-c"));
+        assertEquals(candidates, MirrorStatistics.sort(candidates));
+        assertFalse(MirrorStatistics.getScore(url("unknown-a")).isPresent());
+
+        // A single request is not enough to judge a mirror.
+        MirrorStatistics.recordResponse(url("unknown-b"), 10, 200);
+        assertFalse(MirrorStatistics.getScore(url("unknown-b")).isPresent());
+        assertEquals(candidates, MirrorStatistics.sort(candidates));
+    }
+
+    @Test
+    public void sortKnownMirrorsByScore() throws MalformedURLException {
+        URL fast = url("fast"), slow = url("slow"), unknownA = url("sort-unknown-a"), unknownB = url("sort-unknown-b");
+        recordResponses(fast, 20, 200, 200, 200, 200);
+        recordResponses(slow, 800, 200, 200, 200, 200);
+
+        assertTrue(MirrorStatistics.getScore(fast).getAsDouble() < MirrorStatistics.getScore(slow).getAsDouble());
+        // Unknown mirrors keep their positions, known mirrors are sorted among the remaining positions.
+        assertEquals(Arrays.asList(unknownA, fast, unknownB, slow), MirrorStatistics.sort(Arrays.asList(unknownA, slow, unknownB, fast)));
+    }
+
+    @Test
+    public void penalizeFailuresAndSlowTransfers() throws MalformedURLException {
+        URL reliable = url("reliable"), flaky = url("flaky"), missing = url("missing"), narrow = url("narrow");
+        recordResponses(reliable, 100, 200, 200, 200, 200);
+        recordResponses(flaky, 100, 200, 200);
+        MirrorStatistics.recordFailure(flaky);
+        MirrorStatistics.recordFailure(flaky);
+        recordResponses(missing, 100, 200, 200, 404, 404);
+        recordResponses(narrow, 100, 200, 200, 200, 200);
+
+        MirrorStatistics.recordTransfer(reliable, 8 * 1024 * 1024, 1_000_000_000L);
+        MirrorStatistics.recordTransfer(narrow, 128 * 1024, 1_000_000_000L);
+        // Small transfers tell nothing about the throughput.
+        MirrorStatistics.recordTransfer(narrow, 1024, 1_000_000_000_000L);
+
+        double score = MirrorStatistics.getScore(reliable).getAsDouble();
+        assertTrue(score < MirrorStatistics.getScore(flaky).getAsDouble());
+        assertTrue(score < MirrorStatistics.getScore(missing).getAsDouble());
+        assertTrue(score < MirrorStatistics.getScore(narrow).getAsDouble());
+        assertEquals(reliable, MirrorStatistics.sort(Arrays.asList(narrow, flaky, missing, reliable)).get(0));
+    }
+
+    @Test
+    public void latencyPercentiles() throws MalformedURLException {
+        URL url = url("latency");
+        recordResponses(url, 10, 200);
+        recordResponses(url, 20, 200);
+        recordResponses(url, 30, 200);
+        assertFalse(MirrorStatistics.getLatency(url, 0.5).isPresent());
+
+        recordResponses(url, 40, 200);
+        MirrorStatistics.recordFailure(url);
+        assertEquals(30, MirrorStatistics.getLatency(url, 0.5).getAsLong());
+        assertEquals(40, MirrorStatistics.getLatency(url, 0.99).getAsLong());
+    }
+
+    @Test
+    public void saveSummaries() throws MalformedURLException {
+        recordResponses(url("saved"), 50, 200, 200, 200, 404);
+        MirrorStatistics.save();
+
+        Object summaries = CacheRepository.getInstance().getStorage("download").getEntry("mirrors");
+        assertTrue(summaries instanceof Map);
+        Map<?, ?> summary = (Map<?, ?>) ((Map<?, ?>) summaries).get("https://saved.test");
+        assertEquals(50L, summary.get("latency"));
+        assertEquals(0.25, (Double) summary.get("notFoundRate"), 1e-9);
+    }
+}
@@ -0,0 +1,75 @@
+package com.tungsten.fclcore.util;
+
+import static org.junit.Assert.*;
+
+import com.tungsten.fclcore.util.io.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class FileDigestCacheTest {
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("digest");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileDigestCache.getInstance().changeIndexFile(root.resolve("unused.bin"));
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private Path createFile(String name, String content) throws IOException {
+        Path file = root.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        // Files modified just now are not remembered.
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        return file;
+    }
+
+    private static int countEntries(Path index) throws IOException {
+        try (InputStream input = Files.newInputStream(index)) {
+            DataInputStream data = new DataInputStream(input);
+            data.readInt();
+            return data.readInt();
+        }
+    }
+
+    @Test
+    public void digestAndPrune() throws IOException {
+        Path index = root.resolve("digests.bin");
+        FileDigestCache cache = FileDigestCache.getInstance();
+        cache.changeIndexFile(index);
+
+        Path a = createFile("a.txt", "a");
+        Path b = createFile("b.txt", "b");
+        assertEquals("86f7e437faa5a7fce15d1ddcb9eaeaea377667b8", cache.digest("SHA-1", a));
+        assertEquals("e9d71f5ee7c92d6dc9e92ffdad17b8bd49418f98", cache.digest("SHA-1", b));
+        assertTrue(cache.checksumMatches("SHA-1", a, "86F7E437FAA5A7FCE15D1DDCB9EAEAEA377667B8"));
+
+        // Switching the index file saves the entries of the previous one.
+        cache.changeIndexFile(root.resolve("other.bin"));
+        assertEquals(2, countEntries(index));
+
+        // Entries of changed and deleted files are dropped when saved.
+        Files.delete(b);
+        createFile("a.txt", "changed");
+        cache.changeIndexFile(index);
+        Path c = createFile("c.txt", "c");
+        assertEquals("84a516841ba77a5b4648de2cd0dfcb30ea46dbb4", cache.digest("SHA-1", c));
+        cache.changeIndexFile(root.resolve("other.bin"));
+        assertEquals(1, countEntries(index));
+    }
+}
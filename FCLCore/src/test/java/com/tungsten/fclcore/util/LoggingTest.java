@@ -0,0 +1,27 @@
+package com.tungsten.fclcore.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LoggingTest {
+
+    @Test
+    public void filterForbiddenTokens() {
+        Logging.registerForbiddenToken("eyJhbGciOi.token", "<access token>");
+        Logging.registerForbiddenToken("session", "<session>");
+        Logging.registerForbiddenToken("session-id", "<session id>");
+        Logging.registerForbiddenToken("令牌", "<token>");
+
+        assertEquals("Bearer <access token>, again <access token>.",
+                Logging.filterForbiddenToken("Bearer eyJhbGciOi.token, again eyJhbGciOi.token."));
+        // The longest token wins if tokens share a prefix.
+        assertEquals("<session id> <session> <session>-i",
+                Logging.filterForbiddenToken("session-id session session-i"));
+        assertEquals("登录<token>过期", Logging.filterForbiddenToken("登录令牌过期"));
+
+        String message = "nothing to hide 令";
+        assertSame(message, Logging.filterForbiddenToken(message));
+        assertNull(Logging.filterForbiddenToken(null));
+    }
+}
@@ -0,0 +1,65 @@
+package com.tungsten.fclcore.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PersistentListTest {
+
+    @Test
+    public void copyOf() {
+        List<String> source = new ArrayList<>(Arrays.asList("a", "b"));
+        PersistentList<String> copy = PersistentList.copyOf(source);
+        source.add("c");
+        assertEquals(Arrays.asList("a", "b"), copy);
+        assertSame(copy, PersistentList.copyOf(copy));
+
+        assertTrue(PersistentList.copyOf(null).isEmpty());
+        assertSame(PersistentList.empty(), PersistentList.copyOf(Collections.emptyList()));
+
+        try {
+            copy.add("d");
+            fail();
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void concat() {
+        PersistentList<String> left = PersistentList.copyOf(Arrays.asList("a", "b"));
+        PersistentList<String> right = PersistentList.concat(left, Arrays.asList("c", null));
+
+        assertEquals(Arrays.asList("a", "b", "c", null), right);
+        assertEquals(Arrays.asList("a", "b", "c", null).hashCode(), right.hashCode());
+        assertArrayEquals(new Object[]{"a", "b", "c", null}, right.toArray());
+        assertEquals("c", right.get(2));
+        assertSame(left, PersistentList.concat(left, null));
+        assertSame(left, PersistentList.concat(Collections.emptyList(), left));
+
+        try {
+            right.get(4);
+            fail();
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    @Test
+    public void deepConcat() {
+        // Like a long chain of versions inheriting from each other.
+        List<Integer> expected = new ArrayList<>();
+        PersistentList<Integer> list = PersistentList.empty();
+        for (int i = 0; i < 100; i++) {
+            list = PersistentList.concat(Collections.singletonList(i), list);
+            expected.add(0, i);
+        }
+
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i), list.get(i));
+    }
+}
@@ -0,0 +1,131 @@
+package com.tungsten.fclcore.util.io;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpConnectionManagerTest {
+
+    private HttpServer server;
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile boolean targetMissing = false;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+
+        if (path.startsWith("/redirect/")) {
+            exchange.getResponseHeaders().add("Location", "/target/" + path.substring("/redirect/".length()));
+            respond(exchange, 302, "moved");
+        } else if (path.startsWith("/target/") && exchange.getRequestHeaders().containsKey("If-None-Match")) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+        } else if (path.startsWith("/target/") && !targetMissing) {
+            respond(exchange, 200, "content of " + path);
+        } else {
+            respond(exchange, 404, "not found");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + path);
+    }
+
+    private int hits(String path) {
+        AtomicInteger count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void rememberRedirects() throws IOException {
+        URL original = url("/redirect/a");
+        assertEquals("content of /target/a", NetworkUtils.doGet(original));
+        assertEquals(url("/target/a"), HttpConnectionManager.getRedirect(original));
+
+        // Later requests go to the target directly.
+        assertEquals("content of /target/a", NetworkUtils.doGet(original));
+        assertEquals(1, hits("/redirect/a"));
+        assertEquals(2, hits("/target/a"));
+
+        // The original URL is requested again if the remembered target fails.
+        targetMissing = true;
+        HttpURLConnection connection = NetworkUtils.resolveConnection(NetworkUtils.createHttpConnection(original));
+        assertEquals(404, connection.getResponseCode());
+        HttpConnectionManager.release(connection);
+        assertEquals(2, hits("/redirect/a"));
+        assertNull(HttpConnectionManager.getRedirect(original));
+    }
+
+    @Test
+    public void keepRedirectsOnNotModified() throws IOException {
+        URL original = url("/redirect/cached");
+        assertEquals("content of /target/cached", NetworkUtils.doGet(original));
+
+        HttpURLConnection connection = NetworkUtils.createHttpConnection(original);
+        connection.setRequestProperty("If-None-Match", "\"etag\"");
+        connection = NetworkUtils.resolveConnection(connection);
+        assertEquals(304, connection.getResponseCode());
+        HttpConnectionManager.release(connection);
+
+        assertEquals(1, hits("/redirect/cached"));
+        assertEquals(url("/target/cached"), HttpConnectionManager.getRedirect(original));
+    }
+
+    @Test
+    public void reuseReleasedConnections() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            HttpURLConnection connection = NetworkUtils.resolveConnection(NetworkUtils.createHttpConnection(url("/redirect/" + i)));
+            assertEquals(200, connection.getResponseCode());
+            try (InputStream input = connection.getInputStream()) {
+                assertEquals("content of /target/" + i, IOUtils.readFullyAsString(input, StandardCharsets.UTF_8));
+            }
+
+            // Error responses are read to the end by release.
+            connection = NetworkUtils.createHttpConnection(url("/missing"));
+            assertEquals(404, connection.getResponseCode());
+            HttpConnectionManager.release(connection);
+        }
+
+        assertEquals(1, clientPorts.size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.tungsten.fclcore.util.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class UnzipperTest {
+
+    private Path root;
+    private Path zip;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("unzipper");
+        zip = root.resolve("test.zip");
+        try (OutputStream output = Files.newOutputStream(zip);
+             ZipOutputStream out = new ZipOutputStream(output)) {
+            for (String name : Arrays.asList("overrides/", "overrides/config/a.txt", "overrides/mods/b.jar", "manifest.json")) {
+                out.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/"))
+                    out.write(name.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Test
+    public void unzipSubDirectory() throws IOException {
+        Path dest = root.resolve("dest");
+        List<String> accepted = new ArrayList<>();
+        new Unzipper(zip, dest)
+                .setSubDirectory("/overrides")
+                .setFilter((zipEntry, isDirectory, destFile, entryPath) -> {
+                    accepted.add(zipEntry + " " + entryPath);
+                    return !entryPath.startsWith("mods");
+                })
+                .unzip();
+
+        assertEquals("overrides/config/a.txt", FileUtils.readText(dest.resolve("config/a.txt")));
+        assertFalse(Files.exists(dest.resolve("mods")));
+        assertFalse(Files.exists(dest.resolve("manifest.json")));
+        assertEquals(Arrays.asList("overrides/ ", "overrides/config/ config", "overrides/mods/ mods", "overrides/config/a.txt config/a.txt"), accepted);
+    }
+
+    @Test
+    public void unzipMissingSubDirectory() throws IOException {
+        Path dest = root.resolve("dest");
+        new Unzipper(zip, dest).setSubDirectory("/missing").setTerminateIfSubDirectoryNotExists().unzip();
+        assertFalse(Files.exists(dest.resolve("manifest.json")));
+
+        assertThrows(NoSuchFileException.class, () -> new Unzipper(zip, dest).setSubDirectory("/missing").unzip());
+    }
+}
@@ -0,0 +1,131 @@
+package com.tungsten.fclcore.util.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+public class ZipReaderTest {
+
+    private static final byte[] STORED_CONTENT = "stored content".getBytes(StandardCharsets.UTF_8);
+    private static final String DEFLATED_CONTENT = "{\"id\": \"1.20.1\"}\n";
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("zipreader");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private Path createZip(String name, byte[] prefix, Charset charset) throws IOException {
+        Path zip = root.resolve(name);
+        try (OutputStream output = Files.newOutputStream(zip)) {
+            output.write(prefix);
+            ZipOutputStream out = new ZipOutputStream(output, charset);
+            out.setComment("archive comment");
+
+            out.putNextEntry(new ZipEntry("data/"));
+            out.closeEntry();
+
+            ZipEntry stored = new ZipEntry("data/stored.txt");
+            CRC32 crc = new CRC32();
+            crc.update(STORED_CONTENT);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_CONTENT.length);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(STORED_CONTENT);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("version.json"));
+            out.write(DEFLATED_CONTENT.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("中文.txt"));
+            out.closeEntry();
+            out.finish();
+        }
+        return zip;
+    }
+
+    @Test
+    public void readEntries() throws IOException {
+        try (ZipReader reader = ZipReader.open(createZip("a.zip", new byte[0], StandardCharsets.UTF_8))) {
+            assertEquals(4, reader.getEntries().size());
+            assertFalse(reader.hasMalformedNames());
+            assertTrue(reader.getEntry("data/").isDirectory());
+            assertTrue(reader.contains("/中文.txt"));
+            assertNull(reader.getEntry("missing.txt"));
+
+            ZipReader.Entry stored = reader.getEntry("data/stored.txt");
+            assertEquals(ZipReader.STORED, stored.getMethod());
+            assertEquals(STORED_CONTENT.length, stored.getSize());
+            assertEquals(STORED_CONTENT.length, stored.getCompressedSize());
+            assertArrayEquals(STORED_CONTENT, reader.readBytes(stored));
+
+            assertEquals(ZipReader.DEFLATED, reader.getEntry("version.json").getMethod());
+            assertEquals(DEFLATED_CONTENT, reader.readText("version.json"));
+
+            Path dest = root.resolve("out/version.json");
+            reader.extract("version.json", dest);
+            assertEquals(DEFLATED_CONTENT, new String(Files.readAllBytes(dest), StandardCharsets.UTF_8));
+
+            try {
+                reader.readBytes("missing.txt");
+                fail();
+            } catch (ZipException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void readArchiveWithPrependedData() throws IOException {
+        // Like self-extracting archives, offsets in the central directory do not count the prepended data.
+        byte[] prefix = new byte[1000];
+        try (ZipReader reader = ZipReader.open(createZip("b.zip", prefix, StandardCharsets.UTF_8))) {
+            assertArrayEquals(STORED_CONTENT, reader.readBytes("data/stored.txt"));
+            assertEquals(DEFLATED_CONTENT, reader.readText("version.json"));
+        }
+    }
+
+    @Test
+    public void decodeNamesWithEncoding() throws IOException {
+        Charset gbk = Charset.forName("GBK");
+        Path zip = createZip("c.zip", new byte[0], gbk);
+
+        try (ZipReader reader = ZipReader.open(zip)) {
+            assertTrue(reader.hasMalformedNames());
+            assertFalse(reader.contains("中文.txt"));
+        }
+
+        try (ZipReader reader = ZipReader.open(zip, gbk)) {
+            assertFalse(reader.hasMalformedNames());
+            assertTrue(reader.contains("中文.txt"));
+            assertEquals(DEFLATED_CONTENT, reader.readText("version.json"));
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void rejectNonZipFile() throws IOException {
+        Path file = root.resolve("not-a-zip.txt");
+        Files.write(file, new byte[100]);
+        ZipReader.open(file).close();
+    }
+}
@@ -0,0 +1,337 @@
+package com.tungsten.fclcore.util.io.http2;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Http2TransportTest {
+
+    private H2cServer server;
+    private Http2Transport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new H2cServer();
+        transport = new Http2Transport();
+        transport.usePriorKnowledge("127.0.0.1", server.getPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.close();
+        server.close();
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) transport.openConnection(new URL("http://127.0.0.1:" + server.getPort() + path));
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0)
+                result.write(buffer, 0, n);
+            return result.toByteArray();
+        }
+    }
+
+    private static byte[] pattern(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) (i * 31 + 7);
+        return data;
+    }
+
+    @Test
+    public void getAndPost() throws IOException {
+        HttpURLConnection connection = open("/size/10");
+        assertTrue(connection instanceof Http2URLConnection);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("application/octet-stream", connection.getHeaderField("Content-Type"));
+        assertEquals(10, connection.getContentLength());
+        assertArrayEquals(pattern(10), readAll(connection.getInputStream()));
+
+        connection = open("/echo");
+        connection.setDoOutput(true);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("hello", new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8));
+
+        connection = open("/missing");
+        assertEquals(404, connection.getResponseCode());
+        assertEquals("not found", new String(readAll(connection.getErrorStream()), StandardCharsets.UTF_8));
+        try {
+            connection.getInputStream();
+            fail();
+        } catch (FileNotFoundException ignored) {
+        }
+
+        assertEquals(1, server.getConnections());
+    }
+
+    @Test
+    public void largeResponseIsFlowControlled() throws IOException {
+        // Larger than the receive window of a stream, so it only arrives if the window is extended while reading.
+        int size = 3 * Http2Connection.STREAM_WINDOW_SIZE;
+        HttpURLConnection connection = open("/size/" + size);
+        assertArrayEquals(pattern(size), readAll(connection.getInputStream()));
+    }
+
+    @Test
+    public void multiplexConcurrentRequests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String path = "/size/" + (i * 100);
+                results.add(executor.submit(() -> readAll(open(path).getInputStream())));
+            }
+            for (int i = 0; i < results.size(); i++)
+                assertArrayEquals(pattern(i * 100), results.get(i).get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.getConnections());
+    }
+
+    @Test
+    public void rangedRequestsUseOwnConnections() throws IOException {
+        HttpURLConnection connection = open("/size/10");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(Http2Transport.isMultiplexed(connection));
+        connection.disconnect();
+
+        connection = open("/size/10");
+        connection.setRequestProperty("Range", "bytes=5-");
+        connection.connect();
+        assertFalse(Http2Transport.isMultiplexed(connection));
+        connection.disconnect();
+    }
+
+    @Test
+    public void fallbackWithoutPriorKnowledge() throws IOException {
+        URL url = new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":1/");
+        assertFalse(new Http2Transport().openConnection(url) instanceof Http2URLConnection);
+    }
+
+    /**
+     * Plain HTTP/2 server just enough for the tests, it respects the flow control windows of the client.
+     */
+    private static final class H2cServer implements AutoCloseable {
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicInteger connections = new AtomicInteger();
+
+        H2cServer() throws IOException {
+            executor.submit(() -> {
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    executor.submit(() -> new ServerConnection(socket).serve());
+                }
+                return null;
+            });
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getConnections() {
+            return connections.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+
+        private final class ServerConnection {
+            private final Socket socket;
+            private final Hpack.Decoder decoder = new Hpack.Decoder(4096);
+            private final Map<Integer, ByteArrayOutputStream> bodies = new HashMap<>();
+            private final Map<Integer, Integer> streamWindows = new HashMap<>();
+            private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+            private OutputStream out;
+            private int initialWindow = 65535;
+            private int connectionWindow = 65535;
+
+            ServerConnection(Socket socket) {
+                this.socket = socket;
+            }
+
+            Void serve() throws IOException {
+                try (Socket client = socket) {
+                    DataInputStream in = new DataInputStream(client.getInputStream());
+                    out = client.getOutputStream();
+                    in.readFully(new byte[24]);
+                    writeFrame(0x4, 0, 0, new byte[0], 0, 0);
+
+                    Map<Integer, List<String[]>> headers = new HashMap<>();
+                    boolean endStream = false;
+                    byte[] frameHeader = new byte[9];
+                    while (true) {
+                        in.readFully(frameHeader);
+                        int length = ((frameHeader[0] & 0xFF) << 16) | ((frameHeader[1] & 0xFF) << 8) | (frameHeader[2] & 0xFF);
+                        int type = frameHeader[3], flags = frameHeader[4];
+                        int streamId = getInt(frameHeader, 5) & 0x7FFFFFFF;
+                        byte[] payload = new byte[length];
+                        in.readFully(payload);
+
+                        if (type == 0x4 && (flags & 0x1) == 0) {
+                            for (int i = 0; i < length; i += 6)
+                                if (payload[i] == 0 && payload[i + 1] == 0x4)
+                                    setInitialWindow(getInt(payload, i + 2));
+                            writeFrame(0x4, 0x1, 0, new byte[0], 0, 0);
+                        } else if (type == 0x8) {
+                            windowUpdate(streamId, getInt(payload, 0));
+                        } else if (type == 0x1 || type == 0x9) {
+                            if (type == 0x1)
+                                endStream = (flags & 0x1) != 0;
+                            headerBlock.write(payload, 0, length);
+                            if ((flags & 0x4) == 0)
+                                continue;
+                            byte[] block = headerBlock.toByteArray();
+                            headerBlock.reset();
+                            synchronized (this) {
+                                streamWindows.put(streamId, initialWindow);
+                            }
+                            if (endStream) {
+                                respond(streamId, decoder.decode(block, 0, block.length), new byte[0]);
+                            } else {
+                                headers.put(streamId, decoder.decode(block, 0, block.length));
+                                bodies.put(streamId, new ByteArrayOutputStream());
+                            }
+                        } else if (type == 0x0) {
+                            bodies.get(streamId).write(payload, 0, length);
+                            byte[] increment = new byte[4];
+                            putInt(increment, length);
+                            writeFrame(0x8, 0, 0, increment, 0, 4);
+                            if ((flags & 0x1) != 0)
+                                respond(streamId, headers.remove(streamId), bodies.remove(streamId).toByteArray());
+                        } else if (type == 0x3) {
+                            synchronized (this) {
+                                streamWindows.remove(streamId);
+                                notifyAll();
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    // Closed by the client
+                    return null;
+                }
+            }
+
+            private void respond(int streamId, List<String[]> request, byte[] requestBody) {
+                String path = Http2Connection.getHeader(request, ":path");
+                executor.submit(() -> {
+                    int status = 200;
+                    byte[] body;
+                    if (path.equals("/echo"))
+                        body = requestBody;
+                    else if (path.startsWith("/size/"))
+                        body = pattern(Integer.parseInt(path.substring(6)));
+                    else {
+                        status = 404;
+                        body = "not found".getBytes(StandardCharsets.UTF_8);
+                    }
+
+                    Hpack.Encoder encoder = new Hpack.Encoder();
+                    encoder.encode(":status", String.valueOf(status));
+                    encoder.encode("content-type", "application/octet-stream");
+                    encoder.encode("content-length", String.valueOf(body.length));
+                    byte[] block = encoder.toByteArray();
+                    writeFrame(0x1, 0x4 | (body.length == 0 ? 0x1 : 0), streamId, block, 0, block.length);
+
+                    int offset = 0;
+                    while (offset < body.length) {
+                        int n;
+                        synchronized (this) {
+                            while (streamWindows.containsKey(streamId) && Math.min(connectionWindow, streamWindows.get(streamId)) <= 0)
+                                wait();
+                            if (!streamWindows.containsKey(streamId))
+                                return null;
+                            n = Math.min(16384, Math.min(body.length - offset, Math.min(connectionWindow, streamWindows.get(streamId))));
+                            connectionWindow -= n;
+                            streamWindows.put(streamId, streamWindows.get(streamId) - n);
+                        }
+                        writeFrame(0x0, offset + n == body.length ? 0x1 : 0, streamId, body, offset, n);
+                        offset += n;
+                    }
+                    return null;
+                });
+            }
+
+            private synchronized void setInitialWindow(int value) {
+                int delta = value - initialWindow;
+                initialWindow = value;
+                streamWindows.replaceAll((id, window) -> window + delta);
+                notifyAll();
+            }
+
+            private synchronized void windowUpdate(int streamId, int increment) {
+                if (streamId == 0)
+                    connectionWindow += increment;
+                else if (streamWindows.containsKey(streamId))
+                    streamWindows.put(streamId, streamWindows.get(streamId) + increment);
+                notifyAll();
+            }
+
+            private synchronized void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length) throws IOException {
+                byte[] header = new byte[9];
+                header[0] = (byte) (length >>> 16);
+                header[1] = (byte) (length >>> 8);
+                header[2] = (byte) length;
+                header[3] = (byte) type;
+                header[4] = (byte) flags;
+                putInt(header, streamId);
+                out.write(header);
+                out.write(payload, offset, length);
+                out.flush();
+            }
+        }
+
+        private static int getInt(byte[] buffer, int offset) {
+            return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+        }
+
+        private static void putInt(byte[] buffer, int value) {
+            int offset = buffer.length - 4;
+            buffer[offset] = (byte) (value >>> 24);
+            buffer[offset + 1] = (byte) (value >>> 16);
+            buffer[offset + 2] = (byte) (value >>> 8);
+            buffer[offset + 3] = (byte) value;
+        }
+    }
+}